@@ -0,0 +1,24 @@
+package com.simpleutils.quik;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Запуск бенчмарков с профилировщиком GC, который добавляет к результатам
+ * объём выделенной памяти на операцию ({@code gc.alloc.rate.norm}).
+ * <p>
+ * Аргумент — регулярное выражение для имён бенчмарков; по умолчанию запускаются все бенчмарки.
+ */
+public class BenchmarkRunner {
+
+    public static void main(final String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : "com\\.simpleutils\\.quik\\..*Benchmark")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
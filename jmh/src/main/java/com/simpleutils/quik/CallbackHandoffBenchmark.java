@@ -0,0 +1,91 @@
+package com.simpleutils.quik;
+
+import org.json.simple.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Передача коллбэка из потока чтения {@link QuikConnect} в поток бизнес-логики
+ * {@link SimpleQuikListener}: один поток вызывает {@link SimpleQuikListener#onCallback(JSONObject)},
+ * другой забирает и выполняет переданный код.
+ * <p>
+ * Для коллбэка задана политика {@link OverflowPolicy#DROP_OLDEST}: в конце итерации поток
+ * исполнения останавливается раньше потока чтения, и при политике {@link OverflowPolicy#BLOCK}
+ * поток чтения ждал бы освобождения очереди бесконечно.
+ */
+@State(Scope.Group)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CallbackHandoffBenchmark {
+
+    @Param({"false", "true"})
+    public boolean useCallbackRing;
+
+    private CountingListener listener;
+    private JSONObject callback;
+
+    private static final class CountingListener extends SimpleQuikListener {
+        long processedCount = 0L;
+
+        @Override
+        protected void processCallback(final String callback, final JSONObject jsonObject) {
+            processedCount++;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        listener = new CountingListener();
+        listener.useCallbackRing = useCallbackRing;
+        listener.addCallbackSubscription("OnAllTrade", "*");
+        listener.setOverflowPolicy("OnAllTrade", OverflowPolicy.DROP_OLDEST);
+        callback = new JSONObject();
+        final JSONObject trade = new JSONObject();
+        //noinspection unchecked
+        trade.put("class_code", "TQBR");
+        //noinspection unchecked
+        trade.put("sec_code", "SBER");
+        //noinspection unchecked
+        trade.put("price", 300.5);
+        //noinspection unchecked
+        trade.put("qty", 10L);
+        //noinspection unchecked
+        callback.put("callback", "OnAllTrade");
+        //noinspection unchecked
+        callback.put("arg1", trade);
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public void reader() {
+        listener.onCallback(callback);
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public long execution() {
+        final Runnable runnable = listener.poll();
+        if (runnable != null) {
+            runnable.run();
+        }
+        return listener.processedCount;
+    }
+}
@@ -0,0 +1,65 @@
+package com.simpleutils.quik;
+
+import com.simpleutils.socket.SingleByteCharset;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Формирование конвертов запросов {@link EnvelopeEncoder}, которое {@link QuikConnect}
+ * выполняет при каждой отправке.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EnvelopeBenchmark {
+
+    private static final String CHUNK = """
+            local t = getQuoteLevel2("TQBR", "SBER")
+            return { bid = t.bid, offer = t.offer, comment = "Стакан" }""";
+    private static final List<?> ARGS = List.of("TQBR", "SBER", List.of("LAST", "BID", "OFFER", "LOTSIZE"), 1.5, 100L);
+
+    private EnvelopeEncoder encoder;
+    private long id = 0L;
+
+    @Setup
+    public void setup() {
+        encoder = new EnvelopeEncoder("benchmark", SingleByteCharset.of(Charset.forName("CP1251")));
+    }
+
+    @Benchmark
+    public ByteBuffer chunk() {
+        encoder.clear();
+        encoder.chunk(++id, CHUNK);
+        return encoder.buffer();
+    }
+
+    @Benchmark
+    public ByteBuffer function() {
+        encoder.clear();
+        encoder.function(++id, "simpleutils_getParamEx", ARGS);
+        return encoder.buffer();
+    }
+
+    @Benchmark
+    public ByteBuffer callback() {
+        encoder.clear();
+        encoder.callback(++id, "OnAllTrade", "function(t) return t.class_code == \"TQBR\" end");
+        return encoder.buffer();
+    }
+}
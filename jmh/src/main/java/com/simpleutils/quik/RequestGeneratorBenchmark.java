@@ -0,0 +1,79 @@
+package com.simpleutils.quik;
+
+import com.simpleutils.quik.requests.BulkGetParamExRequest;
+import com.simpleutils.quik.requests.BulkQuoteLevel2Request;
+import com.simpleutils.socket.SingleByteCharset;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Формирование запросов по большим наборам инструментов: текст chunk-запроса
+ * {@link com.simpleutils.quik.requests.QuikRequest#getRequest()} и конверт function-запроса
+ * с аргументами {@link com.simpleutils.quik.requests.QuikRequest#getArguments()}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestGeneratorBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int size;
+
+    private BulkQuoteLevel2Request quoteLevel2Request;
+    private BulkGetParamExRequest getParamExRequest;
+    private EnvelopeEncoder encoder;
+
+    @Setup
+    public void setup() {
+        final Set<ClassSecCode> classSecCodes = new LinkedHashSet<>();
+        for (int i = 0; i < size; i++) {
+            classSecCodes.add(ClassSecCode.of(i % 2 == 0 ? "TQBR" : "SPBFUT", "SEC" + i));
+        }
+        quoteLevel2Request = new BulkQuoteLevel2Request(classSecCodes);
+        getParamExRequest = new BulkGetParamExRequest(classSecCodes, List.of("LAST", "BID", "OFFER", "LOTSIZE", "SEC_PRICE_STEP"));
+        encoder = new EnvelopeEncoder("benchmark", SingleByteCharset.of(Charset.forName("CP1251")));
+    }
+
+    @Benchmark
+    public String quoteLevel2Chunk() {
+        return quoteLevel2Request.getRequest();
+    }
+
+    @Benchmark
+    public String getParamExChunk() {
+        return getParamExRequest.getRequest();
+    }
+
+    @Benchmark
+    public ByteBuffer quoteLevel2Function() {
+        encoder.clear();
+        encoder.function(1L, BulkQuoteLevel2Request.FUNCTION.getName(), quoteLevel2Request.getArguments());
+        return encoder.buffer();
+    }
+
+    @Benchmark
+    public ByteBuffer getParamExFunction() {
+        encoder.clear();
+        encoder.function(1L, BulkGetParamExRequest.FUNCTION.getName(), getParamExRequest.getArguments());
+        return encoder.buffer();
+    }
+}
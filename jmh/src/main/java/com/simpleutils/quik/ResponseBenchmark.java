@@ -0,0 +1,87 @@
+package com.simpleutils.quik;
+
+import com.simpleutils.LatencyHistogram;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Путь ответа MN-сервера в потоке чтения {@link QuikConnect}: разбор строки, поиск будущего
+ * ответа в {@link ResponseTable} по номеру запроса, запись задержки в гистограммы
+ * и завершение будущего ответа.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseBenchmark {
+
+    private static final long ID = 12345L;
+
+    @Param({"JSONSimpleDecoder", "StreamingDecoder"})
+    public String decoderName;
+
+    @Param({"scalar", "quotes"})
+    public String responseKind;
+
+    private QuikDecoder decoder;
+    private ByteBuffer line;
+    private ResponseTable responseTable;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final LatencyHistogram channelHistogram = new LatencyHistogram();
+
+    @Setup
+    public void setup() {
+        final Charset charset = Charset.forName("CP1251");
+        decoder = decoderName.equals("StreamingDecoder") ? new StreamingDecoder(charset) : new JSONSimpleDecoder(charset);
+        final String result;
+        if (responseKind.equals("quotes")) {
+            final StringBuilder sb = new StringBuilder("{\"bid_count\":\"20\",\"offer_count\":\"20\",\"bid\":[");
+            for (int i = 0; i < 20; i++) {
+                sb.append(i == 0 ? "" : ",").append("{\"price\":\"").append(300 + i).append(".5\",\"quantity\":\"").append(10 * i + 1).append("\"}");
+            }
+            sb.append("],\"offer\":[");
+            for (int i = 0; i < 20; i++) {
+                sb.append(i == 0 ? "" : ",").append("{\"price\":\"").append(321 + i).append(".5\",\"quantity\":\"").append(10 * i + 2).append("\"}");
+            }
+            result = sb.append("]}").toString();
+        } else {
+            result = "1";
+        }
+        final byte[] bytes = ("{\"id\":" + ID + ",\"clientId\":\"benchmark\",\"result\":" + result + "}").getBytes(charset);
+        line = ByteBuffer.allocateDirect(bytes.length);
+        line.put(bytes).flip();
+        responseTable = new ResponseTable(1024);
+    }
+
+    @Benchmark
+    public JSONObject decodeAndComplete() throws ParseException {
+        final ResponseTable.Response response = responseTable.register(ID, 1, TimeUnit.HOURS, histogram, channelHistogram);
+        final QuikMessage message = decoder.decode(line, 0, line.limit());
+        final ResponseTable.Response found = responseTable.remove(message.id());
+        final JSONObject jsonObject = message.toJSONObject();
+        found.completeWithLatency(jsonObject);
+        return response.getNow(null);
+    }
+
+    @Benchmark
+    public long decodeOnly() throws ParseException {
+        return decoder.decode(line, 0, line.limit()).id();
+    }
+}
@@ -0,0 +1,147 @@
+package com.simpleutils;
+
+import java.time.Duration;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Стратегия ожидания потока, которому временно нечего делать.
+ * <p>
+ * Типичный рабочий цикл: {@code idleStrategy.idle(doWork());}, где {@code doWork()} возвращает
+ * количество выполненной работы. Если работа была, то состояние стратегии сбрасывается.
+ */
+@FunctionalInterface
+public interface IdleStrategy {
+
+    /**
+     * Выполнить один шаг ожидания.
+     */
+    void idle();
+
+    /**
+     * Выполнить шаг ожидания, если работы не было, иначе сбросить состояние стратегии.
+     *
+     * @param workCount количество выполненной работы
+     */
+    default void idle(final int workCount) {
+        if (workCount > 0) {
+            reset();
+        } else {
+            idle();
+        }
+    }
+
+    /**
+     * Сбросить состояние стратегии после выполнения работы.
+     */
+    default void reset() {
+    }
+
+    /**
+     * @return активное ожидание: минимальная задержка ценой полной загрузки ядра
+     */
+    static IdleStrategy busySpin() {
+        return Thread::onSpinWait;
+    }
+
+    /**
+     * @return уступка процессора другим потокам
+     */
+    static IdleStrategy yielding() {
+        return Thread::yield;
+    }
+
+    /**
+     * @param nanos длительность парковки в наносекундах
+     * @return парковка потока на указанное время
+     */
+    static IdleStrategy parking(final long nanos) {
+        return () -> LockSupport.parkNanos(nanos);
+    }
+
+    /**
+     * @param duration длительность паузы
+     * @return пауза {@link Thread#sleep(Duration)}: минимальная загрузка процессора ценой задержки
+     * до длительности паузы; прерывание потока сохраняется
+     */
+    static IdleStrategy sleeping(final Duration duration) {
+        return () -> {
+            try {
+                Thread.sleep(duration);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+
+    /**
+     * Стратегия с состоянием: каждый поток должен использовать свой экземпляр.
+     *
+     * @param spins количество шагов активного ожидания
+     * @return активное ожидание, после указанного количества шагов — уступка процессора другим потокам
+     */
+    static IdleStrategy spinThenYield(final int spins) {
+        return new IdleStrategy() {
+            private int count = 0;
+
+            @Override
+            public void idle() {
+                if (count < spins) {
+                    count++;
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            }
+
+            @Override
+            public void reset() {
+                count = 0;
+            }
+        };
+    }
+
+    /**
+     * Стратегия с состоянием: каждый поток должен использовать свой экземпляр.
+     * <p>
+     * После выполненной работы поток сначала ожидает активно, затем уступает процессор,
+     * затем паркуется, удваивая длительность парковки от минимальной до максимальной.
+     * Начало пачки сообщений обрабатывается с задержкой не более максимальной парковки,
+     * а при длительном простое загрузка процессора близка к нулевой.
+     *
+     * @param spins        количество шагов активного ожидания
+     * @param yields       количество уступок процессора
+     * @param minParkNanos минимальная длительность парковки в наносекундах
+     * @param maxParkNanos максимальная длительность парковки в наносекундах
+     * @return прогрессивное ожидание
+     */
+    static IdleStrategy backoff(final int spins, final int yields, final long minParkNanos, final long maxParkNanos) {
+        if (spins < 0 || yields < 0 || minParkNanos <= 0L || maxParkNanos < minParkNanos) {
+            throw new IllegalArgumentException("Invalid backoff: spins=" + spins + ", yields=" + yields
+                                               + ", minParkNanos=" + minParkNanos + ", maxParkNanos=" + maxParkNanos);
+        }
+        return new IdleStrategy() {
+            private int count = 0;
+            private long parkNanos = minParkNanos;
+
+            @Override
+            public void idle() {
+                if (count < spins) {
+                    count++;
+                    Thread.onSpinWait();
+                } else if (count - spins < yields) {
+                    count++;
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(parkNanos);
+                    parkNanos = Math.min(parkNanos << 1, maxParkNanos);
+                }
+            }
+
+            @Override
+            public void reset() {
+                count = 0;
+                parkNanos = minParkNanos;
+            }
+        };
+    }
+}
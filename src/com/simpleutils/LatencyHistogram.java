@@ -0,0 +1,184 @@
+package com.simpleutils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Гистограмма задержек с логарифмически-линейными интервалами фиксированного размера.
+ * <p>
+ * Значения от 0 до 15 хранятся точно, а каждый следующий интервал [2<sup>k</sup>, 2<sup>k+1</sup>)
+ * разбит на 16 равных частей, поэтому относительная погрешность квантилей не превышает 1/16.
+ * Гистограмма занимает около 8 КБ независимо от количества значений.
+ * <p>
+ * Запись значения не выделяет память и не использует блокировок: она сводится к нескольким
+ * атомарным операциям и может выполняться из нескольких потоков одновременно.
+ * Снимок с обнулением ({@link #snapshot(boolean)}) позволяет получать распределение
+ * за интервал времени; значения, записанные во время снятия снимка, попадают либо в этот,
+ * либо в следующий интервал.
+ */
+public class LatencyHistogram {
+    /**
+     * Количество бит линейной части интервала.
+     */
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    /**
+     * Количество интервалов: точные значения до 16 и по 16 частей на каждую степень двойки от 4 до 62.
+     */
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (Long.SIZE - 1 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Конструктор пустой гистограммы.
+     */
+    public LatencyHistogram() {
+    }
+
+    /**
+     * Записать значение. Отрицательные значения считаются нулевыми.
+     *
+     * @param value значение, например, задержка в наносекундах
+     */
+    public void record(final long value) {
+        final long v = Math.max(0L, value);
+        counts.getAndIncrement(bucketIndex(v));
+        sum.getAndAdd(v);
+        long m = max.get();
+        while (v > m && !max.compareAndSet(m, v)) {
+            m = max.get();
+        }
+    }
+
+    /**
+     * Получить снимок гистограммы.
+     *
+     * @param reset обнулить ли гистограмму после снятия снимка
+     * @return снимок
+     */
+    public Snapshot snapshot(final boolean reset) {
+        final long[] snapshotCounts = new long[BUCKET_COUNT];
+        long count = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            final long c = reset ? counts.getAndSet(i, 0L) : counts.get(i);
+            snapshotCounts[i] = c;
+            count += c;
+        }
+        final long snapshotSum = reset ? sum.getAndSet(0L) : sum.get();
+        final long snapshotMax = reset ? max.getAndSet(0L) : max.get();
+        return new Snapshot(snapshotCounts, count, snapshotSum, snapshotMax);
+    }
+
+    /**
+     * Обнулить гистограмму.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0L);
+        }
+        sum.set(0L);
+        max.set(0L);
+    }
+
+    static int bucketIndex(final long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int shift = exponent - SUB_BUCKET_BITS;
+        return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + (int) (value >>> shift) - SUB_BUCKET_COUNT;
+    }
+
+    /**
+     * @param index номер интервала
+     * @return наибольшее значение, попадающее в интервал
+     */
+    static long bucketUpperBound(final int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        final long subBucket = SUB_BUCKET_COUNT + (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        final long lowerBound = subBucket << shift;
+        return lowerBound + (1L << shift) - 1L;
+    }
+
+    /**
+     * Снимок гистограммы.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(final long[] counts, final long count, final long sum, final long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * @return количество значений
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return наибольшее значение
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @return среднее значение или {@code NaN}, если значений нет
+         */
+        public double getMean() {
+            return count == 0L ? Double.NaN : (double) sum / count;
+        }
+
+        /**
+         * Получить квантиль распределения. Возвращается верхняя граница интервала,
+         * содержащего квантиль, но не более наибольшего значения.
+         *
+         * @param quantile уровень квантиля от 0 до 1
+         * @return квантиль или 0, если значений нет
+         */
+        public long getValueAtQuantile(final double quantile) {
+            if (count == 0L) {
+                return 0L;
+            }
+            final long rank = Math.max(1L, (long) Math.ceil(Math.min(1.0, Math.max(0.0, quantile)) * count));
+            long accumulated = 0L;
+            for (int i = 0; i < counts.length; i++) {
+                accumulated += counts[i];
+                if (accumulated >= rank) {
+                    return Math.min(bucketUpperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        public long getP50() {
+            return getValueAtQuantile(0.5);
+        }
+
+        public long getP99() {
+            return getValueAtQuantile(0.99);
+        }
+
+        public long getP999() {
+            return getValueAtQuantile(0.999);
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + " p50=" + getP50() + " p99=" + getP99() + " p999=" + getP999() + " max=" + max;
+        }
+    }
+}
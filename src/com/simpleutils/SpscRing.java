@@ -0,0 +1,174 @@
+package com.simpleutils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Кольцевой буфер для передачи данных от одного потока-производителя одному потоку-потребителю.
+ * <p>
+ * Ячейки буфера создаются заранее и переиспользуются, поэтому передача не требует выделения памяти.
+ * Производитель получает свободную ячейку методом {@link #tryClaim()}, заполняет её
+ * и публикует методом {@link #publish()}. Потребитель получает очередную ячейку методом
+ * {@link #peek()}, обрабатывает её и освобождает методом {@link #release()},
+ * либо обрабатывает сразу несколько ячеек методом {@link #drain(Consumer, int)}.
+ *
+ * @param <T> тип ячейки
+ */
+public final class SpscRing<T> {
+
+    private final Object[] slots;
+    private final int mask;
+    /**
+     * Номер следующей ячейки для потребителя; изменяется только потребителем.
+     */
+    private final AtomicLong head = new AtomicLong();
+    /**
+     * Номер следующей ячейки для производителя; изменяется только производителем.
+     */
+    private final AtomicLong tail = new AtomicLong();
+    /**
+     * Известное производителю значение {@link #head}.
+     */
+    private long headCache = 0;
+    /**
+     * Известное потребителю значение {@link #tail}.
+     */
+    private long tailCache = 0;
+
+    /**
+     * Конструктор.
+     *
+     * @param capacity ёмкость буфера, округляемая вверх до степени двойки
+     * @param factory  фабрика ячеек
+     */
+    public SpscRing(final int capacity, final Supplier<? extends T> factory) {
+        final int n = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        slots = new Object[n];
+        for (int i = 0; i < n; i++) {
+            slots[i] = factory.get();
+        }
+        mask = n - 1;
+    }
+
+    /**
+     * @return ёмкость буфера
+     */
+    public int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * @return количество опубликованных и ещё не освобождённых ячеек
+     */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     * Получить свободную ячейку для заполнения. Вызывается только производителем.
+     *
+     * @return ячейка или {@code null}, если буфер заполнен
+     */
+    @SuppressWarnings("unchecked")
+    public T tryClaim() {
+        final long t = tail.get();
+        if (t - headCache >= slots.length) {
+            headCache = head.get();
+            if (t - headCache >= slots.length) {
+                return null;
+            }
+        }
+        return (T) slots[(int) t & mask];
+    }
+
+    /**
+     * Получить свободную ячейку для заполнения, ожидая освобождения места. Вызывается только производителем.
+     * Ожидание прекращается, если поток прерван; признак прерывания сохраняется.
+     *
+     * @param idleStrategy стратегия ожидания
+     * @return ячейка или {@code null}, если ожидание прервано
+     */
+    public T claim(final IdleStrategy idleStrategy) {
+        return claim(idleStrategy, () -> false);
+    }
+
+    /**
+     * Получить свободную ячейку для заполнения, ожидая освобождения места. Вызывается только производителем.
+     * Ожидание прекращается, если поток прерван или условие отмены выполнено, например, потребитель
+     * остановлен и место в буфере уже не освободится; признак прерывания сохраняется.
+     *
+     * @param idleStrategy стратегия ожидания
+     * @param isAborted    условие отмены ожидания; проверяется перед каждым шагом ожидания
+     * @return ячейка или {@code null}, если ожидание прервано или отменено
+     */
+    public T claim(final IdleStrategy idleStrategy, final BooleanSupplier isAborted) {
+        T slot;
+        while ((slot = tryClaim()) == null) {
+            if (Thread.currentThread().isInterrupted() || isAborted.getAsBoolean()) {
+                idleStrategy.reset();
+                return null;
+            }
+            idleStrategy.idle();
+        }
+        idleStrategy.reset();
+        return slot;
+    }
+
+    /**
+     * Опубликовать ячейку, полученную методом {@link #tryClaim()}. Вызывается только производителем.
+     */
+    public void publish() {
+        tail.lazySet(tail.get() + 1);
+    }
+
+    /**
+     * Получить очередную опубликованную ячейку без её освобождения. Вызывается только потребителем.
+     *
+     * @return ячейка или {@code null}, если буфер пуст
+     */
+    @SuppressWarnings("unchecked")
+    public T peek() {
+        final long h = head.get();
+        if (h >= tailCache) {
+            tailCache = tail.get();
+            if (h >= tailCache) {
+                return null;
+            }
+        }
+        return (T) slots[(int) h & mask];
+    }
+
+    /**
+     * Освободить ячейку, полученную методом {@link #peek()}. Вызывается только потребителем.
+     */
+    public void release() {
+        head.lazySet(head.get() + 1);
+    }
+
+    /**
+     * Обработать и освободить опубликованные ячейки. Вызывается только потребителем.
+     * Ячейка освобождается и в том случае, если обработчик выбросил исключение.
+     *
+     * @param handler обработчик ячейки
+     * @param limit   максимальное количество обрабатываемых ячеек
+     * @return количество обработанных ячеек
+     */
+    @SuppressWarnings("unchecked")
+    public int drain(final Consumer<? super T> handler, final int limit) {
+        final long h = head.get();
+        if (tailCache - h < limit) {
+            tailCache = tail.get();
+        }
+        final int n = (int) Math.min(limit, tailCache - h);
+        for (int i = 0; i < n; i++) {
+            try {
+                handler.accept((T) slots[(int) (h + i) & mask]);
+            } finally {
+                head.lazySet(h + i + 1);
+            }
+        }
+        return Math.max(n, 0);
+    }
+}
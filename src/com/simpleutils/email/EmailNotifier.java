@@ -2,6 +2,8 @@ package com.simpleutils.email;
 
 import com.simpleutils.logs.AbstractLogger;
 import com.simpleutils.logs.SevenDaysLogger;
+import com.simpleutils.metrics.MetricGroup;
+import com.simpleutils.metrics.MetricsRegistry;
 
 import javax.mail.MessagingException;
 import java.io.File;
@@ -12,6 +14,7 @@ import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Реализация рассылки уведомлений по email.
@@ -28,12 +31,18 @@ import java.util.List;
  * Текст письма.
  * </pre>
  * Информация для аутентификации на smtp-сервере записана в файле mail.properties.
+ * <p>
+ * Количество отправленных писем, ошибок отправки и файлов, перемещённых в папку errors, публикуется в JMX
+ * как MBean {@code com.simpleutils:type=EmailNotifier,name=<путь к папке outgoing>}.
  */
 class EmailNotifier {
 
     private static final Thread mainThread = Thread.currentThread();
     private final AbstractLogger logger;
     private EmailSender emailSender = null;
+    private final LongAdder emailsSent;
+    private final LongAdder emailsFailed;
+    private final LongAdder filesFailed;
     private int minute = -1;
 
     private EmailNotifier() {
@@ -41,6 +50,12 @@ class EmailNotifier {
                 "logs/" + EmailNotifier.class.getSimpleName() + ".%d.log",
                 "logs/" + EmailNotifier.class.getSimpleName() + ".%d.err");
         logger.info("STARTED");
+        final MetricGroup metrics = MetricsRegistry.getDefault().group(EmailNotifier.class.getSimpleName(),
+                new File("outgoing").getAbsolutePath());
+        emailsSent = metrics.counter("emailsSent");
+        emailsFailed = metrics.counter("emailsFailed");
+        filesFailed = metrics.counter("filesFailed");
+        MetricsRegistry.getDefault().publish();
     }
 
     public static void main(final String[] args) {
@@ -144,6 +159,7 @@ class EmailNotifier {
                             StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
                     logger.info("Done.");
                 } catch (final IOException e) {
+                    filesFailed.increment();
                     logger.log(AbstractLogger.ERROR, "Cannot process file " + file.getAbsolutePath(), e);
                     logger.info("Moving file " + file.getName() + " to errors folder...");
                     file.renameTo(new File("errors", file.getName()));
@@ -163,12 +179,14 @@ class EmailNotifier {
                            final List<String> attachmentList) {
         try {
             emailSender.sendEmail(from, to, subject, text, attachmentList);
+            emailsSent.increment();
             try {
                 Thread.sleep(1000L);
             } catch (final InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
         } catch (final MessagingException mex) {
+            emailsFailed.increment();
             logger.log(AbstractLogger.ERROR, "Cannot send email to " + to, mex);
         }
     }
@@ -1,6 +1,10 @@
 package com.simpleutils.logs;
 
+import com.simpleutils.metrics.MetricGroup;
+import com.simpleutils.metrics.MetricsRegistry;
+
 import java.util.Formatter;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
 
 @SuppressWarnings({"UnusedReturnValue", "unused"})
@@ -24,6 +28,15 @@ public abstract class AbstractLogger {
      * Нужно ли выводить имя вычислительного потока.
      */
     protected volatile boolean isThreadNameEnabled = true;
+    /**
+     * Показатели логгера в реестре {@link MetricsRegistry#getDefault()}: группа {@code Logger}
+     * с именем, равным простому имени класса логгера, общая для всех логгеров этого класса.
+     * Подклассы учитывают выведенные строки методом {@link #countWritten(String)}.
+     */
+    protected final MetricGroup metrics = MetricsRegistry.getDefault().group("Logger",
+            getClass().getSimpleName().isEmpty() ? getClass().getName() : getClass().getSimpleName());
+    private final LongAdder linesWritten = metrics.counter("linesWritten");
+    private final LongAdder bytesWritten = metrics.counter("bytesWritten");
 
     @SuppressWarnings("NonStrictComparisonCanBeEquality")
     protected static String messageType(final int level) {
@@ -82,8 +95,41 @@ public abstract class AbstractLogger {
 
     protected abstract void print(int level, String s);
 
+    /**
+     * Учесть строку лога в показателях {@code linesWritten} и {@code bytesWritten}.
+     * Байты считаются в кодировке UTF-8 вместе с переводом строки; трассировка стека
+     * и дублирование строки в поток ошибок не учитываются.
+     *
+     * @param s строка лога
+     */
+    protected void countWritten(final String s) {
+        linesWritten.increment();
+        bytesWritten.add(utf8Length(s) + System.lineSeparator().length());
+    }
+
+    private static long utf8Length(final String s) {
+        long length = s.length();
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c >= 0x800) {
+                length += Character.isSurrogate(c) ? 1 : 2;
+            } else if (c >= 0x80) {
+                length++;
+            }
+        }
+        return length;
+    }
+
     protected abstract void print(int level, String s, Throwable thrown);
 
+    /**
+     * @param level уровень логгирования
+     * @return {@code true}, если сообщения указанного уровня выводятся
+     */
+    public boolean isEnabled(final int level) {
+        return level >= logLevel;
+    }
+
     public void log(final int level, final String message) {
         if (level >= logLevel) {
             print(level, getLogString(level, message));
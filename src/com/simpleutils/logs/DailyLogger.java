@@ -80,6 +80,7 @@ public class DailyLogger extends AbstractLogger {
         synchronized (mutex) {
             ensureLogStreamRotation();
             logStream.println(s);
+            countWritten(s);
             if (level >= errLevel) {
                 final String errorFileName = getFileName(errFileNameFormat, ZonedDateTime.now());
                 try (final PrintStream errStream = new PrintStream(new FileOutputStream(errorFileName, true), true, StandardCharsets.UTF_8)) {
@@ -95,6 +96,7 @@ public class DailyLogger extends AbstractLogger {
         synchronized (mutex) {
             ensureLogStreamRotation();
             logStream.println(s);
+            countWritten(s);
             thrown.printStackTrace(logStream);
             if (level >= errLevel) {
                 final String errorFileName = getFileName(errFileNameFormat, ZonedDateTime.now());
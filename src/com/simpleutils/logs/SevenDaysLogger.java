@@ -77,6 +77,7 @@ public class SevenDaysLogger extends AbstractLogger {
         synchronized (mutex) {
             ensureLogStreamRotation();
             logStream.println(s);
+            countWritten(s);
             if (level >= errLevel) {
                 final String errorFileName = errFileNameFormat.formatted(ZonedDateTime.now().getDayOfWeek().getValue());
                 try (final PrintStream errStream = new PrintStream(new FileOutputStream(errorFileName, true), true, StandardCharsets.UTF_8)) {
@@ -92,6 +93,7 @@ public class SevenDaysLogger extends AbstractLogger {
         synchronized (mutex) {
             ensureLogStreamRotation();
             logStream.println(s);
+            countWritten(s);
             thrown.printStackTrace(logStream);
             if (level >= errLevel) {
                 final String errorFileName = errFileNameFormat.formatted(ZonedDateTime.now().getDayOfWeek().getValue());
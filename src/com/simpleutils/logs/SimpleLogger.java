@@ -95,6 +95,7 @@ public class SimpleLogger extends AbstractLogger {
     protected void print(final int level, final String s) {
         synchronized (mutex) {
             logStream.println(s);
+            countWritten(s);
             if (level >= errLevel && errStream != null) {
                 errStream.println(s);
             }
@@ -105,6 +106,7 @@ public class SimpleLogger extends AbstractLogger {
     protected void print(final int level, final String s, final Throwable thrown) {
         synchronized (mutex) {
             logStream.println(s);
+            countWritten(s);
             thrown.printStackTrace(logStream);
             if (level >= errLevel && errStream != null) {
                 errStream.println(s);
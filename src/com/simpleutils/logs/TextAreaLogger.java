@@ -72,6 +72,7 @@ public class TextAreaLogger extends AbstractLogger {
     protected void print(final int level, final String s) {
         synchronized (mutex) {
             if (logTextArea != null) {
+                countWritten(s);
                 final JTextArea textArea = logTextArea;
                 SwingUtilities.invokeLater(() -> {
                     truncate(textArea.getDocument(), logTruncationLength, logTargetLength);
@@ -95,6 +96,7 @@ public class TextAreaLogger extends AbstractLogger {
         final String stackTrace = stackTraceString(thrown);
         synchronized (mutex) {
             if (logTextArea != null) {
+                countWritten(s);
                 final JTextArea textArea = logTextArea;
                 SwingUtilities.invokeLater(() -> {
                     truncate(textArea.getDocument(), logTruncationLength, logTargetLength);
@@ -0,0 +1,108 @@
+package com.simpleutils.metrics;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Группа именованных показателей одного объекта, например, подключения к терминалу или логгера.
+ * <p>
+ * Показатель — это либо счётчик {@link LongAdder}, увеличиваемый без блокировок из любых потоков,
+ * либо датчик {@link LongSupplier}, значение которого вычисляется при чтении.
+ * Группа публикуется в JMX как один MBean, атрибуты которого совпадают с показателями.
+ */
+public final class MetricGroup {
+
+    private final String type;
+    private final String name;
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> metrics = new ConcurrentHashMap<>();
+
+    MetricGroup(final String type, final String name) {
+        this.type = type;
+        this.name = name;
+    }
+
+    /**
+     * @return тип группы, например, {@code QuikConnect}
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return имя группы, например, идентификатор клиента
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Получить счётчик, создав его при первом обращении. Повторные обращения с тем же именем
+     * возвращают тот же счётчик, поэтому объекты одной группы суммируют свои значения.
+     *
+     * @param metric имя показателя
+     * @return счётчик
+     */
+    public LongAdder counter(final String metric) {
+        return counters.computeIfAbsent(metric, key -> {
+            final LongAdder adder = new LongAdder();
+            metrics.put(key, adder::sum);
+            return adder;
+        });
+    }
+
+    /**
+     * Задать датчик. Ранее заданный показатель с тем же именем заменяется.
+     *
+     * @param metric   имя показателя
+     * @param supplier функция вычисления значения; вызывается при чтении и не должна блокироваться надолго
+     */
+    public void gauge(final String metric, final LongSupplier supplier) {
+        counters.remove(metric);
+        metrics.put(metric, supplier);
+    }
+
+    /**
+     * Получить значение показателя.
+     *
+     * @param metric имя показателя
+     * @return значение
+     * @throws IllegalArgumentException если показатель не найден
+     */
+    public long get(final String metric) {
+        final LongSupplier supplier = metrics.get(metric);
+        if (supplier == null) {
+            throw new IllegalArgumentException("Unknown metric: " + metric);
+        }
+        return supplier.getAsLong();
+    }
+
+    /**
+     * @return значения всех показателей, упорядоченные по имени
+     */
+    public Map<String, Long> snapshot() {
+        final Map<String, Long> snapshot = new TreeMap<>();
+        metrics.forEach((metric, supplier) -> snapshot.put(metric, supplier.getAsLong()));
+        return snapshot;
+    }
+
+    /**
+     * @return имена показателей
+     */
+    Set<String> names() {
+        return metrics.keySet();
+    }
+
+    boolean contains(final String metric) {
+        return metrics.containsKey(metric);
+    }
+
+    @Override
+    public String toString() {
+        return type + "[" + name + "]" + snapshot();
+    }
+}
@@ -0,0 +1,71 @@
+package com.simpleutils.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Представление группы показателей в виде MBean с атрибутами только для чтения.
+ * Описание атрибутов строится при каждом запросе, поэтому показатели, добавленные
+ * после публикации, также видны.
+ */
+final class MetricGroupMBean implements DynamicMBean {
+
+    private final MetricGroup group;
+
+    MetricGroupMBean(final MetricGroup group) {
+        this.group = group;
+    }
+
+    @Override
+    public Object getAttribute(final String attribute) throws AttributeNotFoundException {
+        if (!group.contains(attribute)) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return group.get(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(final String[] attributes) {
+        final AttributeList list = new AttributeList();
+        for (final String attribute : attributes) {
+            if (group.contains(attribute)) {
+                list.add(new Attribute(attribute, group.get(attribute)));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(final Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Read-only attribute: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(final AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(final String actionName, final Object[] params, final String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        final List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (final String metric : new TreeSet<>(group.names())) {
+            attributes.add(new MBeanAttributeInfo(metric, "long", metric, true, false, false));
+        }
+        return new MBeanInfo(MetricGroup.class.getName(), group.getType() + " " + group.getName(),
+                attributes.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[0], null);
+    }
+}
@@ -0,0 +1,223 @@
+package com.simpleutils.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Реестр групп показателей с публикацией в JMX.
+ * <p>
+ * Компоненты библиотеки регистрируют свои показатели в реестре {@link #getDefault()}.
+ * Обновление счётчиков не использует блокировок и не выделяет память, поэтому допустимо
+ * в горячих участках кода. Публикация в JMX выполняется приложением явно вызовом
+ * {@link #publish()}; группы, созданные после публикации, регистрируются автоматически.
+ * Каждая группа становится MBean с именем {@code com.simpleutils:type=<тип>,name=<имя>}.
+ */
+public final class MetricsRegistry {
+
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry("com.simpleutils");
+
+    private final String domain;
+    private final ConcurrentHashMap<String, MetricGroup> groups = new ConcurrentHashMap<>();
+    private final List<ObjectName> registeredNames = new ArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile MBeanServer mBeanServer = null;
+
+    /**
+     * Конструктор.
+     *
+     * @param domain домен имён MBean
+     */
+    public MetricsRegistry(final String domain) {
+        this.domain = domain;
+    }
+
+    /**
+     * @return реестр, используемый компонентами библиотеки
+     */
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Получить группу показателей, создав её при первом обращении.
+     *
+     * @param type тип группы
+     * @param name имя группы
+     * @return группа показателей
+     */
+    public MetricGroup group(final String type, final String name) {
+        final String key = key(type, name);
+        final MetricGroup group = groups.get(key);
+        if (group != null) {
+            return group;
+        }
+        final MetricGroup newGroup = new MetricGroup(type, name);
+        final MetricGroup existing = groups.putIfAbsent(key, newGroup);
+        if (existing != null) {
+            return existing;
+        }
+        registerIfPublished(newGroup);
+        return newGroup;
+    }
+
+    /**
+     * Создать группу показателей, принадлежащую одному объекту. Если группа с таким именем уже есть,
+     * то к имени добавляется номер: {@code name#2}, {@code name#3} и т.д. Группу следует удалить
+     * методом {@link #remove(MetricGroup)}, когда объект больше не используется.
+     *
+     * @param type тип группы
+     * @param name желаемое имя группы
+     * @return новая группа показателей
+     */
+    public MetricGroup newGroup(final String type, final String name) {
+        for (int i = 1; ; i++) {
+            final String groupName = i == 1 ? name : name + "#" + i;
+            final MetricGroup newGroup = new MetricGroup(type, groupName);
+            if (groups.putIfAbsent(key(type, groupName), newGroup) == null) {
+                registerIfPublished(newGroup);
+                return newGroup;
+            }
+        }
+    }
+
+    /**
+     * Удалить группу показателей из реестра и снять её публикацию в JMX.
+     * Показатели группы остаются доступны через саму группу.
+     *
+     * @param group группа показателей
+     */
+    public void remove(final MetricGroup group) {
+        if (!groups.remove(key(group.getType(), group.getName()), group)) {
+            return;
+        }
+        lock.lock();
+        try {
+            final MBeanServer server = mBeanServer;
+            if (server == null) {
+                return;
+            }
+            final ObjectName objectName = objectName(group);
+            if (registeredNames.remove(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (final JMException ignored) {
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return все группы показателей
+     */
+    public Collection<MetricGroup> groups() {
+        return List.copyOf(groups.values());
+    }
+
+    /**
+     * Опубликовать группы показателей в платформенном MBean-сервере.
+     */
+    public void publish() {
+        publish(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    /**
+     * Опубликовать группы показателей в MBean-сервере. Группы, созданные позже,
+     * публикуются автоматически. Повторная публикация снимает предыдущую.
+     *
+     * @param server MBean-сервер
+     */
+    public void publish(final MBeanServer server) {
+        lock.lock();
+        try {
+            unpublish();
+            mBeanServer = server;
+            for (final MetricGroup group : groups.values()) {
+                register(server, group);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Снять публикацию групп показателей.
+     */
+    public void unpublish() {
+        lock.lock();
+        try {
+            final MBeanServer server = mBeanServer;
+            if (server == null) {
+                return;
+            }
+            for (final ObjectName objectName : registeredNames) {
+                try {
+                    server.unregisterMBean(objectName);
+                } catch (final JMException ignored) {
+                }
+            }
+            registeredNames.clear();
+            mBeanServer = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Получить имя MBean группы показателей.
+     *
+     * @param group группа показателей
+     * @return имя MBean
+     * @throws MalformedObjectNameException если имя не удалось построить
+     */
+    public ObjectName objectName(final MetricGroup group) throws MalformedObjectNameException {
+        return new ObjectName(domain + ":type=" + quoteIfNeeded(group.getType()) + ",name=" + quoteIfNeeded(group.getName()));
+    }
+
+    private static String key(final String type, final String name) {
+        return type + '\0' + name;
+    }
+
+    private void registerIfPublished(final MetricGroup group) {
+        if (mBeanServer != null) {
+            lock.lock();
+            try {
+                final MBeanServer server = mBeanServer;
+                if (server != null) {
+                    register(server, group);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void register(final MBeanServer server, final MetricGroup group) {
+        try {
+            final ObjectName objectName = objectName(group);
+            server.registerMBean(new MetricGroupMBean(group), objectName);
+            registeredNames.add(objectName);
+        } catch (final JMException ignored) {
+        }
+    }
+
+    private static String quoteIfNeeded(final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            switch (value.charAt(i)) {
+                case ',', '=', ':', '"', '*', '?', '\n' -> {
+                    return ObjectName.quote(value);
+                }
+                default -> {
+                }
+            }
+        }
+        return value.isEmpty() ? ObjectName.quote(value) : value;
+    }
+}
@@ -1,7 +1,23 @@
 package com.simpleutils.quik;
 
-import java.util.Queue;
-import java.util.concurrent.LinkedBlockingDeque;
+import com.simpleutils.IdleStrategy;
+import com.simpleutils.SpscRing;
+import com.simpleutils.metrics.MetricGroup;
+import com.simpleutils.metrics.MetricsRegistry;
+import org.json.simple.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 public abstract class AbstractQuikListener implements QuikListener {
     /**
@@ -12,14 +28,129 @@ public abstract class AbstractQuikListener implements QuikListener {
      * Поток для исполнения бизнес-логики.
      */
     public volatile Thread executionThread = null;
+    /**
+     * Максимальное количество коллбэков в очереди на исполнение.
+     * Прочие задачи (открытие и закрытие соединения, ошибки) в этом количестве не учитываются
+     * и ставятся в очередь всегда.
+     */
+    public volatile int callbackQueueCapacity = 100_000;
+    /**
+     * Передавать ли коллбэки в поток исполнения через кольцевой буфер {@link SpscRing}
+     * с переиспользуемыми ячейками вместо очереди задач. Буфер ёмкостью {@link #callbackQueueCapacity}
+     * создаётся при получении первого коллбэка, поэтому значение следует задавать до запуска подключения.
+     * <p>
+     * Через буфер передаются коллбэки с политиками {@link OverflowPolicy#BLOCK} и
+     * {@link OverflowPolicy#DROP_OLDEST}. При заполнении буфера в первом случае поток чтения ждёт
+     * согласно {@link #callbackIdleStrategy} (но не после прерывания потока или остановки потока
+     * исполнения, см. {@link #stopExecution()}), а во втором новый коллбэк отбрасывается: производитель
+     * не может освобождать ячейки, принадлежащие потребителю. Объединяемые коллбэки и прочие задачи
+     * проходят через очередь и исполняются раньше коллбэков из буфера.
+     * <p>
+     * Коллбэки в виде JSON-объектов передаются через буфер, только если {@link #callbackDispatcher()}
+     * возвращает обработчик; иначе они проходят через очередь.
+     */
+    public volatile boolean useCallbackRing = false;
+    /**
+     * Стратегия ожидания потока чтения при заполнении кольцевого буфера коллбэков.
+     */
+    public volatile IdleStrategy callbackIdleStrategy = IdleStrategy.parking(50_000L);
+    /**
+     * Кольцевой буфер коллбэков; создаётся потоком чтения CB-сокета.
+     */
+    private volatile SpscRing<CallbackSlot> ring = null;
+    /**
+     * Признак того, что ячейка, возвращённая {@link #poll()}, ещё не освобождена.
+     * Используется только потоком исполнения.
+     */
+    private boolean isSlotPending = false;
+    /**
+     * Обработчик ячеек кольцевого буфера при пакетной обработке.
+     */
+    private final Consumer<CallbackSlot> slotHandler = CallbackSlot::runAndClear;
+    /**
+     * Количество коллбэков, отброшенных при заполнении кольцевого буфера; изменяется только потоком чтения.
+     */
+    private volatile long ringDroppedCount = 0;
     /**
      * Очередь на исполнение.
      */
-    private final Queue<Runnable> queue = new LinkedBlockingDeque<>();
+    private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+    /**
+     * Коллбэки с политикой {@link OverflowPolicy#DROP_OLDEST} в порядке поступления. Хранятся
+     * отдельно от очереди, чтобы при переполнении старейший из них удалялся за постоянное время.
+     */
+    private final ArrayDeque<Droppable> droppables = new ArrayDeque<>();
+    /**
+     * Количество задач, поставленных в очередь {@link #queue}, и количество задач, взятых из неё.
+     * Определяют место коллбэков {@link #droppables} среди задач очереди.
+     */
+    private long queuedCount = 0;
+    private long polledCount = 0;
+    /**
+     * Блокировка очереди на исполнение.
+     */
+    private final ReentrantLock queueLock = new ReentrantLock();
+    /**
+     * Условие освобождения места в очереди для коллбэков.
+     */
+    private final Condition notFull = queueLock.newCondition();
+    /**
+     * Количество коллбэков в очереди.
+     */
+    private int callbackCount = 0;
+    /**
+     * Ожидающие исполнения объединяемые коллбэки по названию коллбэка и инструменту.
+     */
+    private final Map<ConflationKey, Conflated> conflatedMap = new HashMap<>();
+    /**
+     * Политики переполнения очереди по названиям коллбэков.
+     */
+    private final Map<String, OverflowPolicy> overflowPolicies = new ConcurrentHashMap<>();
+    /**
+     * Количество коллбэков, удалённых из очереди при переполнении.
+     */
+    private long droppedCount = 0;
+    /**
+     * Количество коллбэков, заменённых более свежими.
+     */
+    private long conflatedCount = 0;
+    /**
+     * Признак остановки потока исполнения, см. {@link #stopExecution()}.
+     */
+    private volatile boolean isExecutionStopped = false;
+    /**
+     * Показатели очереди на исполнение или {@code null}, если подключение не задано.
+     */
+    private volatile MetricGroup metrics = null;
+    /**
+     * Период проверки состояния потока исполнения при ожидании места в очереди.
+     */
+    private static final long STOP_CHECK_NANOS = 100_000_000L;
+    /**
+     * Исполнитель блокирующих задач в виртуальных потоках; создаётся при первом использовании.
+     */
+    private volatile ExecutorService forkExecutor = null;
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Кроме того, регистрирует показатели очереди на исполнение в реестре {@link MetricsRegistry#getDefault()}:
+     * группа {@code QuikListener} с именем, равным идентификатору клиента, содержит глубину очереди
+     * ({@code queueDepth}), количество отброшенных ({@code droppedCallbacks}) и объединённых
+     * ({@code conflatedCallbacks}) коллбэков. Группа удаляется из реестра при {@link #stopExecution()}.
+     */
     @Override
     public void setQuikConnect(final QuikConnect quikConnect) {
         this.quikConnect = quikConnect;
+        final MetricGroup previous = metrics;
+        if (previous != null) {
+            MetricsRegistry.getDefault().remove(previous);
+        }
+        final MetricGroup metrics = MetricsRegistry.getDefault().newGroup("QuikListener", quikConnect.clientId);
+        this.metrics = metrics;
+        metrics.gauge("queueDepth", this::getQueueDepth);
+        metrics.gauge("droppedCallbacks", this::getDroppedCount);
+        metrics.gauge("conflatedCallbacks", this::getConflatedCount);
     }
 
     @Override
@@ -27,13 +158,573 @@ public abstract class AbstractQuikListener implements QuikListener {
         return executionThread;
     }
 
+    /**
+     * Задать политику переполнения очереди для коллбэка.
+     * По умолчанию используется {@link OverflowPolicy#BLOCK}.
+     *
+     * @param callback название коллбэка
+     * @param policy   политика переполнения
+     */
+    public void setOverflowPolicy(final String callback, final OverflowPolicy policy) {
+        overflowPolicies.put(callback, policy);
+    }
+
+    /**
+     * @param callback название коллбэка
+     * @return политика переполнения очереди для коллбэка
+     */
+    public OverflowPolicy getOverflowPolicy(final String callback) {
+        return overflowPolicies.getOrDefault(callback, OverflowPolicy.BLOCK);
+    }
+
     @Override
     public void submit(final Runnable runnable) {
+        queueLock.lock();
+        try {
+            enqueue(runnable);
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    /**
+     * Поставить обработку коллбэка в очередь на исполнение с учётом ёмкости очереди
+     * и политики переполнения для данного коллбэка.
+     * <p>
+     * Для политики {@link OverflowPolicy#CONFLATE} инструмент определяется по коллбэку
+     * (см. {@link #classSecCodeOf(JSONObject)}); если определить его не удалось,
+     * то применяется политика {@link OverflowPolicy#BLOCK}.
+     *
+     * @param callback   название коллбэка
+     * @param jsonObject JSON-объект с информацией о коллбэке
+     * @param runnable   обработчик коллбэка
+     */
+    protected void submitCallback(final String callback, final JSONObject jsonObject, final Runnable runnable) {
+        final OverflowPolicy policy = getOverflowPolicy(callback);
+        submitCallback(callback, policy, policy == OverflowPolicy.CONFLATE ? classSecCodeOf(jsonObject) : null, runnable);
+    }
+
+    /**
+     * Поставить обработку коллбэка в очередь на исполнение с учётом ёмкости очереди
+     * и политики переполнения для данного коллбэка.
+     *
+     * @param callback название коллбэка
+     * @param message  сообщение, описывающее коллбэк; используется только для определения инструмента
+     * @param runnable обработчик коллбэка
+     */
+    protected void submitCallback(final String callback, final QuikMessage message, final Runnable runnable) {
+        final OverflowPolicy policy = getOverflowPolicy(callback);
+        submitCallback(callback, policy, policy == OverflowPolicy.CONFLATE ? classSecCodeOf(message) : null, runnable);
+    }
+
+    private void submitCallback(final String callback, final OverflowPolicy policy, final ClassSecCode classSecCode,
+                                final Runnable runnable) {
+        queueLock.lock();
+        try {
+            if (classSecCode != null) {
+                final ConflationKey key = new ConflationKey(callback, classSecCode);
+                final Conflated conflated = conflatedMap.get(key);
+                if (conflated != null) {
+                    conflated.runnable = runnable;
+                    conflatedCount++;
+                    return;
+                }
+                if (!awaitNotFull()) {
+                    droppedCount++;
+                    return;
+                }
+                final Conflated entry = new Conflated(key, runnable);
+                conflatedMap.put(key, entry);
+                enqueue(entry);
+            } else if (policy == OverflowPolicy.DROP_OLDEST) {
+                if (callbackCount >= callbackQueueCapacity && dropOldest()) {
+                    droppedCount++;
+                    callbackCount--;
+                }
+                if (callbackCount >= callbackQueueCapacity) {
+                    droppedCount++;
+                    return;
+                }
+                droppables.add(new Droppable(queuedCount, runnable));
+            } else {
+                if (!awaitNotFull()) {
+                    droppedCount++;
+                    return;
+                }
+                enqueue(new Callback(runnable));
+            }
+            callbackCount++;
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    /**
+     * Дождаться места в очереди. Ожидание прекращается, если поток прерван (например, при остановке
+     * подключения) или поток исполнения остановлен; признак прерывания потока сохраняется.
+     *
+     * @return {@code true}, если место в очереди есть, и {@code false}, если коллбэк следует отбросить
+     */
+    private boolean awaitNotFull() {
+        while (callbackCount >= callbackQueueCapacity) {
+            if (isExecutionStopped()) {
+                return false;
+            }
+            try {
+                notFull.awaitNanos(STOP_CHECK_NANOS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return {@code true}, если вызван {@link #stopExecution()} или поток исполнения завершился
+     */
+    protected boolean isExecutionStopped() {
+        if (isExecutionStopped) {
+            return true;
+        }
+        final Thread thread = executionThread;
+        return thread != null && thread.getState() == Thread.State.TERMINATED;
+    }
+
+    /**
+     * Сообщить, что поток исполнения больше не обрабатывает очередь. Поток чтения, ожидающий места
+     * в очереди, освобождается, а коллбэки, не помещающиеся в очередь, отбрасываются.
+     * Показатели очереди удаляются из реестра {@link MetricsRegistry#getDefault()}.
+     * Вызывается при остановке потока исполнения, до {@link QuikConnect#shutdown()}.
+     */
+    public void stopExecution() {
+        isExecutionStopped = true;
+        final MetricGroup metrics = this.metrics;
+        if (metrics != null) {
+            MetricsRegistry.getDefault().remove(metrics);
+        }
+        queueLock.lock();
+        try {
+            notFull.signalAll();
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    private void enqueue(final Runnable runnable) {
         queue.add(runnable);
+        queuedCount++;
+    }
+
+    /**
+     * Удалить старейший коллбэк с политикой {@link OverflowPolicy#DROP_OLDEST}.
+     *
+     * @return {@code true}, если такой коллбэк был
+     */
+    private boolean dropOldest() {
+        return droppables.poll() != null;
+    }
+
+    /**
+     * Передать коллбэк в поток исполнения через кольцевой буфер, если он используется для этого коллбэка.
+     *
+     * @param callback   название коллбэка
+     * @param jsonObject JSON-объект с информацией о коллбэке
+     * @return {@code true}, если коллбэк передан или отброшен, и {@code false}, если коллбэк
+     * следует поставить в очередь методом {@link #submitCallback(String, JSONObject, Runnable)},
+     * в том числе если {@link #callbackDispatcher()} не возвращает обработчик
+     */
+    protected boolean offerCallback(final String callback, final JSONObject jsonObject) {
+        final BiConsumer<String, JSONObject> dispatcher = callbackDispatcher();
+        if (dispatcher == null) {
+            return false;
+        }
+        return offerCallback(callback, jsonObject, dispatcher, null, null);
+    }
+
+    /**
+     * Передать типизированный коллбэк в поток исполнения через кольцевой буфер,
+     * если он используется для этого коллбэка.
+     *
+     * @param callback название коллбэка
+     * @param handler  обработчик, вызываемый в потоке исполнения
+     * @param value    типизированный коллбэк
+     * @param <T>      тип коллбэка
+     * @return {@code true}, если коллбэк передан или отброшен, и {@code false}, если коллбэк
+     * следует поставить в очередь методом {@link #submitCallback(String, QuikMessage, Runnable)}
+     */
+    protected <T> boolean offerCallback(final String callback, final Consumer<? super T> handler, final T value) {
+        return offerCallback(callback, null, null, handler, value);
     }
 
+    @SuppressWarnings("unchecked")
+    private boolean offerCallback(final String callback, final JSONObject jsonObject,
+                                  final BiConsumer<String, JSONObject> dispatcher,
+                                  final Consumer<?> handler, final Object value) {
+        if (!useCallbackRing) {
+            return false;
+        }
+        final OverflowPolicy policy = getOverflowPolicy(callback);
+        if (policy == OverflowPolicy.CONFLATE) {
+            return false;
+        }
+        SpscRing<CallbackSlot> r = ring;
+        if (r == null) {
+            r = new SpscRing<>(callbackQueueCapacity, CallbackSlot::new);
+            ring = r;
+        }
+        CallbackSlot slot = r.tryClaim();
+        if (slot == null) {
+            if (policy == OverflowPolicy.DROP_OLDEST) {
+                //noinspection NonAtomicOperationOnVolatileField
+                ringDroppedCount++;
+                return true;
+            }
+            slot = r.claim(callbackIdleStrategy, this::isExecutionStopped);
+            if (slot == null) {
+                //noinspection NonAtomicOperationOnVolatileField
+                ringDroppedCount++;
+                return true;
+            }
+        }
+        slot.callback = callback;
+        slot.jsonObject = jsonObject;
+        slot.dispatcher = dispatcher;
+        slot.handler = (Consumer<Object>) handler;
+        slot.value = value;
+        r.publish();
+        return true;
+    }
+
+    /**
+     * Обработчик коллбэков в виде JSON-объектов, переданных через кольцевой буфер; вызывается
+     * в потоке исполнения с названием коллбэка и JSON-объектом. Вызывается потоком чтения
+     * при каждом коллбэке, поэтому должен возвращать заранее созданный обработчик.
+     *
+     * @return обработчик или {@code null}, если коллбэки в виде JSON-объектов через буфер не передаются
+     */
+    protected BiConsumer<String, JSONObject> callbackDispatcher() {
+        return null;
+    }
+
+    /**
+     * Исполнить задачи и коллбэки, ожидающие в очереди и в кольцевом буфере. Вызывается только
+     * потоком исполнения. Исключение, выброшенное задачей, прерывает обработку.
+     * <p>
+     * Типичный цикл потока исполнения: {@code idleStrategy.idle(listener.drain(256));}.
+     *
+     * @param limit максимальное количество исполняемых задач
+     * @return количество исполненных задач
+     */
+    public int drain(final int limit) {
+        releasePendingSlot();
+        int count = 0;
+        Runnable runnable;
+        while (count < limit && (runnable = pollQueue()) != null) {
+            count++;
+            runnable.run();
+        }
+        final SpscRing<CallbackSlot> r = ring;
+        if (r != null && count < limit) {
+            count += r.drain(slotHandler, limit - count);
+        }
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Коллбэк из кольцевого буфера возвращается в виде ячейки буфера, которая освобождается
+     * при следующем вызове этого метода, поэтому её следует исполнить до этого вызова.
+     */
     @Override
     public Runnable poll() {
-        return queue.poll();
+        releasePendingSlot();
+        final Runnable runnable = pollQueue();
+        if (runnable != null) {
+            return runnable;
+        }
+        final SpscRing<CallbackSlot> r = ring;
+        if (r != null) {
+            final CallbackSlot slot = r.peek();
+            if (slot != null) {
+                isSlotPending = true;
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    private void releasePendingSlot() {
+        if (isSlotPending) {
+            isSlotPending = false;
+            final SpscRing<CallbackSlot> r = ring;
+            r.peek().clear();
+            r.release();
+        }
+    }
+
+    private Runnable pollQueue() {
+        queueLock.lock();
+        try {
+            final Droppable droppable = droppables.peek();
+            if (droppable != null && (droppable.position <= polledCount || queue.isEmpty())) {
+                droppables.poll();
+                release();
+                return droppable.runnable;
+            }
+            final Runnable runnable = queue.poll();
+            if (runnable == null) {
+                return null;
+            }
+            polledCount++;
+            if (runnable instanceof final Callback callback) {
+                release();
+                return callback.runnable;
+            } else if (runnable instanceof final Conflated conflated) {
+                conflatedMap.remove(conflated.key);
+                release();
+                return conflated.runnable;
+            }
+            return runnable;
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    private void release() {
+        callbackCount--;
+        notFull.signal();
+    }
+
+    /**
+     * @return количество коллбэков, ожидающих исполнения в очереди и в кольцевом буфере
+     */
+    public int getQueueDepth() {
+        final SpscRing<CallbackSlot> ring = this.ring;
+        final int ringSize = ring == null ? 0 : ring.size();
+        queueLock.lock();
+        try {
+            return callbackCount + ringSize;
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    /**
+     * @return количество коллбэков, удалённых из очереди при переполнении
+     */
+    public long getDroppedCount() {
+        queueLock.lock();
+        try {
+            return droppedCount + ringDroppedCount;
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    /**
+     * @return количество коллбэков, заменённых более свежими
+     */
+    public long getConflatedCount() {
+        queueLock.lock();
+        try {
+            return conflatedCount;
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    /**
+     * Определить инструмент, к которому относится коллбэк. Поддерживаются коллбэки вида
+     * {@code OnParam(class_code, sec_code)} и {@code OnQuote(class_code, sec_code)}, а также
+     * коллбэки, первым аргументом которых является таблица с полями {@code class_code} и {@code sec_code}.
+     *
+     * @param jsonObject JSON-объект с информацией о коллбэке
+     * @return инструмент или {@code null}, если определить его не удалось
+     */
+    protected static ClassSecCode classSecCodeOf(final JSONObject jsonObject) {
+        final Object arg1 = jsonObject.get("arg1");
+        if (arg1 instanceof final String classCode && jsonObject.get("arg2") instanceof final String secCode) {
+            return ClassSecCode.of(classCode, secCode);
+        }
+        if (arg1 instanceof final JSONObject table
+                && table.get("class_code") instanceof final String classCode
+                && table.get("sec_code") instanceof final String secCode) {
+            return ClassSecCode.of(classCode, secCode);
+        }
+        return null;
+    }
+
+    /**
+     * Определить инструмент, к которому относится коллбэк, см. {@link #classSecCodeOf(JSONObject)}.
+     *
+     * @param message сообщение, описывающее коллбэк
+     * @return инструмент или {@code null}, если определить его не удалось
+     */
+    protected static ClassSecCode classSecCodeOf(final QuikMessage message) {
+        final String arg2 = message.getString("arg2");
+        if (arg2 != null) {
+            final String arg1 = message.getString("arg1");
+            return arg1 == null ? null : ClassSecCode.of(arg1, arg2);
+        }
+        final QuikMessage table = message.getObject("arg1");
+        if (table != null) {
+            final String classCode = table.getString("class_code");
+            final String secCode = table.getString("sec_code");
+            if (classCode != null && secCode != null) {
+                return ClassSecCode.of(classCode, secCode);
+            }
+        }
+        return null;
+    }
+
+    private record ConflationKey(String callback, ClassSecCode classSecCode) {
+    }
+
+    /**
+     * Коллбэк с политикой {@link OverflowPolicy#BLOCK}.
+     */
+    private record Callback(Runnable runnable) implements Runnable {
+        @Override
+        public void run() {
+            runnable.run();
+        }
+    }
+
+    /**
+     * Коллбэк с политикой {@link OverflowPolicy#DROP_OLDEST}.
+     *
+     * @param position количество задач, поставленных в очередь до коллбэка; коллбэк исполняется
+     *                 после того, как это количество задач взято из очереди
+     * @param runnable обработчик коллбэка
+     */
+    private record Droppable(long position, Runnable runnable) {
+    }
+
+    /**
+     * Ячейка кольцевого буфера коллбэков.
+     */
+    private static final class CallbackSlot implements Runnable {
+        String callback = null;
+        JSONObject jsonObject = null;
+        /**
+         * Обработчик коллбэка в виде JSON-объекта или {@code null} для типизированного коллбэка.
+         */
+        BiConsumer<String, JSONObject> dispatcher = null;
+        /**
+         * Обработчик типизированного коллбэка или {@code null} для коллбэка в виде JSON-объекта.
+         */
+        Consumer<Object> handler = null;
+        Object value = null;
+
+        @Override
+        public void run() {
+            if (handler != null) {
+                handler.accept(value);
+            } else {
+                dispatcher.accept(callback, jsonObject);
+            }
+        }
+
+        void runAndClear() {
+            try {
+                run();
+            } finally {
+                clear();
+            }
+        }
+
+        void clear() {
+            callback = null;
+            jsonObject = null;
+            dispatcher = null;
+            handler = null;
+            value = null;
+        }
+    }
+
+    /**
+     * Место в очереди, занятое объединяемым коллбэком; хранит последний полученный обработчик.
+     */
+    private static final class Conflated implements Runnable {
+        final ConflationKey key;
+        Runnable runnable;
+
+        Conflated(final ConflationKey key, final Runnable runnable) {
+            this.key = key;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            runnable.run();
+        }
+    }
+
+    /**
+     * Выполнить блокирующую задачу (например, синхронный запрос к терминалу) в отдельном
+     * виртуальном потоке, не задерживая поток исполнения бизнес-логики.
+     * <p>
+     * Задача не должна изменять состояние, принадлежащее потоку исполнения;
+     * для передачи результата следует использовать {@link #fork(Callable, BiConsumer)}.
+     *
+     * @param task задача
+     * @param <T>  тип результата
+     * @return будущий результат задачи
+     */
+    public <T> Future<T> fork(final Callable<T> task) {
+        return forkExecutor().submit(task);
+    }
+
+    /**
+     * Выполнить блокирующую задачу в отдельном виртуальном потоке и передать её результат
+     * обработчику, который ставится в очередь на исполнение через {@link #submit(Runnable)}.
+     *
+     * @param task    задача
+     * @param handler обработчик результата и исключения (одно из них равно {@code null})
+     * @param <T>     тип результата
+     */
+    public <T> void fork(final Callable<T> task, final BiConsumer<? super T, ? super Throwable> handler) {
+        forkExecutor().execute(() -> {
+            T result = null;
+            Throwable throwable = null;
+            try {
+                result = task.call();
+            } catch (final Throwable t) {
+                throwable = t;
+            }
+            final T r = result;
+            final Throwable t = throwable;
+            submit(() -> handler.accept(r, t));
+        });
+    }
+
+    /**
+     * Завершить исполнитель блокирующих задач. Уже запущенные задачи прерываются.
+     */
+    public void shutdownForks() {
+        final ExecutorService executor = forkExecutor;
+        if (executor != null) {
+            forkExecutor = null;
+            executor.shutdownNow();
+        }
+    }
+
+    private ExecutorService forkExecutor() {
+        ExecutorService executor = forkExecutor;
+        if (executor == null) {
+            queueLock.lock();
+            try {
+                executor = forkExecutor;
+                if (executor == null) {
+                    executor = Executors.newVirtualThreadPerTaskExecutor();
+                    forkExecutor = executor;
+                }
+            } finally {
+                queueLock.unlock();
+            }
+        }
+        return executor;
     }
 }
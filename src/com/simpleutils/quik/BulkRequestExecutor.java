@@ -0,0 +1,312 @@
+package com.simpleutils.quik;
+
+import com.simpleutils.quik.requests.PartitionableRequest;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Исполнитель больших запросов по наборам элементов, разбивающий их на части.
+ * <p>
+ * Запрос делится на последовательные части, размер каждой из которых ограничен оценкой размера
+ * ответа {@link #maxResponseBytes}, и одновременно ожидается не более {@link #maxInFlight}
+ * ответов. Поэтому ни один ответ не превращается в гигантскую строку, задерживающую поток чтения,
+ * а при пуле MN-соединений части выполняются параллельно. Результаты частей объединяются в один
+ * массив в порядке следования элементов.
+ * <p>
+ * Размер части подстраивается по наблюдаемому времени выполнения: по каждой части обновляется
+ * экспоненциально сглаженная оценка времени обработки одного элемента, и размер части выбирается
+ * так, чтобы время выполнения части было близко к {@link #targetRoundTrip}, но не превышало
+ * ограничения по размеру ответа. Оценка запоминается отдельно для каждого класса запросов.
+ */
+public class BulkRequestExecutor {
+    /**
+     * Максимальный оценочный размер ответа на одну часть в байтах.
+     */
+    public volatile int maxResponseBytes = 256 * 1024;
+    /**
+     * Максимальное количество частей, ответ на которые ожидается одновременно.
+     */
+    public volatile int maxInFlight = 4;
+    /**
+     * Желаемое время выполнения одной части.
+     */
+    public volatile Duration targetRoundTrip = Duration.of(50, ChronoUnit.MILLIS);
+    /**
+     * Исполнитель, в котором обрабатываются ответы на части и отправляются следующие части,
+     * чтобы отправка не выполнялась в потоке чтения {@link QuikConnect}. По умолчанию каждая
+     * обработка выполняется в новом виртуальном потоке.
+     */
+    public volatile Executor executor = command -> Thread.ofVirtual().start(command);
+
+    private final QuikConnect quikConnect;
+    /**
+     * Вес нового наблюдения в сглаженной оценке времени обработки элемента.
+     */
+    private static final double SMOOTHING = 0.25;
+
+    /**
+     * Подстройка размера частей для одного класса запросов.
+     */
+    private static final class Tuning {
+        final ReentrantLock lock = new ReentrantLock();
+        /**
+         * Сглаженное время обработки одного элемента в наносекундах или {@code NaN}, если наблюдений нет.
+         */
+        double nanosPerElement = Double.NaN;
+        volatile int partitionSize;
+
+        Tuning(final int partitionSize) {
+            this.partitionSize = partitionSize;
+        }
+    }
+
+    /**
+     * Подстройка размеров частей для классов запросов.
+     */
+    private final Map<Class<?>, Tuning> tunings = new ConcurrentHashMap<>();
+
+    /**
+     * Конструктор.
+     *
+     * @param quikConnect подключение к терминалу QUIK
+     */
+    public BulkRequestExecutor(final QuikConnect quikConnect) {
+        this.quikConnect = quikConnect;
+    }
+
+    /**
+     * @param requestClass класс запроса
+     * @return подобранный размер части или 0, если запросы этого класса ещё не выполнялись
+     */
+    public int getPartitionSize(final Class<? extends PartitionableRequest> requestClass) {
+        final Tuning tuning = tunings.get(requestClass);
+        return tuning == null ? 0 : tuning.partitionSize;
+    }
+
+    /**
+     * Отправить запрос MN-серверу по частям и получить будущий объединённый результат.
+     * Если хотя бы одна часть завершилась ошибкой, в том числе при отправке части или при разборе
+     * и объединении ответов, то будущий результат завершается этой ошибкой, а ещё не отправленные
+     * части не отправляются.
+     *
+     * @param request запрос
+     * @param timeout таймаут ожидания ответа на одну часть
+     * @param unit    единица измерения времени
+     * @return будущий массив элементов результата
+     */
+    public CompletableFuture<JSONArray> submit(final PartitionableRequest request,
+                                               final long timeout, final TimeUnit unit) {
+        final Execution execution = new Execution(request, timeout, unit);
+        execution.start();
+        return execution.result;
+    }
+
+    /**
+     * Выполнить запрос MN-серверу по частям и ждать объединённого результата.
+     *
+     * @param request запрос
+     * @param timeout таймаут ожидания ответа на одну часть
+     * @param unit    единица измерения времени
+     * @return массив элементов результата
+     */
+    public JSONArray execute(final PartitionableRequest request,
+                             final long timeout, final TimeUnit unit) throws ExecutionException, InterruptedException {
+        return submit(request, timeout, unit).get();
+    }
+
+    private int maxPartitionSize(final PartitionableRequest request) {
+        return Math.max(1, maxResponseBytes / Math.max(1, request.estimatedElementSize()));
+    }
+
+    /**
+     * Скорректировать размер части по времени выполнения части.
+     *
+     * @param tuning  подстройка
+     * @param size    количество элементов части
+     * @param nanos   время выполнения части
+     * @param maxSize ограничение размера части по размеру ответа
+     */
+    private void adjust(final Tuning tuning, final int size, final long nanos, final int maxSize) {
+        final double observed = (double) nanos / size;
+        tuning.lock.lock();
+        try {
+            final double estimate = Double.isNaN(tuning.nanosPerElement)
+                    ? observed
+                    : tuning.nanosPerElement + SMOOTHING * (observed - tuning.nanosPerElement);
+            tuning.nanosPerElement = estimate;
+            tuning.partitionSize = (int) Math.max(1.0, Math.min(maxSize, targetRoundTrip.toNanos() / estimate));
+        } finally {
+            tuning.lock.unlock();
+        }
+    }
+
+    /**
+     * Выполнение одного запроса.
+     */
+    private final class Execution {
+        final PartitionableRequest request;
+        final long timeout;
+        final TimeUnit unit;
+        final int size;
+        final int maxSize;
+        final Tuning tuning;
+        final CompletableFuture<JSONArray> result = new CompletableFuture<>();
+        /**
+         * Результаты частей, индексированные номером первого элемента части.
+         */
+        final Object[] results;
+        final ReentrantLock lock = new ReentrantLock();
+        int next = 0;
+        int inFlight = 0;
+        /**
+         * Момент получения предыдущего ответа. Части одного соединения выполняются терминалом
+         * последовательно, поэтому при ожидании нескольких ответов интервал между ответами
+         * характеризует время выполнения части, делённое на число одновременно выполняемых
+         * частей {@link #parallelism}.
+         */
+        long lastCompletionNanos = Long.MIN_VALUE;
+        /**
+         * Количество частей, выполняемых терминалом одновременно: не больше числа MN-соединений пула.
+         */
+        final int parallelism;
+
+        Execution(final PartitionableRequest request, final long timeout, final TimeUnit unit) {
+            this.request = request;
+            this.timeout = timeout;
+            this.unit = unit;
+            size = request.size();
+            maxSize = maxPartitionSize(request);
+            tuning = tunings.computeIfAbsent(request.getClass(), key -> new Tuning(maxSize));
+            results = new Object[size];
+            parallelism = Math.max(1, Math.min(quikConnect.getPoolSizeMN(), maxInFlight));
+        }
+
+        void start() {
+            if (size == 0) {
+                result.complete(new JSONArray());
+                return;
+            }
+            submitNext();
+        }
+
+        /**
+         * Отправить следующие части, пока не достигнуто ограничение на количество ожидаемых ответов.
+         */
+        private void submitNext() {
+            while (true) {
+                final int from;
+                final int to;
+                lock.lock();
+                try {
+                    if (result.isDone() || next >= size || inFlight >= Math.max(1, maxInFlight)) {
+                        return;
+                    }
+                    from = next;
+                    to = Math.min(size, from + Math.min(maxSize, Math.max(1, tuning.partitionSize)));
+                    next = to;
+                    inFlight++;
+                } finally {
+                    lock.unlock();
+                }
+                final long startNanos = System.nanoTime();
+                try {
+                    quikConnect.submitMN(request.subRequest(from, to), timeout, unit)
+                            .whenCompleteAsync((response, t) -> onResponse(from, to, startNanos, response, t), executor)
+                            .whenComplete((ignored, t) -> {
+                                // обработка ответа не выполнена: исполнитель отклонил её или она выбросила Error
+                                if (t != null) {
+                                    result.completeExceptionally(t);
+                                }
+                            });
+                } catch (final RuntimeException e) {
+                    fail(e, true);
+                    return;
+                }
+            }
+        }
+
+        private void onResponse(final int from, final int to, final long startNanos,
+                                final JSONObject response, final Throwable t) {
+            boolean isReleased = false;
+            try {
+                if (t != null) {
+                    fail(t, true);
+                    return;
+                }
+                final Object partial = response.get("result");
+                if (LuaTables.size(partial) != to - from) {
+                    fail(new IllegalStateException(
+                            "Unexpected result size for elements [" + from + ", " + to + "): " + response), true);
+                    return;
+                }
+                final long nowNanos = System.nanoTime();
+                final long beginNanos;
+                final boolean isLast;
+                lock.lock();
+                try {
+                    beginNanos = Math.max(startNanos, lastCompletionNanos);
+                    lastCompletionNanos = nowNanos;
+                    results[from] = partial;
+                    inFlight--;
+                    isReleased = true;
+                    isLast = inFlight == 0 && next >= size;
+                } finally {
+                    lock.unlock();
+                }
+                adjust(tuning, to - from, Math.min(nowNanos - startNanos, (nowNanos - beginNanos) * parallelism), maxSize);
+                if (isLast) {
+                    result.complete(merge());
+                } else {
+                    submitNext();
+                }
+            } catch (final RuntimeException e) {
+                fail(e, !isReleased);
+            }
+        }
+
+        /**
+         * Завершить будущий результат ошибкой; следующие части после этого не отправляются.
+         *
+         * @param t         ошибка
+         * @param isPending признак того, что часть, при обработке которой произошла ошибка,
+         *                  ещё учитывается в количестве ожидаемых ответов
+         */
+        private void fail(final Throwable t, final boolean isPending) {
+            if (isPending) {
+                lock.lock();
+                try {
+                    inFlight--;
+                } finally {
+                    lock.unlock();
+                }
+            }
+            result.completeExceptionally(t);
+        }
+
+        @SuppressWarnings("unchecked")
+        private JSONArray merge() {
+            final JSONArray merged = new JSONArray();
+            merged.ensureCapacity(size);
+            int from = 0;
+            while (from < size) {
+                final Object partial = results[from];
+                final int n = LuaTables.size(partial);
+                for (int i = 0; i < n; i++) {
+                    merged.add(LuaTables.get(partial, i));
+                }
+                from += n;
+            }
+            return merged;
+        }
+    }
+}
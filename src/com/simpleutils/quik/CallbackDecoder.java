@@ -0,0 +1,19 @@
+package com.simpleutils.quik;
+
+/**
+ * Декодер коллбэка терминала QUIK в типизированный объект.
+ * <p>
+ * Декодер вызывается в потоке чтения CB-сокета. Переданное сообщение может быть переиспользуемым
+ * представлением буфера сокета, поэтому декодер должен скопировать из него все необходимые значения.
+ *
+ * @param <T> тип результата
+ */
+@FunctionalInterface
+public interface CallbackDecoder<T> {
+
+    /**
+     * @param message сообщение, описывающее коллбэк
+     * @return типизированный объект
+     */
+    T decode(QuikMessage message);
+}
@@ -0,0 +1,270 @@
+package com.simpleutils.quik;
+
+import com.simpleutils.quik.callbacks.QuikDateTime;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.Map;
+
+/**
+ * Свечи одного инструмента и интервала, хранящиеся по столбцам.
+ * <p>
+ * Время открытия (в миллисекундах от начала эпохи), цены открытия, максимума, минимума, закрытия
+ * и объём хранятся в отдельных растущих буферах примитивов, которые могут располагаться
+ * вне кучи. Методы {@link #closes(int, int)} и аналогичные возвращают представления диапазона
+ * свечей без копирования данных.
+ * <p>
+ * Класс не потокобезопасен: обновление и чтение следует выполнять в одном потоке, например,
+ * в потоке бизнес-логики слушателя. Представления остаются действительными до следующего обновления.
+ */
+public final class CandleSeries {
+
+    private final ClassSecCode classSecCode;
+    private final int interval;
+    private final boolean isDirect;
+    private LongBuffer times;
+    private DoubleBuffer opens;
+    private DoubleBuffer highs;
+    private DoubleBuffer lows;
+    private DoubleBuffer closes;
+    private DoubleBuffer volumes;
+    private int size = 0;
+    /**
+     * Размер источника данных при последнем обновлении, то есть индекс последней свечи.
+     */
+    private long lastIndex = 0L;
+
+    /**
+     * Конструктор.
+     *
+     * @param classSecCode инструмент
+     * @param interval     интервал свечей
+     * @param capacity     начальная ёмкость
+     * @param isDirect     размещать ли столбцы вне кучи
+     */
+    public CandleSeries(final ClassSecCode classSecCode, final int interval, final int capacity, final boolean isDirect) {
+        this.classSecCode = classSecCode;
+        this.interval = interval;
+        this.isDirect = isDirect;
+        allocate(Math.max(16, capacity));
+    }
+
+    private void allocate(final int capacity) {
+        final LongBuffer times = isDirect ? directBuffer(capacity).asLongBuffer() : LongBuffer.allocate(capacity);
+        final DoubleBuffer opens = newDoubleBuffer(capacity);
+        final DoubleBuffer highs = newDoubleBuffer(capacity);
+        final DoubleBuffer lows = newDoubleBuffer(capacity);
+        final DoubleBuffer closes = newDoubleBuffer(capacity);
+        final DoubleBuffer volumes = newDoubleBuffer(capacity);
+        if (size > 0) {
+            times.put(0, this.times, 0, size);
+            opens.put(0, this.opens, 0, size);
+            highs.put(0, this.highs, 0, size);
+            lows.put(0, this.lows, 0, size);
+            closes.put(0, this.closes, 0, size);
+            volumes.put(0, this.volumes, 0, size);
+        }
+        this.times = times;
+        this.opens = opens;
+        this.highs = highs;
+        this.lows = lows;
+        this.closes = closes;
+        this.volumes = volumes;
+    }
+
+    private DoubleBuffer newDoubleBuffer(final int capacity) {
+        return isDirect ? directBuffer(capacity).asDoubleBuffer() : DoubleBuffer.allocate(capacity);
+    }
+
+    private static ByteBuffer directBuffer(final int capacity) {
+        return ByteBuffer.allocateDirect(capacity * Long.BYTES).order(ByteOrder.nativeOrder());
+    }
+
+    public ClassSecCode classSecCode() {
+        return classSecCode;
+    }
+
+    public int interval() {
+        return interval;
+    }
+
+    /**
+     * @return количество свечей
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return индекс последней свечи в источнике данных (начиная с 1) или 0, если свечей нет
+     */
+    public long lastIndex() {
+        return lastIndex;
+    }
+
+    public long time(final int i) {
+        return times.get(checkIndex(i));
+    }
+
+    public double open(final int i) {
+        return opens.get(checkIndex(i));
+    }
+
+    public double high(final int i) {
+        return highs.get(checkIndex(i));
+    }
+
+    public double low(final int i) {
+        return lows.get(checkIndex(i));
+    }
+
+    public double close(final int i) {
+        return closes.get(checkIndex(i));
+    }
+
+    public double volume(final int i) {
+        return volumes.get(checkIndex(i));
+    }
+
+    private int checkIndex(final int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index " + i + " out of bounds for size " + size);
+        }
+        return i;
+    }
+
+    /**
+     * @param from индекс первой свечи диапазона
+     * @param to   индекс, следующий за последней свечой диапазона
+     * @return представление времён открытия свечей диапазона только для чтения
+     */
+    public LongBuffer times(final int from, final int to) {
+        checkRange(from, to);
+        return times.slice(from, to - from).asReadOnlyBuffer();
+    }
+
+    public DoubleBuffer opens(final int from, final int to) {
+        return view(opens, from, to);
+    }
+
+    public DoubleBuffer highs(final int from, final int to) {
+        return view(highs, from, to);
+    }
+
+    public DoubleBuffer lows(final int from, final int to) {
+        return view(lows, from, to);
+    }
+
+    /**
+     * @param from индекс первой свечи диапазона
+     * @param to   индекс, следующий за последней свечой диапазона
+     * @return представление цен закрытия свечей диапазона только для чтения
+     */
+    public DoubleBuffer closes(final int from, final int to) {
+        return view(closes, from, to);
+    }
+
+    public DoubleBuffer volumes(final int from, final int to) {
+        return view(volumes, from, to);
+    }
+
+    private DoubleBuffer view(final DoubleBuffer column, final int from, final int to) {
+        checkRange(from, to);
+        return column.slice(from, to - from).asReadOnlyBuffer();
+    }
+
+    private void checkRange(final int from, final int to) {
+        if (from < 0 || from > to || to > size) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for size " + size);
+        }
+    }
+
+    /**
+     * Найти свечу по времени открытия.
+     *
+     * @param time время открытия в миллисекундах от начала эпохи
+     * @return индекс свечи или {@code -(точка вставки) - 1}, если свечи с таким временем нет
+     */
+    public int indexOf(final long time) {
+        int lo = 0;
+        int hi = size - 1;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            final long t = times.get(mid);
+            if (t < time) {
+                lo = mid + 1;
+            } else if (t > time) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    /**
+     * Применить свечи, полученные запросом {@link com.simpleutils.quik.requests.CandlesUpdateRequest}
+     * или {@link com.simpleutils.quik.requests.CandlesRequest}.
+     * <p>
+     * Полученные свечи совмещаются с хранимыми по времени открытия первой из них: начиная с этой
+     * свечи хранимые свечи перезаписываются, остальные добавляются в конец. Если совместить свечи
+     * не удалось (между последней хранимой и первой полученной свечой есть пропуск либо источник
+     * данных был пересоздан), то серия не изменяется и требуется полная перезагрузка.
+     *
+     * @param sourceSize размер источника данных
+     * @param candles    массив свечей QLua с ключами {@code open}, {@code high}, {@code low},
+     *                   {@code close}, {@code volume} и {@code datetime}
+     * @return {@code true}, если свечи применены
+     */
+    public boolean apply(final long sourceSize, final Object candles) {
+        if (sourceSize < lastIndex) {
+            return false;
+        }
+        final int n = LuaTables.size(candles);
+        if (n == 0) {
+            lastIndex = sourceSize;
+            return true;
+        }
+        final long firstTime = QuikDateTime.toEpochMillis((Map<?, ?>) LuaTables.getTable(candles, 0).get("datetime"));
+        int position = size;
+        if (size > 0) {
+            final int i = indexOf(firstTime);
+            if (i >= 0) {
+                position = i;
+            } else if (-i - 1 != size || sourceSize - n != lastIndex) {
+                return false;
+            }
+        }
+        if (position + n > times.capacity()) {
+            allocate(Math.max(position + n, times.capacity() * 2));
+        }
+        for (int k = 0; k < n; k++) {
+            final Map<?, ?> candle = LuaTables.getTable(candles, k);
+            final int i = position + k;
+            times.put(i, QuikDateTime.toEpochMillis((Map<?, ?>) candle.get("datetime")));
+            opens.put(i, LuaTables.toDouble(candle.get("open")));
+            highs.put(i, LuaTables.toDouble(candle.get("high")));
+            lows.put(i, LuaTables.toDouble(candle.get("low")));
+            closes.put(i, LuaTables.toDouble(candle.get("close")));
+            volumes.put(i, LuaTables.toDouble(candle.get("volume")));
+        }
+        size = position + n;
+        lastIndex = sourceSize;
+        return true;
+    }
+
+    /**
+     * Удалить все свечи; следующее обновление будет полной загрузкой.
+     */
+    public void clear() {
+        size = 0;
+        lastIndex = 0L;
+    }
+
+    @Override
+    public String toString() {
+        return classSecCode + " " + interval + " " + size;
+    }
+}
@@ -0,0 +1,134 @@
+package com.simpleutils.quik;
+
+import com.simpleutils.quik.requests.CandlesUpdateRequest;
+import org.json.simple.JSONObject;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Хранилище свечей, индексированных инструментом и интервалом.
+ * <p>
+ * После первой загрузки из терминала запрашиваются только свечи, начиная с последней известной
+ * (см. {@link CandlesUpdateRequest}), поэтому объём передаваемых и разбираемых данных
+ * пропорционален количеству новых свечей, а не длине истории.
+ * <p>
+ * Как и {@link CandleSeries}, свечи следует обновлять и читать в одном потоке.
+ */
+public class CandleStore {
+
+    private record Key(ClassSecCode classSecCode, int interval) {
+    }
+
+    /**
+     * Максимальное количество свечей, запрашиваемых при полной загрузке.
+     */
+    public volatile int maxSize = 10_000;
+    /**
+     * Размещать ли столбцы новых серий вне кучи.
+     */
+    public volatile boolean useDirectBuffers = false;
+
+    private final Map<Key, CandleSeries> series = new ConcurrentHashMap<>();
+
+    /**
+     * Конструктор пустого хранилища; параметры загрузки задаются полями {@link #maxSize}
+     * и {@link #useDirectBuffers}.
+     */
+    public CandleStore() {
+    }
+
+    /**
+     * @param classSecCode инструмент
+     * @param interval     интервал свечей
+     * @return серия свечей или {@code null}, если свечи ещё не загружались
+     */
+    public CandleSeries get(final ClassSecCode classSecCode, final int interval) {
+        return series.get(new Key(classSecCode, interval));
+    }
+
+    /**
+     * @param classSecCode инструмент
+     * @param interval     интервал свечей
+     * @return серия свечей, созданная при необходимости пустой
+     */
+    public CandleSeries getOrCreate(final ClassSecCode classSecCode, final int interval) {
+        return series.computeIfAbsent(new Key(classSecCode, interval),
+                key -> new CandleSeries(key.classSecCode(), key.interval(), Math.min(maxSize, 1024), useDirectBuffers));
+    }
+
+    /**
+     * @return все серии свечей
+     */
+    public Collection<CandleSeries> series() {
+        return Collections.unmodifiableCollection(series.values());
+    }
+
+    /**
+     * @param classSecCode инструмент
+     * @param interval     интервал свечей
+     * @return запрос свечей, начиная с последней известной
+     */
+    public CandlesUpdateRequest nextRequest(final ClassSecCode classSecCode, final int interval) {
+        final CandleSeries candleSeries = get(classSecCode, interval);
+        return new CandlesUpdateRequest(classSecCode, interval,
+                candleSeries == null ? 0L : candleSeries.lastIndex(), maxSize);
+    }
+
+    /**
+     * Применить результат запроса {@link #nextRequest(ClassSecCode, int)}.
+     * Если свечи не удалось совместить с хранимыми, то серия очищается, чтобы следующий
+     * запрос выполнил полную загрузку.
+     *
+     * @param classSecCode инструмент
+     * @param interval     интервал свечей
+     * @param result       значение ключа "result" ответа
+     * @return {@code true}, если свечи применены
+     */
+    public boolean update(final ClassSecCode classSecCode, final int interval, final Map<?, ?> result) {
+        final CandleSeries candleSeries = getOrCreate(classSecCode, interval);
+        if (candleSeries.apply(LuaTables.toLong(result.get("size"), 0L), result.get("candles"))) {
+            return true;
+        }
+        candleSeries.clear();
+        return false;
+    }
+
+    /**
+     * Загрузить новые свечи из терминала в текущем потоке. Если свечи не удалось совместить
+     * с хранимыми, то сразу выполняется полная загрузка.
+     *
+     * @param quikConnect подключение к терминалу QUIK
+     * @param classSecCode инструмент
+     * @param interval     интервал свечей
+     * @param timeout      таймаут ожидания
+     * @param unit         единица измерения времени
+     * @return серия свечей
+     */
+    public CandleSeries update(final QuikConnect quikConnect, final ClassSecCode classSecCode, final int interval,
+                               final long timeout, final TimeUnit unit) throws ExecutionException, InterruptedException {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            final JSONObject response = quikConnect.executeMN(nextRequest(classSecCode, interval), timeout, unit);
+            if (!(response.get("result") instanceof Map<?, ?> result)) {
+                throw new ExecutionException(new IllegalStateException("Unexpected response: " + response));
+            }
+            if (update(classSecCode, interval, result)) {
+                break;
+            }
+        }
+        return getOrCreate(classSecCode, interval);
+    }
+
+    /**
+     * Очистить все серии, например, после пересоздания источников данных.
+     */
+    public void clear() {
+        for (final CandleSeries candleSeries : series.values()) {
+            candleSeries.clear();
+        }
+    }
+}
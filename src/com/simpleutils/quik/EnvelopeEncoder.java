@@ -0,0 +1,283 @@
+package com.simpleutils.quik;
+
+import com.simpleutils.socket.SingleByteCharset;
+import org.json.simple.JSONAware;
+import org.json.simple.JSONValue;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Кодировщик конвертов запросов к терминалу QUIK непосредственно в байты однобайтовой кодировки.
+ * <p>
+ * Конверты ({@code {"id":...,"clientId":"...","chunk":"..."}} и аналогичные для function-запросов
+ * и подписки на коллбэки) записываются в переиспользуемый буфер, растущий по мере необходимости,
+ * без построения промежуточных строк. Экранирование совпадает с {@link JSONValue#escape(String)}.
+ * Каждый конверт завершается разделителем строк.
+ * <p>
+ * Объект не потокобезопасен: используется под блокировкой соединения, которому принадлежит.
+ */
+final class EnvelopeEncoder {
+
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes();
+
+    private final SingleByteCharset charset;
+    /**
+     * Закодированный фрагмент {@code ,"clientId":"...","}.
+     */
+    private final byte[] clientIdBytes;
+    private final byte[] lineSeparator;
+    private final byte[] digits = new byte[20];
+    private byte[] bytes = new byte[4096];
+    private int length = 0;
+
+    EnvelopeEncoder(final String clientId, final SingleByteCharset charset) {
+        this.charset = charset;
+        clientIdBytes = encode(",\"clientId\":\"" + clientId + "\",\"");
+        lineSeparator = encode(System.lineSeparator());
+    }
+
+    private byte[] encode(final String s) {
+        final byte[] b = new byte[s.length()];
+        for (int i = 0; i < b.length; i++) {
+            b[i] = charset.encode(s.charAt(i));
+        }
+        return b;
+    }
+
+    /**
+     * Очистить буфер перед кодированием очередного сообщения или пакета сообщений.
+     */
+    void clear() {
+        length = 0;
+    }
+
+    /**
+     * @return буфер, содержащий закодированные с момента {@link #clear()} конверты
+     */
+    ByteBuffer buffer() {
+        return ByteBuffer.wrap(bytes, 0, length);
+    }
+
+    /**
+     * Закодировать chunk-запрос.
+     *
+     * @param id    номер запроса
+     * @param chunk код запроса на языке QLua
+     */
+    void chunk(final long id, final String chunk) {
+        begin(id);
+        ascii("chunk\":\"");
+        escaped(chunk);
+        ascii("\"}");
+        end();
+    }
+
+    /**
+     * Закодировать function-запрос.
+     *
+     * @param id    номер запроса
+     * @param fname имя QLua-функции
+     * @param args  список аргументов функции
+     */
+    void function(final long id, final String fname, final List<?> args) {
+        begin(id);
+        ascii("fname\":\"");
+        raw(fname);
+        ascii("\",\"args\":");
+        value(args);
+        put((byte) '}');
+        end();
+    }
+
+    /**
+     * Закодировать запрос подписки на коллбэк.
+     *
+     * @param id       номер запроса
+     * @param callback имя коллбэка
+     * @param filter   код функции фильтрации на языке QLua
+     */
+    void callback(final long id, final String callback, final String filter) {
+        begin(id);
+        ascii("callback\":\"");
+        raw(callback);
+        ascii("\",\"filter\":\"");
+        escaped(filter);
+        ascii("\"}");
+        end();
+    }
+
+    private void begin(final long id) {
+        ascii("{\"id\":");
+        number(id);
+        ensure(clientIdBytes.length);
+        System.arraycopy(clientIdBytes, 0, bytes, length, clientIdBytes.length);
+        length += clientIdBytes.length;
+    }
+
+    private void end() {
+        ensure(lineSeparator.length);
+        System.arraycopy(lineSeparator, 0, bytes, length, lineSeparator.length);
+        length += lineSeparator.length;
+    }
+
+    /**
+     * Закодировать значение так же, как {@link JSONValue#toJSONString(Object)}.
+     */
+    private void value(final Object value) {
+        if (value == null) {
+            ascii("null");
+        } else if (value instanceof final String s) {
+            put((byte) '"');
+            escaped(s);
+            put((byte) '"');
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            number(((Number) value).longValue());
+        } else if (value instanceof final Double d) {
+            raw(d.isNaN() || d.isInfinite() ? "null" : d.toString());
+        } else if (value instanceof final Float f) {
+            raw(f.isNaN() || f.isInfinite() ? "null" : f.toString());
+        } else if (value instanceof Number || value instanceof Boolean) {
+            raw(value.toString());
+        } else if (value instanceof final Map<?, ?> map) {
+            put((byte) '{');
+            boolean isFirst = true;
+            for (final Map.Entry<?, ?> entry : map.entrySet()) {
+                if (!isFirst) {
+                    put((byte) ',');
+                }
+                isFirst = false;
+                put((byte) '"');
+                escaped(String.valueOf(entry.getKey()));
+                ascii("\":");
+                value(entry.getValue());
+            }
+            put((byte) '}');
+        } else if (value instanceof final List<?> list) {
+            put((byte) '[');
+            for (int i = 0, n = list.size(); i < n; i++) {
+                if (i > 0) {
+                    put((byte) ',');
+                }
+                value(list.get(i));
+            }
+            put((byte) ']');
+        } else if (value instanceof final JSONAware jsonAware) {
+            raw(jsonAware.toJSONString());
+        } else {
+            raw(value.toString());
+        }
+    }
+
+    private void number(final long value) {
+        if (value == Long.MIN_VALUE) {
+            ascii(Long.toString(value));
+            return;
+        }
+        long v = value;
+        if (v < 0) {
+            put((byte) '-');
+            v = -v;
+        }
+        int n = 0;
+        do {
+            digits[n++] = (byte) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        ensure(n);
+        while (n > 0) {
+            bytes[length++] = digits[--n];
+        }
+    }
+
+    /**
+     * Закодировать строку без экранирования.
+     */
+    private void raw(final String s) {
+        final int n = s.length();
+        ensure(n);
+        for (int i = 0; i < n; i++) {
+            final char c = s.charAt(i);
+            bytes[length++] = charset.encode(c);
+            if (isSurrogatePair(s, i, c)) {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Суррогатная пара непредставима в однобайтовой кодировке и кодируется одним символом {@code '?'},
+     * как это делает стандартный кодировщик.
+     */
+    private static boolean isSurrogatePair(final String s, final int i, final char c) {
+        return Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1));
+    }
+
+    /**
+     * Закодировать ASCII-строку.
+     */
+    private void ascii(final String s) {
+        final int n = s.length();
+        ensure(n);
+        for (int i = 0; i < n; i++) {
+            bytes[length++] = (byte) s.charAt(i);
+        }
+    }
+
+    /**
+     * Закодировать строку с экранированием по правилам {@link JSONValue#escape(String)}.
+     */
+    private void escaped(final String s) {
+        final int n = s.length();
+        ensure(n);
+        for (int i = 0; i < n; i++) {
+            final char c = s.charAt(i);
+            switch (c) {
+                case '"' -> escape((byte) '"');
+                case '\\' -> escape((byte) '\\');
+                case '\b' -> escape((byte) 'b');
+                case '\f' -> escape((byte) 'f');
+                case '\n' -> escape((byte) 'n');
+                case '\r' -> escape((byte) 'r');
+                case '\t' -> escape((byte) 't');
+                case '/' -> escape((byte) '/');
+                default -> {
+                    if (c <= '\u001F' || (c >= '\u007F' && c <= '\u009F') || (c >= '\u2000' && c <= '\u20FF')) {
+                        ensure(6);
+                        bytes[length++] = '\\';
+                        bytes[length++] = 'u';
+                        bytes[length++] = HEX[(c >> 12) & 0xF];
+                        bytes[length++] = HEX[(c >> 8) & 0xF];
+                        bytes[length++] = HEX[(c >> 4) & 0xF];
+                        bytes[length++] = HEX[c & 0xF];
+                    } else {
+                        put(c < 0x80 ? (byte) c : charset.encode(c));
+                        if (isSurrogatePair(s, i, c)) {
+                            i++;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void escape(final byte b) {
+        ensure(2);
+        bytes[length++] = '\\';
+        bytes[length++] = b;
+    }
+
+    private void put(final byte b) {
+        ensure(1);
+        bytes[length++] = b;
+    }
+
+    private void ensure(final int n) {
+        if (length + n > bytes.length) {
+            final byte[] b = new byte[Math.max(bytes.length * 2, length + n)];
+            System.arraycopy(bytes, 0, b, 0, length);
+            bytes = b;
+        }
+    }
+}
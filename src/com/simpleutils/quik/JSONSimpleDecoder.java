@@ -0,0 +1,121 @@
+package com.simpleutils.quik;
+
+import com.simpleutils.socket.SingleByteCharset;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Декодер на основе json-simple: каждая строка преобразуется в {@link JSONObject}.
+ * Используется по умолчанию для совместимости.
+ */
+public class JSONSimpleDecoder implements QuikDecoder {
+
+    private final Charset charset;
+    private final SingleByteCharset singleByteCharset;
+    private final JSONParser parser = new JSONParser();
+
+    public JSONSimpleDecoder(final Charset charset) {
+        this.charset = charset;
+        singleByteCharset = SingleByteCharset.of(charset);
+    }
+
+    @Override
+    public QuikMessage decode(final ByteBuffer buffer, final int start, final int end) throws ParseException {
+        final String s;
+        if (singleByteCharset != null) {
+            s = singleByteCharset.decode(buffer, start, end);
+        } else if (buffer.hasArray()) {
+            s = new String(buffer.array(), buffer.arrayOffset() + start, end - start, charset);
+        } else {
+            final byte[] bytes = new byte[end - start];
+            buffer.get(start, bytes);
+            s = new String(bytes, charset);
+        }
+        return new Message((JSONObject) parser.parse(s));
+    }
+
+    /**
+     * Сообщение, построенное на основе JSON-объекта.
+     */
+    public static class Message implements QuikMessage {
+
+        private final JSONObject jsonObject;
+
+        public Message(final JSONObject jsonObject) {
+            this.jsonObject = jsonObject;
+        }
+
+        @Override
+        public long id() {
+            return jsonObject.get("id") instanceof Long id ? id : 0L;
+        }
+
+        @Override
+        public boolean has(final String key) {
+            return jsonObject.containsKey(key);
+        }
+
+        @Override
+        public String getString(final String key) {
+            return jsonObject.get(key) instanceof String s ? s : null;
+        }
+
+        @Override
+        public long getLong(final String key, final long defaultValue) {
+            final Object o = jsonObject.get(key);
+            if (o instanceof Number n) {
+                return n.longValue();
+            }
+            if (o instanceof String s) {
+                try {
+                    return Long.parseLong(s);
+                } catch (final NumberFormatException e) {
+                    try {
+                        return (long) Double.parseDouble(s);
+                    } catch (final NumberFormatException ignored) {
+                    }
+                }
+            }
+            return defaultValue;
+        }
+
+        @Override
+        public double getDouble(final String key, final double defaultValue) {
+            final Object o = jsonObject.get(key);
+            if (o instanceof Number n) {
+                return n.doubleValue();
+            }
+            if (o instanceof String s) {
+                try {
+                    return Double.parseDouble(s);
+                } catch (final NumberFormatException ignored) {
+                }
+            }
+            return defaultValue;
+        }
+
+        @Override
+        public boolean getBoolean(final String key, final boolean defaultValue) {
+            return jsonObject.get(key) instanceof Boolean b ? b : defaultValue;
+        }
+
+        @Override
+        public QuikMessage getObject(final String key) {
+            return jsonObject.get(key) instanceof JSONObject o ? new Message(o) : null;
+        }
+
+        @Override
+        public JSONObject toJSONObject() {
+            return jsonObject;
+        }
+
+        @Override
+        public String toString() {
+            return jsonObject.toString();
+        }
+    }
+}
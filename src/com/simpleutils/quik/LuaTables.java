@@ -0,0 +1,81 @@
+package com.simpleutils.quik;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.util.Map;
+
+/**
+ * Чтение таблиц QLua, полученных в ответах терминала.
+ * <p>
+ * Массив QLua передаётся массивом JSON либо объектом с ключами "1", "2", ...;
+ * пустая таблица может передаваться пустым объектом, а отсутствующая — пустой строкой.
+ * Числа могут передаваться как числами JSON, так и строками.
+ */
+final class LuaTables {
+
+    private LuaTables() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @param array массив QLua
+     * @return количество элементов массива или 0, если значение не является таблицей
+     */
+    static int size(final Object array) {
+        if (array instanceof JSONArray jsonArray) {
+            return jsonArray.size();
+        }
+        if (array instanceof JSONObject jsonObject) {
+            return jsonObject.size();
+        }
+        return 0;
+    }
+
+    /**
+     * @param array массив QLua
+     * @param index индекс элемента, начиная с 0
+     * @return элемент массива
+     */
+    static Object get(final Object array, final int index) {
+        if (array instanceof JSONArray jsonArray) {
+            return jsonArray.get(index);
+        }
+        return ((JSONObject) array).get(String.valueOf(index + 1));
+    }
+
+    /**
+     * @param array массив QLua
+     * @param index индекс элемента, начиная с 0
+     * @return элемент массива, являющийся таблицей
+     */
+    static Map<?, ?> getTable(final Object array, final int index) {
+        return (Map<?, ?>) get(array, index);
+    }
+
+    /**
+     * @param value число или строка, содержащая число
+     * @return вещественное значение
+     */
+    static double toDouble(final Object value) {
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        return Double.parseDouble((String) value);
+    }
+
+    /**
+     * @param value        число, строка, содержащая число, или {@code null}
+     * @param defaultValue значение по умолчанию
+     * @return целочисленное значение или значение по умолчанию, если значение отсутствует
+     */
+    static long toLong(final Object value, final long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value instanceof Number number) {
+            return number.longValue();
+        }
+        return (long) Double.parseDouble((String) value);
+    }
+}
@@ -0,0 +1,313 @@
+package com.simpleutils.quik;
+
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Локальная копия стакана одного инструмента.
+ * <p>
+ * Цены и количества хранятся в заранее выделенных массивах, которые перезаписываются на месте
+ * при применении очередного снимка {@link #update(Map)}. Уровни обеих сторон упорядочены
+ * от лучшего: {@code bidPrice(0)} — лучшая цена покупки, {@code askPrice(0)} — лучшая цена продажи.
+ * Если в снимке уровней больше, чем глубина стакана, то сохраняются только лучшие уровни.
+ * <p>
+ * Запись выполняется под блокировкой записи {@link StampedLock}, а чтение — оптимистично,
+ * без блокировок и выделения памяти: читатель повторяет чтение, если во время него стакан
+ * изменился, и после нескольких неудачных попыток берёт блокировку чтения.
+ * Каждый метод чтения возвращает данные одного и того же снимка; для согласованного чтения
+ * нескольких уровней следует использовать {@link #copyBids(double[], long[])}
+ * и {@link #copyAsks(double[], long[])}.
+ */
+public final class OrderBook {
+    /**
+     * Количество попыток оптимистичного чтения перед взятием блокировки чтения.
+     */
+    private static final int OPTIMISTIC_ATTEMPTS = 8;
+    /**
+     * Поля, читаемые методом {@link #read(int, int)}.
+     */
+    private static final int BID_DEPTH = 0;
+    private static final int ASK_DEPTH = 1;
+    private static final int BID_PRICE = 2;
+    private static final int BID_QUANTITY = 3;
+    private static final int ASK_PRICE = 4;
+    private static final int ASK_QUANTITY = 5;
+    private static final int MID_PRICE = 6;
+    private static final int SPREAD = 7;
+
+    private final ClassSecCode classSecCode;
+    private final StampedLock lock = new StampedLock();
+    private final double[] bidPrices;
+    private final long[] bidQuantities;
+    private final double[] askPrices;
+    private final long[] askQuantities;
+    private int bidDepth = 0;
+    private int askDepth = 0;
+    /**
+     * Количество применённых снимков.
+     */
+    private long version = 0L;
+
+    /**
+     * Конструктор.
+     *
+     * @param classSecCode инструмент
+     * @param maxDepth     максимальное количество уровней каждой стороны стакана
+     */
+    public OrderBook(final ClassSecCode classSecCode, final int maxDepth) {
+        if (maxDepth <= 0) {
+            throw new IllegalArgumentException("maxDepth must be positive: " + maxDepth);
+        }
+        this.classSecCode = classSecCode;
+        bidPrices = new double[maxDepth];
+        bidQuantities = new long[maxDepth];
+        askPrices = new double[maxDepth];
+        askQuantities = new long[maxDepth];
+    }
+
+    public ClassSecCode classSecCode() {
+        return classSecCode;
+    }
+
+    /**
+     * @return максимальное количество уровней каждой стороны стакана
+     */
+    public int maxDepth() {
+        return bidPrices.length;
+    }
+
+    /**
+     * Применить снимок стакана, полученный функцией QLua {@code getQuoteLevel2}.
+     * <p>
+     * Уровни покупки в снимке упорядочены по возрастанию цены, поэтому лучшая цена покупки
+     * находится в конце массива {@code bid}, а лучшая цена продажи — в начале массива {@code offer}.
+     * Если снимок некорректен, то стакан очищается, а исключение передаётся вызывающему коду.
+     *
+     * @param quotes таблица с ключами {@code bid} и {@code offer}
+     */
+    public void update(final Map<?, ?> quotes) {
+        final Object bid = quotes.get("bid");
+        final Object offer = quotes.get("offer");
+        final long stamp = lock.writeLock();
+        try {
+            bidDepth = 0;
+            askDepth = 0;
+            final int bidSize = LuaTables.size(bid);
+            final int bidDepth = Math.min(bidSize, bidPrices.length);
+            for (int level = 0; level < bidDepth; level++) {
+                final Map<?, ?> quote = LuaTables.getTable(bid, bidSize - 1 - level);
+                bidPrices[level] = LuaTables.toDouble(quote.get("price"));
+                bidQuantities[level] = (long) LuaTables.toDouble(quote.get("quantity"));
+            }
+            final int askDepth = Math.min(LuaTables.size(offer), askPrices.length);
+            for (int level = 0; level < askDepth; level++) {
+                final Map<?, ?> quote = LuaTables.getTable(offer, level);
+                askPrices[level] = LuaTables.toDouble(quote.get("price"));
+                askQuantities[level] = (long) LuaTables.toDouble(quote.get("quantity"));
+            }
+            this.bidDepth = bidDepth;
+            this.askDepth = askDepth;
+        } finally {
+            version++;
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Очистить стакан.
+     */
+    public void clear() {
+        final long stamp = lock.writeLock();
+        bidDepth = 0;
+        askDepth = 0;
+        version++;
+        lock.unlockWrite(stamp);
+    }
+
+    /**
+     * @return количество изменений стакана; позволяет без копирования определить, изменился ли стакан
+     */
+    public long version() {
+        long stamp = lock.tryOptimisticRead();
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            final long v = version;
+            if (lock.validate(stamp)) {
+                return v;
+            }
+            stamp = lock.tryOptimisticRead();
+        }
+        stamp = lock.readLock();
+        try {
+            return version;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return количество уровней покупки
+     */
+    public int bidDepth() {
+        return (int) read(BID_DEPTH, 0);
+    }
+
+    /**
+     * @return количество уровней продажи
+     */
+    public int askDepth() {
+        return (int) read(ASK_DEPTH, 0);
+    }
+
+    /**
+     * @param level номер уровня, начиная с лучшего
+     * @return цена покупки или {@link Double#NaN}, если уровня нет
+     */
+    public double bidPrice(final int level) {
+        return Double.longBitsToDouble(read(BID_PRICE, level));
+    }
+
+    /**
+     * @param level номер уровня, начиная с лучшего
+     * @return количество на покупку или 0, если уровня нет
+     */
+    public long bidQuantity(final int level) {
+        return read(BID_QUANTITY, level);
+    }
+
+    /**
+     * @param level номер уровня, начиная с лучшего
+     * @return цена продажи или {@link Double#NaN}, если уровня нет
+     */
+    public double askPrice(final int level) {
+        return Double.longBitsToDouble(read(ASK_PRICE, level));
+    }
+
+    /**
+     * @param level номер уровня, начиная с лучшего
+     * @return количество на продажу или 0, если уровня нет
+     */
+    public long askQuantity(final int level) {
+        return read(ASK_QUANTITY, level);
+    }
+
+    /**
+     * @return лучшая цена покупки или {@link Double#NaN}, если покупок нет
+     */
+    public double bestBid() {
+        return bidPrice(0);
+    }
+
+    /**
+     * @return лучшая цена продажи или {@link Double#NaN}, если продаж нет
+     */
+    public double bestAsk() {
+        return askPrice(0);
+    }
+
+    /**
+     * @return середина между лучшими ценами одного снимка или {@link Double#NaN}, если одна из сторон пуста
+     */
+    public double midPrice() {
+        return Double.longBitsToDouble(read(MID_PRICE, 0));
+    }
+
+    /**
+     * @return разность лучших цен одного снимка или {@link Double#NaN}, если одна из сторон пуста
+     */
+    public double spread() {
+        return Double.longBitsToDouble(read(SPREAD, 0));
+    }
+
+    /**
+     * Скопировать уровни покупки одного снимка в массивы вызывающего кода.
+     *
+     * @param prices     массив для цен
+     * @param quantities массив для количеств
+     * @return количество скопированных уровней, не превышающее длины массивов
+     */
+    public int copyBids(final double[] prices, final long[] quantities) {
+        return copy(bidPrices, bidQuantities, true, prices, quantities);
+    }
+
+    /**
+     * Скопировать уровни продажи одного снимка в массивы вызывающего кода.
+     *
+     * @param prices     массив для цен
+     * @param quantities массив для количеств
+     * @return количество скопированных уровней, не превышающее длины массивов
+     */
+    public int copyAsks(final double[] prices, final long[] quantities) {
+        return copy(askPrices, askQuantities, false, prices, quantities);
+    }
+
+    private int copy(final double[] srcPrices, final long[] srcQuantities, final boolean isBid,
+                     final double[] prices, final long[] quantities) {
+        final int capacity = Math.min(prices.length, quantities.length);
+        long stamp = lock.tryOptimisticRead();
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            final int n = Math.min(isBid ? bidDepth : askDepth, capacity);
+            System.arraycopy(srcPrices, 0, prices, 0, n);
+            System.arraycopy(srcQuantities, 0, quantities, 0, n);
+            if (lock.validate(stamp)) {
+                return n;
+            }
+            stamp = lock.tryOptimisticRead();
+        }
+        stamp = lock.readLock();
+        try {
+            final int n = Math.min(isBid ? bidDepth : askDepth, capacity);
+            System.arraycopy(srcPrices, 0, prices, 0, n);
+            System.arraycopy(srcQuantities, 0, quantities, 0, n);
+            return n;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Прочитать значение одного снимка. Вещественные значения возвращаются в виде битов.
+     */
+    private long read(final int field, final int level) {
+        long stamp = lock.tryOptimisticRead();
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            final long value = value(field, level);
+            if (lock.validate(stamp)) {
+                return value;
+            }
+            stamp = lock.tryOptimisticRead();
+        }
+        stamp = lock.readLock();
+        try {
+            return value(field, level);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Вычислить значение без блокировки. При оптимистичном чтении глубина может принадлежать
+     * другому снимку, поэтому индексы дополнительно ограничиваются размером массивов.
+     */
+    private long value(final int field, final int level) {
+        final int bidDepth = Math.min(this.bidDepth, bidPrices.length);
+        final int askDepth = Math.min(this.askDepth, askPrices.length);
+        return switch (field) {
+            case BID_DEPTH -> bidDepth;
+            case ASK_DEPTH -> askDepth;
+            case BID_PRICE -> Double.doubleToRawLongBits(level >= 0 && level < bidDepth ? bidPrices[level] : Double.NaN);
+            case BID_QUANTITY -> level >= 0 && level < bidDepth ? bidQuantities[level] : 0L;
+            case ASK_PRICE -> Double.doubleToRawLongBits(level >= 0 && level < askDepth ? askPrices[level] : Double.NaN);
+            case ASK_QUANTITY -> level >= 0 && level < askDepth ? askQuantities[level] : 0L;
+            case MID_PRICE -> Double.doubleToRawLongBits(bidDepth > 0 && askDepth > 0
+                    ? (bidPrices[0] + askPrices[0]) / 2.0 : Double.NaN);
+            case SPREAD -> Double.doubleToRawLongBits(bidDepth > 0 && askDepth > 0
+                    ? askPrices[0] - bidPrices[0] : Double.NaN);
+            default -> throw new IllegalArgumentException("Unknown field: " + field);
+        };
+    }
+
+    @Override
+    public String toString() {
+        return classSecCode + " " + bestBid() + "/" + bestAsk();
+    }
+}
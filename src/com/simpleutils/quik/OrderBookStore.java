@@ -0,0 +1,109 @@
+package com.simpleutils.quik;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Хранилище локальных копий стаканов, индексированных инструментами.
+ * <p>
+ * Стаканы создаются при первом обновлении и в дальнейшем переиспользуются, поэтому ссылку
+ * на {@link OrderBook} можно получить один раз и читать из любого потока.
+ */
+public class OrderBookStore {
+    /**
+     * Глубина стакана по умолчанию.
+     */
+    public static final int DEFAULT_MAX_DEPTH = 50;
+
+    private final int maxDepth;
+    private final Map<ClassSecCode, OrderBook> orderBooks = new ConcurrentHashMap<>();
+
+    public OrderBookStore() {
+        this(DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * Конструктор.
+     *
+     * @param maxDepth максимальное количество уровней каждой стороны стакана
+     */
+    public OrderBookStore(final int maxDepth) {
+        if (maxDepth <= 0) {
+            throw new IllegalArgumentException("maxDepth must be positive: " + maxDepth);
+        }
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * @param classSecCode инструмент
+     * @return стакан или {@code null}, если стакан инструмента ещё не создан
+     */
+    public OrderBook get(final ClassSecCode classSecCode) {
+        return orderBooks.get(classSecCode);
+    }
+
+    /**
+     * @param classSecCode инструмент
+     * @return стакан, созданный при необходимости пустым
+     */
+    public OrderBook getOrCreate(final ClassSecCode classSecCode) {
+        final OrderBook orderBook = orderBooks.get(classSecCode);
+        if (orderBook != null) {
+            return orderBook;
+        }
+        return orderBooks.computeIfAbsent(classSecCode, key -> new OrderBook(key, maxDepth));
+    }
+
+    /**
+     * @return стаканы всех инструментов
+     */
+    public Collection<OrderBook> orderBooks() {
+        return Collections.unmodifiableCollection(orderBooks.values());
+    }
+
+    /**
+     * Применить снимок стакана, полученный запросом
+     * {@link com.simpleutils.quik.requests.QuoteLevel2Request}.
+     *
+     * @param classSecCode инструмент
+     * @param result       значение ключа "result" ответа
+     * @return обновлённый стакан
+     */
+    public OrderBook update(final ClassSecCode classSecCode, final Map<?, ?> result) {
+        final OrderBook orderBook = getOrCreate(classSecCode);
+        orderBook.update(result);
+        return orderBook;
+    }
+
+    /**
+     * Применить снимки стаканов, полученные запросом
+     * {@link com.simpleutils.quik.requests.BulkQuoteLevel2Request}.
+     *
+     * @param result значение ключа "result" ответа: массив таблиц с ключами
+     *               {@code classCode}, {@code secCode} и {@code quotes}
+     * @return количество обновлённых стаканов
+     */
+    public int updateBulk(final Object result) {
+        final int size = LuaTables.size(result);
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            final Map<?, ?> entry = LuaTables.getTable(result, i);
+            if (entry.get("quotes") instanceof Map<?, ?> quotes) {
+                update(ClassSecCode.of((String) entry.get("classCode"), (String) entry.get("secCode")), quotes);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Очистить все стаканы, например, после разрыва соединения с терминалом.
+     */
+    public void clear() {
+        for (final OrderBook orderBook : orderBooks.values()) {
+            orderBook.clear();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.simpleutils.quik;
+
+/**
+ * Поведение очереди коллбэков слушателя при её заполнении.
+ */
+public enum OverflowPolicy {
+    /**
+     * Поток чтения CB-сокета ждёт, пока в очереди не освободится место. Ожидание прекращается,
+     * а коллбэк отбрасывается, если поток чтения прерван или поток исполнения остановлен.
+     */
+    BLOCK,
+    /**
+     * Из очереди удаляется самый старый коллбэк с такой же политикой.
+     */
+    DROP_OLDEST,
+    /**
+     * Для каждого инструмента в очереди хранится только последний коллбэк данного типа.
+     * Новый коллбэк заменяет ещё не обработанный, сохраняя его место в очереди.
+     */
+    CONFLATE
+}
@@ -0,0 +1,176 @@
+package com.simpleutils.quik;
+
+import com.simpleutils.quik.requests.BulkGetParamExRequest;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Матрица значений параметров таблицы текущих торгов: строки соответствуют инструментам,
+ * столбцы — параметрам.
+ * <p>
+ * Числовые значения хранятся в одном массиве {@code double[]}; отсутствующие значения
+ * равны {@link Double#NaN}. Значения, не являющиеся числами (например, статус торгов),
+ * хранятся в отдельном массиве строк, который создаётся только при появлении таких значений.
+ * <p>
+ * Класс не потокобезопасен: обновление и чтение следует выполнять в одном потоке.
+ */
+public final class ParamMatrix {
+
+    private final ClassSecCode[] classSecCodes;
+    private final String[] parameters;
+    private final Map<ClassSecCode, Integer> rows = new HashMap<>();
+    private final Map<String, Integer> columns = new HashMap<>();
+    private final double[] values;
+    private String[] texts = null;
+
+    /**
+     * Конструктор.
+     *
+     * @param classSecCodes инструменты
+     * @param parameters    параметры
+     */
+    public ParamMatrix(final Collection<ClassSecCode> classSecCodes, final Collection<String> parameters) {
+        this.classSecCodes = classSecCodes.toArray(new ClassSecCode[0]);
+        this.parameters = parameters.toArray(new String[0]);
+        for (int row = 0; row < this.classSecCodes.length; row++) {
+            rows.put(this.classSecCodes[row], row);
+        }
+        for (int column = 0; column < this.parameters.length; column++) {
+            columns.put(this.parameters[column], column);
+        }
+        values = new double[this.classSecCodes.length * this.parameters.length];
+        Arrays.fill(values, Double.NaN);
+    }
+
+    /**
+     * @param request запрос, результат которого будет разбираться в матрицу
+     */
+    public ParamMatrix(final BulkGetParamExRequest request) {
+        this(request.getClassSecCodes(), request.getParameters());
+    }
+
+    public int rowCount() {
+        return classSecCodes.length;
+    }
+
+    public int columnCount() {
+        return parameters.length;
+    }
+
+    /**
+     * @param classSecCode инструмент
+     * @return номер строки или -1, если инструмента нет в матрице
+     */
+    public int row(final ClassSecCode classSecCode) {
+        final Integer row = rows.get(classSecCode);
+        return row == null ? -1 : row;
+    }
+
+    /**
+     * @param parameter параметр
+     * @return номер столбца или -1, если параметра нет в матрице
+     */
+    public int column(final String parameter) {
+        final Integer column = columns.get(parameter);
+        return column == null ? -1 : column;
+    }
+
+    public ClassSecCode classSecCode(final int row) {
+        return classSecCodes[row];
+    }
+
+    public String parameter(final int column) {
+        return parameters[column];
+    }
+
+    /**
+     * @param row    номер строки
+     * @param column номер столбца
+     * @return числовое значение или {@link Double#NaN}, если значение отсутствует или не является числом
+     */
+    public double get(final int row, final int column) {
+        return values[index(row, column)];
+    }
+
+    /**
+     * @param classSecCode инструмент
+     * @param parameter    параметр
+     * @return числовое значение или {@link Double#NaN}, если значение отсутствует или не является числом
+     */
+    public double get(final ClassSecCode classSecCode, final String parameter) {
+        final int row = row(classSecCode);
+        final int column = column(parameter);
+        return row < 0 || column < 0 ? Double.NaN : values[row * parameters.length + column];
+    }
+
+    /**
+     * @param row    номер строки
+     * @param column номер столбца
+     * @return значение, не являющееся числом, или {@code null}
+     */
+    public String getText(final int row, final int column) {
+        final int index = index(row, column);
+        return texts == null ? null : texts[index];
+    }
+
+    private int index(final int row, final int column) {
+        if (column < 0 || column >= parameters.length) {
+            throw new IndexOutOfBoundsException("Column " + column + " out of bounds for length " + parameters.length);
+        }
+        return row * parameters.length + column;
+    }
+
+    /**
+     * Применить результат запроса {@link BulkGetParamExRequest}. Значения параметров инструментов,
+     * присутствующих в результате, заменяются полностью; инструменты и параметры, отсутствующие
+     * в матрице, пропускаются.
+     *
+     * @param result значение ключа "result" ответа
+     * @return количество обновлённых строк
+     */
+    public int update(final Object result) {
+        final int size = LuaTables.size(result);
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            final Map<?, ?> entry = LuaTables.getTable(result, i);
+            final int row = row(ClassSecCode.of((String) entry.get("classCode"), (String) entry.get("secCode")));
+            if (row < 0) {
+                continue;
+            }
+            final int offset = row * parameters.length;
+            Arrays.fill(values, offset, offset + parameters.length, Double.NaN);
+            if (texts != null) {
+                Arrays.fill(texts, offset, offset + parameters.length, null);
+            }
+            if (entry.get("params") instanceof Map<?, ?> params) {
+                for (final Map.Entry<?, ?> param : params.entrySet()) {
+                    final Integer column = columns.get(param.getKey());
+                    if (column != null) {
+                        set(offset + column, param.getValue());
+                    }
+                }
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private void set(final int index, final Object value) {
+        if (value instanceof Number number) {
+            values[index] = number.doubleValue();
+            return;
+        }
+        final String s = (String) value;
+        try {
+            values[index] = Double.parseDouble(s);
+        } catch (final NumberFormatException e) {
+            if (texts == null) {
+                texts = new String[values.length];
+            }
+            texts[index] = s;
+        }
+    }
+}
@@ -1,27 +1,41 @@
 package com.simpleutils.quik;
 
+import com.simpleutils.IdleStrategy;
+import com.simpleutils.LatencyHistogram;
 import com.simpleutils.json.JSONConfig;
+import com.simpleutils.metrics.MetricGroup;
+import com.simpleutils.metrics.MetricsRegistry;
+import com.simpleutils.quik.requests.QuikFunction;
+import com.simpleutils.quik.requests.QuikRequest;
+import com.simpleutils.socket.SingleByteCharset;
 import com.simpleutils.socket.SocketConnector;
 import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
 import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.Selector;
 import java.nio.charset.Charset;
 import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
-
-import static org.json.simple.JSONArray.toJSONString;
-import static org.json.simple.JSONValue.escape;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Подключение к терминалу QUIK через сокеты.
@@ -39,6 +53,17 @@ public class QuikConnect {
      * Длительность паузы рабочего цикла в миллисекундах в случае отсутствия сообщений.
      */
     public volatile Duration idleSleepTimeout = Duration.of(10, ChronoUnit.MILLIS);
+    /**
+     * Фабрика стратегий ожидания потока чтения в случае отсутствия сообщений при опросе сокетов
+     * (без селектора) или {@code null} для паузы {@link #idleSleepTimeout}. Каждый поток чтения
+     * создаёт свой экземпляр стратегии при запуске подключения, поэтому допустимы стратегии с состоянием.
+     * <p>
+     * Пауза {@link #idleSleepTimeout} задерживает начало каждой пачки сообщений на время до длительности паузы.
+     * Если задержка критична и для чтения можно выделить ядро, то подойдёт {@link IdleStrategy#busySpin()}
+     * или {@link IdleStrategy#spinThenYield(int)}; компромиссом между задержкой и загрузкой процессора
+     * служит {@link IdleStrategy#backoff(int, int, long, long)}.
+     */
+    public volatile Supplier<IdleStrategy> readerIdleStrategy = null;
     /**
      * Длительность паузы рабочего цикла в миллисекундах в случае ошибок.
      */
@@ -49,6 +74,54 @@ public class QuikConnect {
      * когда из сокета приходят некорректные строки.
      */
     public volatile boolean raiseParseExceptionToListener = true;
+    /**
+     * Использовать ли неблокирующие каналы с общим селектором вместо опроса сокетов с таймаутом.
+     * В этом режиме рабочий цикл просыпается только при поступлении данных или при необходимости
+     * отправить ping-сообщение. Значение применяется при очередном открытии соединения.
+     */
+    public volatile boolean useSelector = false;
+    /**
+     * Читать ли MN- и CB-сокеты в отдельных потоках. В этом режиме всплеск коллбэков не задерживает
+     * получение ответов MN-сервера, а разбор ответов MN-сервера не задерживает коллбэки.
+     * Основной поток при этом только открывает и закрывает соединение и отправляет ping-сообщения.
+     * Значение применяется при вызове {@link #start()}.
+     */
+    public volatile boolean useDedicatedReaders = false;
+    /**
+     * Запускать ли рабочие потоки подключения как виртуальные потоки.
+     * Ожидание в селекторе занимает поток-носитель, поэтому при {@link #useSelector}
+     * рабочие потоки остаются платформенными. Значение применяется при вызове {@link #start()}.
+     */
+    public volatile boolean useVirtualThreads = false;
+    /**
+     * Фабрика декодеров входящих строк. По умолчанию используется {@link JSONSimpleDecoder};
+     * для разбора без построения соответствий можно указать {@code StreamingDecoder::new}.
+     * Значение применяется при очередном открытии соединения.
+     */
+    public volatile Function<Charset, QuikDecoder> decoderFactory = JSONSimpleDecoder::new;
+    /**
+     * Количество MN-соединений в пуле. Запросы к MN-серверу распределяются по соединениям пула
+     * с наименьшим числом ожидающих ответа запросов, поэтому тяжёлые запросы не задерживают
+     * лёгкие. Коллбэки всегда поступают через единственное CB-соединение.
+     * Значение применяется при вызове {@link #start()}.
+     */
+    public volatile int poolSizeMN = 1;
+    /**
+     * Объединять ли одинаковые одновременно выполняемые запросы (см. {@link QuikRequest#getCoalescingKey()}).
+     * Вызывающие стороны, присоединившиеся к уже отправленному запросу, получают тот же JSON-объект
+     * ответа, поэтому изменять его не следует. Таймаут ожидания определяется первым запросом.
+     */
+    public volatile boolean coalesceRequests = true;
+    /**
+     * Кэш ответов на запросы, для которых задано время жизни ответа (см. {@link QuikRequest#getCacheTtl()}),
+     * или {@code null}, если ответы не кэшируются. Кэш очищается при закрытии соединения.
+     */
+    public volatile ResponseCache responseCache = null;
+    /**
+     * Журнал, в который записываются все полученные от терминала строки, кроме ответов на пинг,
+     * или {@code null}, если строки не записываются. Журнал не закрывается при остановке подключения.
+     */
+    public volatile WireJournal journal = null;
 
     /**
      * Кодовая страница для текстовых сообщений.
@@ -58,31 +131,90 @@ public class QuikConnect {
      * Счётчик для номеров сообщений.
      */
     private final AtomicLong counter = new AtomicLong();
+    /**
+     * Количество ячеек таблицы ожидаемых ответов, просматриваемых за одну итерацию рабочего цикла.
+     */
+    private static final int EXPIRE_BUDGET = 64;
+    /**
+     * Виды запросов в статистике задержек: все запросы соединения, chunk-запросы,
+     * заданные строкой, и регистрация функций.
+     */
+    private static final String ALL_REQUESTS = "";
+    private static final String CHUNK = "chunk";
+    private static final String REGISTRATION = "registration";
     /**
      * Соответствие между номерами запросов и ответами на них.
      */
-    private final Map<Long, CompletableFuture<JSONObject>> responseMap = new HashMap<>();
+    private final ResponseTable responseTable = new ResponseTable(4096);
+    /**
+     * Функции, регистрируемые в терминале при каждом открытии соединения.
+     */
+    private final Map<String, QuikFunction> functions = new ConcurrentHashMap<>();
     /**
-     * Socket-коннектор к MN-серверу.
+     * Будущие ответы на отправленные запросы, к которым могут присоединиться одинаковые запросы.
      */
-    private final SocketConnector scMN;
+    private final Map<CoalescingKey, CompletableFuture<JSONObject>> coalescingMap = new ConcurrentHashMap<>();
     /**
-     * Socket-коннектор к CB-серверу.
+     * Количество запросов, присоединённых к уже отправленным одинаковым запросам.
      */
-    private final SocketConnector scCB;
+    private final AtomicLong coalescedCount = new AtomicLong();
+    /**
+     * Гистограммы времени получения ответа: для каждого соединения — по видам запросов.
+     */
+    private final Map<String, Map<String, LatencyHistogram>> latencyHistograms = new ConcurrentHashMap<>();
+    /**
+     * Хост терминала.
+     */
+    private final String host;
+    /**
+     * Порт MN-сервера.
+     */
+    private final int portMN;
+    /**
+     * Пул соединений с MN-сервером.
+     */
+    private volatile Channel[] channelsMN;
+    /**
+     * Соединение с CB-сервером.
+     */
+    private final Channel channelCB;
+    /**
+     * Счётчик для выбора начального соединения пула при поиске наименее загруженного.
+     */
+    private final AtomicInteger nextMN = new AtomicInteger();
     /**
      * Идентификатор клиента.
      */
     public final String clientId;
+    /**
+     * Показатели подключения в реестре {@link MetricsRegistry#getDefault()}: группа
+     * {@code QuikConnect} с именем, равным идентификатору клиента (с номером, если подключений
+     * с таким идентификатором несколько). Группа удаляется из реестра при {@link #shutdown()}.
+     */
+    private final MetricGroup metrics;
+    private final LongAdder parseErrors;
+    private final LongAdder reconnects;
+    /**
+     * Признак того, что соединение уже открывалось; используется только потоком {@link #listeningThread}.
+     */
+    private boolean hasBeenOpen = false;
+    /**
+     * Слушатель событий от терминала QUIK.
+     */
+    private final QuikListener listener;
+    /**
+     * Рабочий цикл потока, который слушает ответы от терминала QUIK.
+     */
+    private final Runnable listeningLoop;
     /**
      * Поток, который слушает ответы от терминала QUIK.
      */
-    private final Thread listeningThread;
-
+    private Thread listeningThread = null;
     /**
-     * Парсер json-строк.
+     * Потоки чтения соединений (MN-соединения пула, затем CB-соединение) или {@code null},
+     * если сокеты читаются в потоке {@link #listeningThread}.
      */
-    private final JSONParser parser = new JSONParser();
+    private Thread[] readers = null;
     /**
      * Признак того, что socket-коннекторы открыты.
      */
@@ -95,6 +227,11 @@ public class QuikConnect {
      * Признак ошибки при взаимодействии с CB-сервером.
      */
     private volatile boolean hasErrorCB = false;
+    /**
+     * Признак остановки подключения. После него ошибки чтения, вызванные прерыванием потоков
+     * (виртуальный поток при прерывании закрывает сокет), не передаются слушателю.
+     */
+    private volatile boolean isStopping = false;
     /**
      * Момент возникновения ошибки взаимодействия с терминалом.
      */
@@ -103,18 +240,16 @@ public class QuikConnect {
      * Момент отправки сообщения "ping".
      */
     private ZonedDateTime lastPingTime = ZonedDateTime.now().minusYears(1);
-    /**
-     * Счётчик сообщений в одной итерации рабочего цикла.
-     */
-    private int count = 0;
 
     public static QuikConnect newInstance(final JSONObject config, final QuikListener quikListener) {
-        return new QuikConnect(
+        final QuikConnect quikConnect = new QuikConnect(
                 JSONConfig.getString(config, "host"),
                 JSONConfig.getInt(config, "portMN"),
                 JSONConfig.getInt(config, "portCB"),
                 JSONConfig.getString(config, "clientId"),
                 quikListener);
+        quikConnect.poolSizeMN = (int) JSONConfig.getOrDefault(config, "poolSizeMN", 1L);
+        return quikConnect;
     }
 
     /**
@@ -128,13 +263,28 @@ public class QuikConnect {
     public QuikConnect(final String host, final int portMN, final int portCB,
                        final String clientId,
                        final QuikListener listener) {
-        scMN = new SocketConnector(host, portMN);
-        scCB = new SocketConnector(host, portCB);
+        this.host = host;
+        this.portMN = portMN;
         this.clientId = clientId;
-        listeningThread = new Thread() {
+        metrics = MetricsRegistry.getDefault().newGroup(QuikConnect.class.getSimpleName(), clientId);
+        parseErrors = metrics.counter("parseErrors");
+        reconnects = metrics.counter("reconnects");
+        metrics.gauge("inFlightRequests", responseTable::getInFlightCount);
+        metrics.gauge("timeouts", responseTable::getTimeoutCount);
+        metrics.gauge("coalescedRequests", coalescedCount::get);
+        channelsMN = new Channel[]{newChannel(host, portMN, true, "MN")};
+        channelCB = newChannel(host, portCB, false, "CB");
+        this.listener = listener;
+        listeningLoop = new Runnable() {
+            /**
+             * Стратегия ожидания при опросе сокетов в этом потоке.
+             */
+            private IdleStrategy idleStrategy = null;
+
             @Override
             public void run() {
-                while (!interrupted()) {
+                idleStrategy = newReaderIdleStrategy();
+                while (!isStopping && !Thread.interrupted()) {
                     step();
                 }
                 if (hasOpenSocketConnectors) {
@@ -154,42 +304,58 @@ public class QuikConnect {
                 }
                 if (hasErrorMN || hasErrorCB) {
                     pause(errorSleepTimeout);
-                    cleanupResponseMap();
+                    expireResponses();
                     return;
                 }
+                final boolean isDedicated = readers != null;
                 if (!hasOpenSocketConnectors) {
-                    synchronized (scMN) {
+                    if (useSelector) {
                         try {
-                            scMN.open(charset);
+                            final Selector shared = isDedicated ? null : Selector.open();
+                            for (final Channel channel : channelsMN) {
+                                channel.selector = isDedicated ? Selector.open() : shared;
+                            }
+                            channelCB.selector = isDedicated ? Selector.open() : shared;
                         } catch (final IOException e) {
+                            closeSelectors();
                             hasErrorMN = true;
+                            hasErrorCB = true;
                             errorTime = ZonedDateTime.now();
                             try {
                                 listener.onExceptionMN(e);
                             } catch (final Exception ignored) {
                             }
+                            return;
                         }
                     }
-                    synchronized (scCB) {
-                        try {
-                            scCB.open(charset);
-                        } catch (final IOException e) {
-                            hasErrorCB = true;
-                            errorTime = ZonedDateTime.now();
-                            try {
-                                listener.onExceptionCB(e);
-                            } catch (final Exception ignored) {
-                            }
+                    for (final Channel channel : channelsMN) {
+                        if (!open(channel)) {
+                            break;
                         }
                     }
+                    open(channelCB);
                     if (hasErrorMN || hasErrorCB) {
                         hasErrorMN = true;
                         hasErrorCB = true;
                         closeSocketConnectors();
-                        cleanupResponseMap();
+                        expireResponses();
                         return;
                     }
+                    if (isDedicated) {
+                        for (final Channel channel : channelsMN) {
+                            wakeup(channel.selector);
+                        }
+                        wakeup(channelCB.selector);
+                    }
+                    for (final Channel channel : channelsMN) {
+                        registerFunctions(channel);
+                    }
+                    registerFunctions(channelCB);
                     hasOpenSocketConnectors = true;
+                    if (hasBeenOpen) {
+                        reconnects.increment();
+                    }
+                    hasBeenOpen = true;
                     try {
                         listener.onOpen();
                     } catch (final Exception ignored) {
@@ -197,192 +363,412 @@ public class QuikConnect {
                 }
 
                 ensurePing();
+                expireResponses();
 
-                count = 0;
+                if (isDedicated) {
+                    pause(idleSleepTimeout);
+                    return;
+                }
+                int count = 0;
                 if (!hasErrorMN) {
-                    receiveMN();
+                    for (final Channel channel : channelsMN) {
+                        count += receive(channel);
+                    }
                 }
                 if (!hasErrorCB) {
-                    receiveCB();
+                    count += receive(channelCB);
                 }
-                cleanupResponseMap();
-                if (count == 0) {
-                    pause(idleSleepTimeout);
+                if (count > 0) {
+                    idleStrategy.reset();
+                } else {
+                    final Selector selector = channelCB.selector;
+                    if (selector == null) {
+                        idleStrategy.idle();
+                    } else {
+                        final long millisToPing = Duration.between(ZonedDateTime.now(), lastPingTime.plus(pingTimeout)).toMillis();
+                        awaitReadiness(selector, millisToPing);
+                    }
                 }
             }
 
-            private void receiveMN() {
-                while (true) {
-                    final String s;
-                    synchronized (scMN) {
-                        try {
-                            s = scMN.receive();
-                        } catch (final IOException e) {
-                            hasErrorMN = true;
-                            errorTime = ZonedDateTime.now();
-                            try {
-                                listener.onExceptionMN(e);
-                            } catch (final Exception ignored) {
-                            }
-                            break;
-                        }
-                    }
-                    if (s == null) {
-                        break;
-                    }
-                    count++;
-                    if ("pong".equals(s)) {
-                        continue;
-                    }
-                    try {
-                        final JSONObject jsonObject = (JSONObject) parser.parse(s);
-                        final Object o = jsonObject.get("id");
-                        if (o instanceof Long) {
-                            final CompletableFuture<JSONObject> response;
-                            synchronized (responseMap) {
-                                response = responseMap.remove(o);
-                            }
-                            if (response != null) {
-                                response.complete(jsonObject);
-                            }
-                        }
-                    } catch (final ParseException e) {
-                        if (raiseParseExceptionToListener) {
-                            try {
-                                listener.onExceptionMN(e);
-                            } catch (final Exception ignored) {
-                            }
-                        }
-                    } catch (final ClassCastException e) {
-                        try {
-                            listener.onExceptionMN(e);
-                        } catch (final Exception ignored) {
-                        }
+            /**
+             * Открыть соединение.
+             *
+             * @param channel соединение
+             * @return {@code true}, если соединение открыто
+             */
+            private boolean open(final Channel channel) {
+                channel.decoder = decoderFactory.apply(charset);
+                channel.lock.lock();
+                try {
+                    if (channel.selector == null) {
+                        channel.sc.open(charset);
+                    } else {
+                        channel.sc.open(charset, channel.selector);
                     }
+                    return true;
+                } catch (final IOException e) {
+                    raiseException(channel, e);
+                    return false;
+                } finally {
+                    channel.lock.unlock();
                 }
             }
 
-            private void receiveCB() {
-                while (true) {
-                    final String s;
-                    synchronized (scCB) {
-                        try {
-                            s = scCB.receive();
-                        } catch (final IOException e) {
-                            hasErrorCB = true;
-                            errorTime = ZonedDateTime.now();
-                            try {
-                                listener.onExceptionCB(e);
-                            } catch (final Exception ignored) {
-                            }
-                            break;
-                        }
-                    }
-                    if (s == null) {
-                        break;
-                    }
-                    count++;
-                    if ("pong".equals(s)) {
-                        continue;
-                    }
-                    try {
-                        final JSONObject jsonObject = (JSONObject) parser.parse(s);
-                        if (jsonObject.get("callback") instanceof String) {
-                            listener.onCallback(jsonObject);
-                            continue;
-                        }
-                        final Object o = jsonObject.get("id");
-                        if (o instanceof Long) {
-                            final CompletableFuture<JSONObject> response;
-                            synchronized (responseMap) {
-                                response = responseMap.remove(o);
-                            }
-                            if (response != null) {
-                                response.complete(jsonObject);
-                            }
-                        }
-                    } catch (final ParseException e) {
-                        if (raiseParseExceptionToListener) {
-                            try {
-                                listener.onExceptionCB(e);
-                            } catch (final Exception ignored) {
-                            }
-                        }
-                    } catch (final ClassCastException e) {
-                        try {
-                            listener.onExceptionCB(e);
-                        } catch (final Exception ignored) {
-                        }
+            /**
+             * Повторно зарегистрировать в терминале известные функции после открытия соединения.
+             *
+             * @param channel соединение
+             */
+            private void registerFunctions(final Channel channel) {
+                if (functions.isEmpty()) {
+                    return;
+                }
+                channel.lock.lock();
+                try {
+                    final EnvelopeEncoder encoder = channel.encoder;
+                    encoder.clear();
+                    for (final QuikFunction function : functions.values()) {
+                        encodeRegistration(channel, function, pingTimeout.toMillis(), TimeUnit.MILLISECONDS);
                     }
+                    channel.sc.send(encoder.buffer());
+                } catch (final IOException e) {
+                    raiseException(channel, e);
+                } finally {
+                    channel.lock.unlock();
                 }
             }
 
-            private void cleanupResponseMap() {
-                synchronized (responseMap) {
-                    responseMap.entrySet().removeIf(entry -> entry.getValue().isDone());
+            private void wakeup(final Selector selector) {
+                if (selector != null) {
+                    selector.wakeup();
                 }
             }
 
-            private void pause(final Duration duration) {
-                try {
-                    sleep(duration.toMillis());
-                } catch (final InterruptedException e) {
-                    currentThread().interrupt();
-                }
+            private void expireResponses() {
+                responseTable.expire(EXPIRE_BUDGET);
             }
 
             private void ensurePing() {
                 final ZonedDateTime now = ZonedDateTime.now();
                 if (now.isAfter(lastPingTime.plus(pingTimeout))) {
-                    synchronized (scMN) {
-                        if (!hasErrorMN) {
-                            try {
-                                scMN.send("ping");
-                            } catch (final IOException e) {
-                                hasErrorMN = true;
-                                errorTime = ZonedDateTime.now();
-                            }
-                        }
+                    for (final Channel channel : channelsMN) {
+                        ping(channel);
                     }
-                    synchronized (scCB) {
-                        if (!hasErrorCB) {
-                            try {
-                                scCB.send("ping");
-                            } catch (final IOException e) {
-                                hasErrorCB = true;
-                                errorTime = ZonedDateTime.now();
-                            }
+                    ping(channelCB);
+                    lastPingTime = now;
+                }
+            }
+
+            private void ping(final Channel channel) {
+                channel.lock.lock();
+                try {
+                    if (!hasError(channel)) {
+                        try {
+                            channel.sc.send("ping");
+                        } catch (final IOException e) {
+                            setError(channel);
                         }
                     }
-                    lastPingTime = now;
+                } finally {
+                    channel.lock.unlock();
                 }
             }
 
             private void closeSocketConnectors() {
-                synchronized (scMN) {
+                for (final Channel channel : channelsMN) {
+                    quit(channel);
+                }
+                quit(channelCB);
+                closeSelectors();
+                hasOpenSocketConnectors = false;
+                invalidateCache();
+                try {
+                    listener.onClose();
+                } catch (final Exception ignored) {
+                }
+            }
+
+            private void quit(final Channel channel) {
+                channel.lock.lock();
+                try {
+                    channel.sc.send("quit");
+                } catch (final IOException ignored) {
+                } finally {
+                    channel.sc.close();
+                    channel.outstanding.set(0);
+                    channel.functions.clear();
+                    channel.lock.unlock();
+                }
+            }
+
+            private void closeSelectors() {
+                for (final Channel channel : channelsMN) {
+                    closeSelector(channel);
+                }
+                closeSelector(channelCB);
+            }
+
+            private void closeSelector(final Channel channel) {
+                final Selector selector = channel.selector;
+                channel.selector = null;
+                if (selector != null) {
                     try {
-                        scMN.send("quit");
+                        selector.close();
                     } catch (final IOException ignored) {
-                    } finally {
-                        scMN.close();
                     }
                 }
-                synchronized (scCB) {
-                    try {
-                        scCB.send("quit");
-                    } catch (final IOException ignored) {
-                    } finally {
-                        scCB.close();
+            }
+        };
+    }
+
+    /**
+     * Соединение с MN- или CB-сервером терминала.
+     */
+    private static final class Channel {
+        /**
+         * Socket-коннектор.
+         */
+        final SocketConnector sc;
+        /**
+         * Признак соединения с MN-сервером.
+         */
+        final boolean isMN;
+        /**
+         * Блокировка коннектора. Используется вместо synchronized, чтобы ожидание не закрепляло
+         * виртуальный поток за потоком-носителем.
+         */
+        final ReentrantLock lock = new ReentrantLock();
+        /**
+         * Кодировщик исходящих запросов; используется под блокировкой {@link #lock}.
+         */
+        final EnvelopeEncoder encoder;
+        /**
+         * Количество отправленных через соединение запросов, ответ на которые ещё не получен.
+         */
+        final AtomicInteger outstanding = new AtomicInteger();
+        /**
+         * Имена функций, зарегистрированных в терминале через это соединение;
+         * используется под блокировкой {@link #lock}.
+         */
+        final Set<String> functions = new HashSet<>();
+        /**
+         * Имя соединения в статистике задержек: {@code MN}, {@code MN-0}, ... или {@code CB}.
+         */
+        final String name;
+        /**
+         * Гистограммы времени получения ответа по видам запросов и по всем запросам соединения.
+         */
+        final Map<String, LatencyHistogram> latencies;
+        final LatencyHistogram latency;
+        /**
+         * Счётчики полученных строк и байтов; общие для всех MN-соединений пула.
+         */
+        final LongAdder messagesReceived;
+        final LongAdder bytesReceived;
+        /**
+         * Декодер полученных строк.
+         */
+        QuikDecoder decoder = null;
+        /**
+         * Селектор канала или {@code null}, если используется опрос сокета.
+         * Если сокеты читаются в одном потоке, то все каналы используют общий селектор.
+         */
+        volatile Selector selector = null;
+
+        Channel(final SocketConnector sc, final boolean isMN, final EnvelopeEncoder encoder,
+                final String name, final Map<String, LatencyHistogram> latencies,
+                final LongAdder messagesReceived, final LongAdder bytesReceived) {
+            this.sc = sc;
+            this.isMN = isMN;
+            this.encoder = encoder;
+            this.name = name;
+            this.latencies = latencies;
+            latency = latencies.computeIfAbsent(ALL_REQUESTS, key -> new LatencyHistogram());
+            this.messagesReceived = messagesReceived;
+            this.bytesReceived = bytesReceived;
+        }
+    }
+
+    /**
+     * Ключ объединения запросов.
+     *
+     * @param isMN         признак запроса к MN-серверу
+     * @param requestClass класс запроса
+     * @param key          ключ, заданный запросом
+     */
+    private record CoalescingKey(boolean isMN, Class<?> requestClass, Object key) {
+    }
+
+    private Channel newChannel(final String host, final int port, final boolean isMN, final String name) {
+        return new Channel(new SocketConnector(host, port), isMN, new EnvelopeEncoder(clientId, SingleByteCharset.of(charset)),
+                name, latencyHistograms.computeIfAbsent(name, key -> new ConcurrentHashMap<>()),
+                metrics.counter(isMN ? "messagesReceivedMN" : "messagesReceivedCB"),
+                metrics.counter(isMN ? "bytesReceivedMN" : "bytesReceivedCB"));
+    }
+
+    private boolean hasError(final Channel channel) {
+        return channel.isMN ? hasErrorMN : hasErrorCB;
+    }
+
+    private void setError(final Channel channel) {
+        if (channel.isMN) {
+            hasErrorMN = true;
+        } else {
+            hasErrorCB = true;
+        }
+        errorTime = ZonedDateTime.now();
+    }
+
+    private void raiseException(final Channel channel, final Exception e) {
+        if (channel.isMN) {
+            hasErrorMN = true;
+        } else {
+            hasErrorCB = true;
+        }
+        errorTime = ZonedDateTime.now();
+        if (!isStopping) {
+            notifyException(channel, e);
+        }
+    }
+
+    private void notifyException(final Channel channel, final Exception e) {
+        try {
+            if (channel.isMN) {
+                listener.onExceptionMN(e);
+            } else {
+                listener.onExceptionCB(e);
+            }
+        } catch (final Exception ignored) {
+        }
+    }
+
+    /**
+     * Прочитать все сообщения, уже полученные через соединение.
+     *
+     * @param channel соединение
+     * @return количество прочитанных сообщений
+     */
+    private int receive(final Channel channel) {
+        final SocketConnector sc = channel.sc;
+        int count = 0;
+        while (true) {
+            final QuikMessage message;
+            channel.lock.lock();
+            try {
+                try {
+                    if (!sc.isConnected() || !sc.receiveLine()) {
+                        break;
                     }
+                } catch (final IOException e) {
+                    raiseException(channel, e);
+                    break;
+                }
+                count++;
+                channel.messagesReceived.increment();
+                channel.bytesReceived.add(sc.lineEnd() - sc.lineStart() + 1);
+                if (sc.lineEquals("pong")) {
+                    continue;
+                }
+                final WireJournal journal = this.journal;
+                if (journal != null) {
+                    journal.append(channel.isMN ? WireJournal.SOURCE_MN : WireJournal.SOURCE_CB,
+                            sc.lineBuffer(), sc.lineStart(), sc.lineEnd());
                 }
-                hasOpenSocketConnectors = false;
                 try {
-                    listener.onClose();
-                } catch (final Exception ignored) {
+                    message = channel.decoder.decode(sc.lineBuffer(), sc.lineStart(), sc.lineEnd());
+                } catch (final ParseException e) {
+                    parseErrors.increment();
+                    if (raiseParseExceptionToListener) {
+                        notifyException(channel, e);
+                    }
+                    continue;
+                } catch (final ClassCastException e) {
+                    parseErrors.increment();
+                    notifyException(channel, e);
+                    continue;
+                }
+            } finally {
+                channel.lock.unlock();
+            }
+            if (!channel.isMN && message.callback() != null) {
+                try {
+                    listener.onCallback(message);
+                } catch (final RuntimeException e) {
+                    notifyException(channel, e);
+                }
+                continue;
+            }
+            final long id = message.id();
+            if (id != 0L) {
+                final ResponseTable.Response response = responseTable.remove(id);
+                if (response != null) {
+                    response.completeWithLatency(message.toJSONObject());
+                }
+            }
+        }
+        return count;
+    }
+
+    private void awaitReadiness(final Selector selector, final long timeoutMillis) {
+        try {
+            selector.select(Math.max(1L, timeoutMillis));
+            selector.selectedKeys().clear();
+        } catch (final ClosedSelectorException ignored) {
+        } catch (final IOException e) {
+            hasErrorMN = true;
+            hasErrorCB = true;
+            errorTime = ZonedDateTime.now();
+            try {
+                listener.onExceptionMN(e);
+            } catch (final Exception ignored) {
+            }
+        }
+    }
+
+    private static void pause(final Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return новый экземпляр стратегии ожидания потока чтения, см. {@link #readerIdleStrategy}
+     */
+    private IdleStrategy newReaderIdleStrategy() {
+        final Supplier<IdleStrategy> factory = readerIdleStrategy;
+        return factory == null ? () -> pause(idleSleepTimeout) : factory.get();
+    }
+
+    /**
+     * Создать рабочий цикл потока, читающего одно соединение.
+     *
+     * @param channel соединение
+     * @return рабочий цикл
+     */
+    private Runnable newReaderLoop(final Channel channel) {
+        return () -> {
+            final IdleStrategy idleStrategy = newReaderIdleStrategy();
+            while (!isStopping && !Thread.interrupted()) {
+                if (hasError(channel)) {
+                    pause(idleSleepTimeout);
+                    continue;
+                }
+                final int count = receive(channel);
+                if (count > 0) {
+                    idleStrategy.reset();
+                } else {
+                    final Selector selector = channel.selector;
+                    if (selector == null) {
+                        idleStrategy.idle();
+                    } else {
+                        awaitReadiness(selector, pingTimeout.toMillis());
+                    }
                 }
             }
         };
-        listeningThread.setName(clientId + "-" + QuikConnect.class.getSimpleName());
     }
 
     /**
@@ -394,7 +780,31 @@ public class QuikConnect {
      * 3) поток слушателя: {@code listener.getExecutionThread().start()}.
      */
     public void start() {
+        final int poolSize = Math.max(1, poolSizeMN);
+        if (poolSize != channelsMN.length) {
+            final Channel[] channels = new Channel[poolSize];
+            for (int i = 0; i < poolSize; i++) {
+                channels[i] = newChannel(host, portMN, true, poolSize > 1 ? "MN-" + i : "MN");
+            }
+            channelsMN = channels;
+        }
+        final String name = clientId + "-" + QuikConnect.class.getSimpleName();
+        final Thread.Builder builder = useVirtualThreads && !useSelector ? Thread.ofVirtual() : Thread.ofPlatform();
+        if (useDedicatedReaders) {
+            readers = new Thread[poolSize + 1];
+            for (int i = 0; i < poolSize; i++) {
+                readers[i] = builder.name(name + "-MN" + (poolSize > 1 ? "-" + i : ""))
+                        .unstarted(newReaderLoop(channelsMN[i]));
+            }
+            readers[poolSize] = builder.name(name + "-CB").unstarted(newReaderLoop(channelCB));
+        }
+        listeningThread = builder.name(name).unstarted(listeningLoop);
         listeningThread.start();
+        if (readers != null) {
+            for (final Thread reader : readers) {
+                reader.start();
+            }
+        }
     }
 
     public boolean hasErrorMN() {
@@ -413,82 +823,224 @@ public class QuikConnect {
      * {@code listener.getExecutionThread().interrupt();}<br>
      * {@code listener.getExecutionThread().join();}<br>
      * 2) этот метод.
+     * <p>
+     * Потоки чтения прерываются; поток, ожидающий места в очереди слушателя {@link AbstractQuikListener},
+     * отбрасывает коллбэк и завершается.
      */
     public void shutdown() {
+        isStopping = true;
+        MetricsRegistry.getDefault().remove(metrics);
+        if (listener instanceof final AbstractQuikListener abstractQuikListener) {
+            abstractQuikListener.stopExecution();
+        }
+        if (readers != null) {
+            for (final Thread reader : readers) {
+                reader.interrupt();
+            }
+        }
+        if (listeningThread == null) {
+            return;
+        }
         listeningThread.interrupt();
         try {
+            if (readers != null) {
+                for (final Thread reader : readers) {
+                    reader.join();
+                }
+            }
             listeningThread.join();
         } catch (final InterruptedException e) {
             Thread.currentThread().interrupt();
         }
     }
 
-    private void sendSyncMN(final String s) throws IOException {
-        synchronized (scMN) {
-            try {
-                scMN.send(s);
-            } catch (final IOException e) {
-                hasErrorMN = true;
-                errorTime = ZonedDateTime.now();
-                throw e;
+    /**
+     * Выбрать соединение пула с наименьшим числом ожидающих ответа запросов.
+     * При равенстве соединения перебираются по кругу.
+     *
+     * @return соединение с MN-сервером
+     */
+    private Channel nextChannelMN() {
+        final Channel[] channels = channelsMN;
+        final int n = channels.length;
+        if (n == 1) {
+            return channels[0];
+        }
+        final int first = (nextMN.getAndIncrement() & Integer.MAX_VALUE) % n;
+        Channel best = channels[first];
+        int bestOutstanding = best.outstanding.get();
+        for (int k = 1; k < n && bestOutstanding > 0; k++) {
+            final Channel channel = channels[(first + k) % n];
+            final int outstanding = channel.outstanding.get();
+            if (outstanding < bestOutstanding) {
+                best = channel;
+                bestOutstanding = outstanding;
             }
         }
+        return best;
     }
 
-    private void sendSyncCB(final String s) throws IOException {
-        synchronized (scCB) {
-            try {
-                scCB.send(s);
-            } catch (final IOException e) {
-                hasErrorCB = true;
-                errorTime = ZonedDateTime.now();
-                throw e;
-            }
+    /**
+     * Зарегистрировать будущий ответ на запрос, отправляемый через соединение.
+     *
+     * @param channel   соединение
+     * @param operation вид запроса для статистики задержек (см. {@link #getLatencySnapshots(boolean)})
+     * @param timeout   таймаут ожидания
+     * @param unit      единица измерения времени
+     * @return будущий ответ
+     */
+    private ResponseTable.Response register(final Channel channel, final String operation,
+                                            final long timeout, final TimeUnit unit) {
+        final ResponseTable.Response response = responseTable.register(counter.incrementAndGet(), timeout, unit,
+                latencyHistogram(channel, operation), channel.latency);
+        if (channel.isMN && channelsMN.length > 1) {
+            channel.outstanding.incrementAndGet();
+            response.whenComplete((r, t) -> channel.outstanding.decrementAndGet());
         }
+        return response;
     }
 
-    private long sendMN(final String chunk) throws IOException {
-        final long id = counter.incrementAndGet();
-        sendSyncMN("{\"id\":" + id
-                + ",\"clientId\":\"" + clientId
-                + "\",\"chunk\":\"" + escape(chunk) + "\"}");
-        return id;
+    private void sendChunk(final Channel channel, final long id, final String chunk) throws IOException {
+        channel.lock.lock();
+        try {
+            final EnvelopeEncoder encoder = channel.encoder;
+            encoder.clear();
+            encoder.chunk(id, chunk);
+            channel.sc.send(encoder.buffer());
+        } catch (final IOException e) {
+            setError(channel);
+            throw e;
+        } finally {
+            channel.lock.unlock();
+        }
     }
 
-    private long sendMN(final String fname, final List<?> args) throws IOException {
-        final long id = counter.incrementAndGet();
-        sendSyncMN("{\"id\":" + id
-                + ",\"clientId\":\"" + clientId
-                + "\",\"fname\":\"" + fname
-                + "\",\"args\":" + toJSONString(args) + "}");
-        return id;
+    private void sendFunction(final Channel channel, final long id, final String fname, final List<?> args) throws IOException {
+        channel.lock.lock();
+        try {
+            final EnvelopeEncoder encoder = channel.encoder;
+            encoder.clear();
+            encoder.function(id, fname, args);
+            channel.sc.send(encoder.buffer());
+        } catch (final IOException e) {
+            setError(channel);
+            throw e;
+        } finally {
+            channel.lock.unlock();
+        }
+    }
+
+    private void sendFunction(final Channel channel, final long id, final QuikFunction function, final List<?> args,
+                              final long timeout, final TimeUnit unit) throws IOException {
+        channel.lock.lock();
+        try {
+            final EnvelopeEncoder encoder = channel.encoder;
+            encoder.clear();
+            encodeRegistration(channel, function, timeout, unit);
+            encoder.function(id, function.getName(), args);
+            channel.sc.send(encoder.buffer());
+        } catch (final IOException e) {
+            setError(channel);
+            throw e;
+        } finally {
+            channel.lock.unlock();
+        }
     }
 
-    private long sendCB(final String chunk) throws IOException {
-        final long id = counter.incrementAndGet();
-        sendSyncCB("{\"id\":" + id
-                + ",\"clientId\":\"" + clientId
-                + "\",\"chunk\":\"" + escape(chunk) + "\"}");
+    /**
+     * Добавить в кодировщик соединения chunk-запрос, регистрирующий функцию, если она ещё
+     * не зарегистрирована через это соединение. Вызывается под блокировкой соединения.
+     * <p>
+     * Если терминал не подтвердил регистрацию, то функция снова считается незарегистрированной,
+     * а об ошибке сообщается слушателю.
+     *
+     * @param channel  соединение
+     * @param function функция
+     * @param timeout  таймаут ожидания подтверждения
+     * @param unit     единица измерения времени
+     */
+    private void encodeRegistration(final Channel channel, final QuikFunction function,
+                                    final long timeout, final TimeUnit unit) {
+        final String name = function.getName();
+        if (!channel.functions.add(name)) {
+            return;
+        }
+        final ResponseTable.Response response = responseTable.register(counter.incrementAndGet(), timeout, unit,
+                latencyHistogram(channel, REGISTRATION), channel.latency);
+        response.whenComplete((jsonObject, t) -> {
+            if (t == null && Boolean.TRUE.equals(jsonObject.get("result"))) {
+                return;
+            }
+            channel.lock.lock();
+            try {
+                channel.functions.remove(name);
+            } finally {
+                channel.lock.unlock();
+            }
+            if (t == null) {
+                notifyException(channel, new RuntimeException("Cannot register function " + function + ": " + jsonObject));
+            }
+        });
+        channel.encoder.chunk(response.id, function.getRegistration());
+    }
 
-        return id;
+    private void sendCallback(final Channel channel, final long id, final String callback, final String filter) throws IOException {
+        channel.lock.lock();
+        try {
+            final EnvelopeEncoder encoder = channel.encoder;
+            encoder.clear();
+            encoder.callback(id, callback, filter);
+            channel.sc.send(encoder.buffer());
+        } catch (final IOException e) {
+            setError(channel);
+            throw e;
+        } finally {
+            channel.lock.unlock();
+        }
     }
 
-    private long sendCB(final String fname, final List<?> args) throws IOException {
-        final long id = counter.incrementAndGet();
-        sendSyncCB("{\"id\":" + id
-                + ",\"clientId\":\"" + clientId
-                + "\",\"fname\":\"" + fname
-                + "\",\"args\":" + toJSONString(args) + "}");
-        return id;
+    /**
+     * Отправить пакет запросов одной записью в сокет. Запросы, для которых задана функция,
+     * отправляются как function-запросы.
+     *
+     * @param channel   соединение
+     * @param responses будущие ответы, номера которых используются как номера запросов
+     * @param requests  запросы
+     * @param timeout   таймаут ожидания
+     * @param unit      единица измерения времени
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    private void sendRequests(final Channel channel, final List<ResponseTable.Response> responses,
+                              final List<? extends QuikRequest> requests,
+                              final long timeout, final TimeUnit unit) throws IOException {
+        channel.lock.lock();
+        try {
+            final EnvelopeEncoder encoder = channel.encoder;
+            encoder.clear();
+            for (int i = 0; i < responses.size(); i++) {
+                final QuikRequest request = requests.get(i);
+                final QuikFunction function = request.getFunction();
+                if (function == null) {
+                    encoder.chunk(responses.get(i).id, request.getRequest());
+                } else {
+                    functions.putIfAbsent(function.getName(), function);
+                    encodeRegistration(channel, function, timeout, unit);
+                    encoder.function(responses.get(i).id, function.getName(), request.getArguments());
+                }
+            }
+            channel.sc.send(encoder.buffer());
+        } catch (final IOException e) {
+            setError(channel);
+            throw e;
+        } finally {
+            channel.lock.unlock();
+        }
     }
 
-    private long sendCB(final String callback, final String filter) throws IOException {
-        final long id = counter.incrementAndGet();
-        sendSyncCB("{\"id\":" + id
-                + ",\"clientId\":\"" + clientId
-                + "\",\"callback\":\"" + callback
-                + "\",\"filter\":\"" + escape(filter) + "\"}");
-        return id;
+    private CompletableFuture<JSONObject> fail(final ResponseTable.Response response, final IOException e) {
+        responseTable.remove(response);
+        response.completeExceptionally(e);
+        return response;
     }
 
     /**
@@ -501,17 +1053,18 @@ public class QuikConnect {
      */
     public CompletableFuture<JSONObject> submitMN(final String chunk,
                                                   final long timeout, final TimeUnit unit) {
-        synchronized (responseMap) {
-            final long id;
-            try {
-                id = sendMN(chunk);
-            } catch (final IOException e) {
-                return CompletableFuture.failedFuture(e);
-            }
-            final CompletableFuture<JSONObject> response = new CompletableFuture<JSONObject>().orTimeout(timeout, unit);
-            responseMap.put(id, response);
-            return response;
+        return submitChunk(nextChannelMN(), CHUNK, chunk, timeout, unit);
+    }
+
+    private CompletableFuture<JSONObject> submitChunk(final Channel channel, final String operation, final String chunk,
+                                                      final long timeout, final TimeUnit unit) {
+        final ResponseTable.Response response = register(channel, operation, timeout, unit);
+        try {
+            sendChunk(channel, response.id, chunk);
+        } catch (final IOException e) {
+            return fail(response, e);
         }
+        return response;
     }
 
     /**
@@ -525,17 +1078,14 @@ public class QuikConnect {
      */
     public CompletableFuture<JSONObject> submitMN(final String fname, final List<?> args,
                                                   final long timeout, final TimeUnit unit) {
-        synchronized (responseMap) {
-            final long id;
-            try {
-                id = sendMN(fname, args);
-            } catch (final IOException e) {
-                return CompletableFuture.failedFuture(e);
-            }
-            final CompletableFuture<JSONObject> response = new CompletableFuture<JSONObject>().orTimeout(timeout, unit);
-            responseMap.put(id, response);
-            return response;
+        final Channel channel = nextChannelMN();
+        final ResponseTable.Response response = register(channel, fname, timeout, unit);
+        try {
+            sendFunction(channel, response.id, fname, args);
+        } catch (final IOException e) {
+            return fail(response, e);
         }
+        return response;
     }
 
     /**
@@ -548,17 +1098,7 @@ public class QuikConnect {
      */
     public CompletableFuture<JSONObject> submitCB(final String chunk,
                                                   final long timeout, final TimeUnit unit) {
-        synchronized (responseMap) {
-            final long id;
-            try {
-                id = sendCB(chunk);
-            } catch (final IOException e) {
-                return CompletableFuture.failedFuture(e);
-            }
-            final CompletableFuture<JSONObject> response = new CompletableFuture<JSONObject>().orTimeout(timeout, unit);
-            responseMap.put(id, response);
-            return response;
-        }
+        return submitChunk(channelCB, CHUNK, chunk, timeout, unit);
     }
 
     /**
@@ -572,17 +1112,13 @@ public class QuikConnect {
      */
     public CompletableFuture<JSONObject> submitCB(final String fname, final List<?> args,
                                                   final long timeout, final TimeUnit unit) {
-        synchronized (responseMap) {
-            final long id;
-            try {
-                id = sendCB(fname, args);
-            } catch (final IOException e) {
-                return CompletableFuture.failedFuture(e);
-            }
-            final CompletableFuture<JSONObject> response = new CompletableFuture<JSONObject>().orTimeout(timeout, unit);
-            responseMap.put(id, response);
-            return response;
+        final ResponseTable.Response response = register(channelCB, fname, timeout, unit);
+        try {
+            sendFunction(channelCB, response.id, fname, args);
+        } catch (final IOException e) {
+            return fail(response, e);
         }
+        return response;
     }
 
     /**
@@ -596,17 +1132,330 @@ public class QuikConnect {
      */
     public CompletableFuture<JSONObject> submitCB(final String callback, final String filter,
                                                   final long timeout, final TimeUnit unit) {
-        synchronized (responseMap) {
-            final long id;
-            try {
-                id = sendCB(callback, filter);
-            } catch (final IOException e) {
-                return CompletableFuture.failedFuture(e);
+        final ResponseTable.Response response = register(channelCB, callback, timeout, unit);
+        try {
+            sendCallback(channelCB, response.id, callback, filter);
+        } catch (final IOException e) {
+            return fail(response, e);
+        }
+        return response;
+    }
+
+    /**
+     * Зарегистрировать функцию в терминале. Функция передаётся терминалу через каждое соединение
+     * перед первым вызовом, а также заново после каждого открытия соединения.
+     *
+     * @param function функция
+     */
+    public void registerFunction(final QuikFunction function) {
+        functions.put(function.getName(), function);
+    }
+
+    /**
+     * Вызвать зарегистрированную функцию на MN-сервере и получить будущий ответ.
+     * Если функция ещё не зарегистрирована, то она регистрируется.
+     *
+     * @param function функция
+     * @param args     список аргументов функции
+     * @param timeout  таймаут ожидания
+     * @param unit     единица измерения времени
+     * @return будущий ответ MN-сервера
+     */
+    public CompletableFuture<JSONObject> submitMN(final QuikFunction function, final List<?> args,
+                                                  final long timeout, final TimeUnit unit) {
+        functions.putIfAbsent(function.getName(), function);
+        final Channel channel = nextChannelMN();
+        final ResponseTable.Response response = register(channel, function.getName(), timeout, unit);
+        try {
+            sendFunction(channel, response.id, function, args, timeout, unit);
+        } catch (final IOException e) {
+            return fail(response, e);
+        }
+        return response;
+    }
+
+    /**
+     * Вызвать зарегистрированную функцию на CB-сервере и получить будущий ответ.
+     * Если функция ещё не зарегистрирована, то она регистрируется.
+     *
+     * @param function функция
+     * @param args     список аргументов функции
+     * @param timeout  таймаут ожидания
+     * @param unit     единица измерения времени
+     * @return будущий ответ CB-сервера
+     */
+    public CompletableFuture<JSONObject> submitCB(final QuikFunction function, final List<?> args,
+                                                  final long timeout, final TimeUnit unit) {
+        functions.putIfAbsent(function.getName(), function);
+        final ResponseTable.Response response = register(channelCB, function.getName(), timeout, unit);
+        try {
+            sendFunction(channelCB, response.id, function, args, timeout, unit);
+        } catch (final IOException e) {
+            return fail(response, e);
+        }
+        return response;
+    }
+
+    /**
+     * Отправить запрос MN-серверу и получить будущий ответ. Если для запроса задана функция,
+     * то вызывается она, иначе отправляется chunk-запрос. Ответ на объединяемый или кэшируемый
+     * запрос может быть общим для нескольких вызывающих сторон и не должен изменяться,
+     * см. {@link QuikRequest#getCoalescingKey()}.
+     *
+     * @param request запрос
+     * @param timeout таймаут ожидания
+     * @param unit    единица измерения времени
+     * @return будущий ответ MN-сервера
+     */
+    public CompletableFuture<JSONObject> submitMN(final QuikRequest request,
+                                                  final long timeout, final TimeUnit unit) {
+        return coalesce(true, request, timeout, unit);
+    }
+
+    /**
+     * Отправить запрос CB-серверу и получить будущий ответ. Если для запроса задана функция,
+     * то вызывается она, иначе отправляется chunk-запрос. Ответ на объединяемый или кэшируемый
+     * запрос может быть общим для нескольких вызывающих сторон и не должен изменяться,
+     * см. {@link QuikRequest#getCoalescingKey()}.
+     *
+     * @param request запрос
+     * @param timeout таймаут ожидания
+     * @param unit    единица измерения времени
+     * @return будущий ответ CB-сервера
+     */
+    public CompletableFuture<JSONObject> submitCB(final QuikRequest request,
+                                                  final long timeout, final TimeUnit unit) {
+        return coalesce(false, request, timeout, unit);
+    }
+
+    /**
+     * Получить ответ из кэша, присоединиться к уже отправленному одинаковому запросу или отправить запрос.
+     * Каждая вызывающая сторона получает собственную копию будущего ответа, поэтому её отмена
+     * не влияет на остальных, но сам JSON-объект ответа общий для всех вызывающих сторон и кэша
+     * и не должен изменяться, см. {@link QuikRequest#getCoalescingKey()}. Ответ помещается в кэш, а запрос удаляется из таблицы объединения
+     * до завершения ответа, так что запрос, отправленный после получения ответа, либо получает
+     * ответ из кэша, либо выполняется заново.
+     *
+     * @param isMN    признак запроса к MN-серверу
+     * @param request запрос
+     * @param timeout таймаут ожидания
+     * @param unit    единица измерения времени
+     * @return будущий ответ
+     */
+    private CompletableFuture<JSONObject> coalesce(final boolean isMN, final QuikRequest request,
+                                                   final long timeout, final TimeUnit unit) {
+        final Object requestKey = request.getCoalescingKey();
+        if (requestKey == null) {
+            return send(isMN, request, timeout, unit);
+        }
+        final CoalescingKey key = new CoalescingKey(isMN, request.getClass(), requestKey);
+        final ResponseCache cache = responseCache;
+        final Duration ttl = cache == null ? Duration.ZERO : request.getCacheTtl();
+        final long generation;
+        if (ttl.isPositive()) {
+            final JSONObject cached = cache.get(key);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+            generation = cache.generation();
+        } else {
+            generation = 0L;
+        }
+        if (!coalesceRequests) {
+            final CompletableFuture<JSONObject> response = send(isMN, request, timeout, unit);
+            if (ttl.isPositive()) {
+                response.thenAccept(jsonObject -> cacheResponse(cache, key, jsonObject, ttl, generation));
             }
-            final CompletableFuture<JSONObject> response = new CompletableFuture<JSONObject>().orTimeout(timeout, unit);
-            responseMap.put(id, response);
             return response;
         }
+        CompletableFuture<JSONObject> shared = coalescingMap.get(key);
+        if (shared == null) {
+            final CompletableFuture<JSONObject> future = new CompletableFuture<>();
+            shared = coalescingMap.putIfAbsent(key, future);
+            if (shared == null) {
+                try {
+                    send(isMN, request, timeout, unit).whenComplete((response, t) -> {
+                        if (t == null && ttl.isPositive()) {
+                            cacheResponse(cache, key, response, ttl, generation);
+                        }
+                        coalescingMap.remove(key, future);
+                        if (t == null) {
+                            future.complete(response);
+                        } else {
+                            future.completeExceptionally(t);
+                        }
+                    });
+                } catch (final RuntimeException e) {
+                    coalescingMap.remove(key, future);
+                    future.completeExceptionally(e);
+                }
+                return future.copy();
+            }
+        }
+        coalescedCount.incrementAndGet();
+        return shared.copy();
+    }
+
+    /**
+     * Поместить ответ в кэш, если он не содержит ошибки.
+     */
+    private static void cacheResponse(final ResponseCache cache, final CoalescingKey key, final JSONObject response,
+                                      final Duration ttl, final long generation) {
+        if (!response.containsKey("error")) {
+            cache.put(key, response, ttl, generation);
+        }
+    }
+
+    /**
+     * Очистить кэш ответов, если он задан.
+     */
+    public void invalidateCache() {
+        final ResponseCache cache = responseCache;
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Удалить из кэша ответов, если он задан, ответы на запросы указанного класса.
+     *
+     * @param requestClass класс запроса
+     */
+    public void invalidateCache(final Class<? extends QuikRequest> requestClass) {
+        final ResponseCache cache = responseCache;
+        if (cache != null) {
+            cache.invalidateIf(key -> key instanceof CoalescingKey k && k.requestClass() == requestClass);
+        }
+    }
+
+    private CompletableFuture<JSONObject> send(final boolean isMN, final QuikRequest request,
+                                               final long timeout, final TimeUnit unit) {
+        final QuikFunction function = request.getFunction();
+        if (function == null) {
+            return submitChunk(isMN ? nextChannelMN() : channelCB, operation(request), request.getRequest(), timeout, unit);
+        }
+        return isMN
+                ? submitMN(function, request.getArguments(), timeout, unit)
+                : submitCB(function, request.getArguments(), timeout, unit);
+    }
+
+    /**
+     * @param request запрос
+     * @return вид запроса для статистики задержек: имя функции или простое имя класса запроса
+     */
+    private static String operation(final QuikRequest request) {
+        final QuikFunction function = request.getFunction();
+        return function == null ? request.getClass().getSimpleName() : function.getName();
+    }
+
+    private static LatencyHistogram latencyHistogram(final Channel channel, final String operation) {
+        final LatencyHistogram histogram = channel.latencies.get(operation);
+        return histogram != null ? histogram : channel.latencies.computeIfAbsent(operation, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Получить снимки гистограмм времени получения ответа в наносекундах — от регистрации запроса
+     * до получения ответа потоком чтения. Ключ снимка имеет вид {@code соединение/вид запроса},
+     * где соединение — {@code MN} (или {@code MN-0}, {@code MN-1}, ... при пуле соединений)
+     * либо {@code CB}, а вид запроса — имя функции, простое имя класса запроса {@link QuikRequest},
+     * название коллбэка при подписке, {@code chunk} для chunk-запросов, заданных строкой,
+     * или {@code registration} для регистрации функций. Снимок по ключу, совпадающему с именем
+     * соединения, описывает все запросы соединения. Ответы, не полученные до таймаута, не учитываются.
+     *
+     * @param reset обнулить ли гистограммы, чтобы следующие снимки описывали новый интервал времени
+     * @return снимки гистограмм, упорядоченные по ключу
+     */
+    public Map<String, LatencyHistogram.Snapshot> getLatencySnapshots(final boolean reset) {
+        final Map<String, LatencyHistogram.Snapshot> snapshots = new TreeMap<>();
+        for (final Map.Entry<String, Map<String, LatencyHistogram>> channelEntry : latencyHistograms.entrySet()) {
+            for (final Map.Entry<String, LatencyHistogram> entry : channelEntry.getValue().entrySet()) {
+                final String key = entry.getKey().equals(ALL_REQUESTS)
+                        ? channelEntry.getKey()
+                        : channelEntry.getKey() + "/" + entry.getKey();
+                snapshots.put(key, entry.getValue().snapshot(reset));
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * Получить показатели подключения: количество полученных строк и байтов по MN- и CB-соединениям
+     * ({@code messagesReceivedMN}, {@code bytesReceivedMN}, {@code messagesReceivedCB}, {@code bytesReceivedCB}),
+     * ошибки разбора ({@code parseErrors}), переподключения ({@code reconnects}), ожидающие ответа запросы
+     * ({@code inFlightRequests}), таймауты ({@code timeouts}) и объединённые запросы ({@code coalescedRequests}).
+     * Для публикации в JMX вызовите {@link MetricsRegistry#publish()}. После {@link #shutdown()}
+     * группа не публикуется, но остаётся доступной через этот метод.
+     *
+     * @return группа показателей
+     */
+    public MetricGroup getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return количество MN-соединений в пуле, с которым запущено подключение
+     */
+    public int getPoolSizeMN() {
+        return channelsMN.length;
+    }
+
+    /**
+     * @return количество запросов, присоединённых к уже отправленным одинаковым запросам
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * Отправить пакет запросов MN-серверу одной записью в сокет и получить будущие ответы.
+     *
+     * @param requests запросы
+     * @param timeout  таймаут ожидания
+     * @param unit     единица измерения времени
+     * @return будущие ответы MN-сервера в порядке следования запросов
+     */
+    public List<CompletableFuture<JSONObject>> submitMNBatch(final List<? extends QuikRequest> requests,
+                                                             final long timeout, final TimeUnit unit) {
+        final Channel channel = nextChannelMN();
+        final List<ResponseTable.Response> responses = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            responses.add(register(channel, operation(requests.get(i)), timeout, unit));
+        }
+        try {
+            sendRequests(channel, responses, requests, timeout, unit);
+        } catch (final IOException e) {
+            return failAll(responses, e);
+        }
+        return List.copyOf(responses);
+    }
+
+    /**
+     * Отправить пакет запросов CB-серверу одной записью в сокет и получить будущие ответы.
+     *
+     * @param requests запросы
+     * @param timeout  таймаут ожидания
+     * @param unit     единица измерения времени
+     * @return будущие ответы CB-сервера в порядке следования запросов
+     */
+    public List<CompletableFuture<JSONObject>> submitCBBatch(final List<? extends QuikRequest> requests,
+                                                             final long timeout, final TimeUnit unit) {
+        final List<ResponseTable.Response> responses = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            responses.add(register(channelCB, operation(requests.get(i)), timeout, unit));
+        }
+        try {
+            sendRequests(channelCB, responses, requests, timeout, unit);
+        } catch (final IOException e) {
+            return failAll(responses, e);
+        }
+        return List.copyOf(responses);
+    }
+
+    private List<CompletableFuture<JSONObject>> failAll(final List<ResponseTable.Response> responses, final IOException e) {
+        for (final ResponseTable.Response response : responses) {
+            fail(response, e);
+        }
+        return List.copyOf(responses);
     }
 
     /**
@@ -636,6 +1485,19 @@ public class QuikConnect {
         return submitMN(fname, args, timeout, unit).get();
     }
 
+    /**
+     * Отправить запрос MN-серверу и ждать получения ответа.
+     *
+     * @param request запрос
+     * @param timeout таймаут ожидания
+     * @param unit    единица измерения времени
+     * @return ответ MN-сервера
+     */
+    public JSONObject executeMN(final QuikRequest request,
+                                final long timeout, final TimeUnit unit) throws CancellationException, ExecutionException, InterruptedException {
+        return submitMN(request, timeout, unit).get();
+    }
+
     /**
      * Отправить chunk-запрос CB-серверу и ждать получения ответа.
      *
@@ -676,4 +1538,17 @@ public class QuikConnect {
                                 final long timeout, final TimeUnit unit) throws CancellationException, ExecutionException, InterruptedException {
         return submitCB(callback, filter, timeout, unit).get();
     }
+
+    /**
+     * Отправить запрос CB-серверу и ждать получения ответа.
+     *
+     * @param request запрос
+     * @param timeout таймаут ожидания
+     * @param unit    единица измерения времени
+     * @return ответ CB-сервера
+     */
+    public JSONObject executeCB(final QuikRequest request,
+                                final long timeout, final TimeUnit unit) throws CancellationException, ExecutionException, InterruptedException {
+        return submitCB(request, timeout, unit).get();
+    }
 }
@@ -0,0 +1,27 @@
+package com.simpleutils.quik;
+
+import org.json.simple.parser.ParseException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Декодер строк, полученных от терминала QUIK.
+ * <p>
+ * Экземпляр декодера используется одним потоком чтения; {@link QuikConnect} создаёт отдельный
+ * декодер для каждого сокета при открытии соединения.
+ */
+public interface QuikDecoder {
+
+    /**
+     * Разобрать строку, байты которой находятся в буфере между указанными индексами.
+     * Позиция и граница буфера не изменяются.
+     *
+     * @param buffer буфер
+     * @param start  индекс первого байта строки
+     * @param end    индекс, следующий за последним байтом строки
+     * @return сообщение
+     * @throws ParseException     если строка не является корректной JSON-строкой
+     * @throws ClassCastException если строка не является JSON-объектом
+     */
+    QuikMessage decode(ByteBuffer buffer, int start, int end) throws ParseException;
+}
@@ -53,6 +53,19 @@ public interface QuikListener {
      */
     void onCallback(JSONObject jsonObject);
 
+    /**
+     * Вызывается при получении коллбэка от терминала QUIK в потоке, где работает {@link QuikConnect}.
+     * <p>
+     * Сообщение может быть переиспользуемым представлением буфера сокета, действительным только
+     * до возврата из метода. Реализация по умолчанию преобразует сообщение в JSON-объект
+     * и вызывает {@link #onCallback(JSONObject)}.
+     *
+     * @param message сообщение, описывающее коллбэк
+     */
+    default void onCallback(final QuikMessage message) {
+        onCallback(message.toJSONObject());
+    }
+
     /**
      * Вызывается при возникновении ошибки в работе MN-сервера в потоке, где работает {@link QuikConnect}.
      *
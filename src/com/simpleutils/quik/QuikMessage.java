@@ -0,0 +1,75 @@
+package com.simpleutils.quik;
+
+import org.json.simple.JSONObject;
+
+/**
+ * Представление JSON-объекта, полученного от терминала QUIK, для чтения без построения соответствия.
+ * <p>
+ * Объекты, возвращаемые потоковыми декодерами, переиспользуются и остаются действительными
+ * только до разбора следующего сообщения. Для сохранения сообщения следует использовать
+ * {@link #toJSONObject()}.
+ */
+public interface QuikMessage {
+
+    /**
+     * @return название коллбэка или {@code null}, если сообщение не является коллбэком
+     */
+    default String callback() {
+        return getString("callback");
+    }
+
+    /**
+     * @return номер запроса или 0, если номер в сообщении отсутствует
+     */
+    default long id() {
+        return getLong("id", 0L);
+    }
+
+    /**
+     * @param key ключ
+     * @return {@code true}, если объект содержит указанный ключ
+     */
+    boolean has(String key);
+
+    /**
+     * @param key ключ
+     * @return строковое значение или {@code null}, если значение отсутствует или не является строкой
+     */
+    String getString(String key);
+
+    /**
+     * Получить целочисленное значение. Строки, содержащие число, также преобразуются.
+     *
+     * @param key          ключ
+     * @param defaultValue значение по умолчанию
+     * @return значение или значение по умолчанию, если значение отсутствует или не является числом
+     */
+    long getLong(String key, long defaultValue);
+
+    /**
+     * Получить вещественное значение. Строки, содержащие число, также преобразуются.
+     *
+     * @param key          ключ
+     * @param defaultValue значение по умолчанию
+     * @return значение или значение по умолчанию, если значение отсутствует или не является числом
+     */
+    double getDouble(String key, double defaultValue);
+
+    /**
+     * @param key          ключ
+     * @param defaultValue значение по умолчанию
+     * @return значение или значение по умолчанию, если значение отсутствует или не является логическим
+     */
+    boolean getBoolean(String key, boolean defaultValue);
+
+    /**
+     * @param key ключ
+     * @return вложенный объект или {@code null}, если значение отсутствует или не является объектом
+     */
+    QuikMessage getObject(String key);
+
+    /**
+     * @return сообщение в виде JSON-объекта, не зависящего от буферов декодера
+     */
+    JSONObject toJSONObject();
+}
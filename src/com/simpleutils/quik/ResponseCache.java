@@ -0,0 +1,155 @@
+package com.simpleutils.quik;
+
+import org.json.simple.JSONObject;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Кэш ответов терминала на запросы, не изменяющие его состояние.
+ * <p>
+ * Каждый ответ хранится не дольше заданного времени жизни. Количество хранимых ответов
+ * ограничено: при переполнении вытесняется ответ, к которому дольше всего не обращались.
+ * <p>
+ * Очистка кэша увеличивает номер поколения; ответы на запросы, отправленные до очистки,
+ * в кэш не помещаются, чтобы данные разорванного соединения не пережили очистку.
+ */
+public class ResponseCache {
+
+    private record Entry(JSONObject response, long expirationNanos) {
+    }
+
+    private final int maxSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Object, Entry> entries;
+    private long generation = 0L;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Конструктор.
+     *
+     * @param maxSize максимальное количество хранимых ответов
+     */
+    public ResponseCache(final int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Object, Entry> eldest) {
+                return size() > ResponseCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * @param key ключ запроса
+     * @return ответ или {@code null}, если ответа нет или время его жизни истекло
+     */
+    public JSONObject get(final Object key) {
+        lock.lock();
+        try {
+            final Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expirationNanos - System.nanoTime() > 0L) {
+                    hitCount.incrementAndGet();
+                    return entry.response;
+                }
+                entries.remove(key);
+            }
+            missCount.incrementAndGet();
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return номер поколения, который следует передать в {@link #put(Object, JSONObject, Duration, long)}
+     */
+    public long generation() {
+        lock.lock();
+        try {
+            return generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Поместить ответ в кэш.
+     *
+     * @param key        ключ запроса
+     * @param response   ответ
+     * @param ttl        время жизни ответа
+     * @param generation номер поколения на момент отправки запроса
+     */
+    public void put(final Object key, final JSONObject response, final Duration ttl, final long generation) {
+        final long expirationNanos = System.nanoTime() + ttl.toNanos();
+        lock.lock();
+        try {
+            if (this.generation == generation) {
+                entries.put(key, new Entry(response, expirationNanos));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Удалить ответы, ключи которых удовлетворяют условию.
+     *
+     * @param predicate условие
+     */
+    public void invalidateIf(final Predicate<Object> predicate) {
+        lock.lock();
+        try {
+            generation++;
+            final Iterator<Object> iterator = entries.keySet().iterator();
+            while (iterator.hasNext()) {
+                if (predicate.test(iterator.next())) {
+                    iterator.remove();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Удалить все ответы.
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            generation++;
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+}
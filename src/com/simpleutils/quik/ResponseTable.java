@@ -0,0 +1,244 @@
+package com.simpleutils.quik;
+
+import com.simpleutils.LatencyHistogram;
+import org.json.simple.JSONObject;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Таблица соответствия между номерами запросов и будущими ответами на них.
+ * <p>
+ * Номера запросов выдаются последовательно, поэтому ответ с номером {@code id} хранится в ячейке
+ * кольцевого массива с индексом {@code id & mask}. Регистрация и извлечение выполняются
+ * без блокировок с помощью CAS. Если ячейка занята ещё не завершённым запросом
+ * (одновременно ожидается больше ответов, чем ёмкость таблицы), то ответ помещается
+ * в дополнительное соответствие.
+ * <p>
+ * Завершённые по таймауту ответы удаляются постепенно: {@link #expire(int)} за один вызов
+ * просматривает ограниченное число ячеек, продвигая курсор по кругу. Кроме того, ячейка
+ * с завершённым ответом переиспользуется при регистрации нового запроса.
+ * <p>
+ * Таблица ведёт счётчики ожидающих ответа запросов и запросов, завершённых по таймауту:
+ * каждый будущий ответ при регистрации увеличивает первый счётчик и уменьшает его
+ * ровно один раз при завершении любым способом. Счётчики изменяются до завершения будущего ответа,
+ * поэтому ожидающий ответа поток видит их уже обновлёнными; если будущий ответ одновременно
+ * завершён другим потоком, то изменение отменяется.
+ */
+final class ResponseTable {
+
+    /**
+     * Будущий ответ на запрос с известным номером.
+     */
+    static final class Response extends CompletableFuture<JSONObject> {
+        final long id;
+        private final ResponseTable table;
+        /**
+         * Момент регистрации запроса ({@link System#nanoTime()}).
+         */
+        final long sendNanos;
+        /**
+         * Гистограммы, в которые записывается время получения ответа, или {@code null}.
+         */
+        final LatencyHistogram histogram;
+        final LatencyHistogram channelHistogram;
+
+        Response(final ResponseTable table, final long id,
+                 final LatencyHistogram histogram, final LatencyHistogram channelHistogram) {
+            this.table = table;
+            this.id = id;
+            this.histogram = histogram;
+            this.channelHistogram = channelHistogram;
+            sendNanos = System.nanoTime();
+        }
+
+        /**
+         * Завершить будущий ответ и записать время от регистрации запроса до получения ответа.
+         * Время не записывается, если будущий ответ уже завершён, например, по таймауту.
+         *
+         * @param jsonObject ответ
+         * @return {@code true}, если будущий ответ завершён этим вызовом
+         */
+        boolean completeWithLatency(final JSONObject jsonObject) {
+            final long nanos = System.nanoTime() - sendNanos;
+            if (!complete(jsonObject)) {
+                return false;
+            }
+            if (histogram != null) {
+                histogram.record(nanos);
+                channelHistogram.record(nanos);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean complete(final JSONObject value) {
+            if (isDone()) {
+                return false;
+            }
+            table.inFlight.decrement();
+            if (super.complete(value)) {
+                return true;
+            }
+            table.inFlight.increment();
+            return false;
+        }
+
+        @Override
+        public boolean completeExceptionally(final Throwable ex) {
+            if (isDone()) {
+                return false;
+            }
+            final boolean isTimeout = ex instanceof TimeoutException;
+            table.inFlight.decrement();
+            if (isTimeout) {
+                table.timeouts.increment();
+            }
+            if (super.completeExceptionally(ex)) {
+                return true;
+            }
+            table.inFlight.increment();
+            if (isTimeout) {
+                table.timeouts.decrement();
+            }
+            return false;
+        }
+
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            if (isDone()) {
+                return false;
+            }
+            table.inFlight.decrement();
+            if (super.cancel(mayInterruptIfRunning)) {
+                return true;
+            }
+            table.inFlight.increment();
+            return false;
+        }
+    }
+
+    private final AtomicReferenceArray<Response> slots;
+    private final int mask;
+    private final ConcurrentHashMap<Long, Response> overflow = new ConcurrentHashMap<>();
+    /**
+     * Курсор постепенной очистки; используется только потоком чтения.
+     */
+    private int cursor = 0;
+    private final LongAdder inFlight = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    /**
+     * Конструктор.
+     *
+     * @param capacity ёмкость таблицы, округляемая вверх до степени двойки
+     */
+    ResponseTable(final int capacity) {
+        final int n = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        slots = new AtomicReferenceArray<>(n);
+        mask = n - 1;
+    }
+
+    /**
+     * Зарегистрировать будущий ответ на запрос.
+     *
+     * @param id      номер запроса
+     * @param timeout таймаут ожидания
+     * @param unit    единица измерения времени
+     * @return будущий ответ
+     */
+    Response register(final long id, final long timeout, final TimeUnit unit) {
+        return register(id, timeout, unit, null, null);
+    }
+
+    /**
+     * Зарегистрировать будущий ответ на запрос с записью времени получения ответа в гистограммы.
+     *
+     * @param id               номер запроса
+     * @param timeout          таймаут ожидания
+     * @param unit             единица измерения времени
+     * @param histogram        гистограмма запросов данного вида или {@code null}
+     * @param channelHistogram гистограмма всех запросов соединения или {@code null}
+     * @return будущий ответ
+     */
+    Response register(final long id, final long timeout, final TimeUnit unit,
+                      final LatencyHistogram histogram, final LatencyHistogram channelHistogram) {
+        final Response response = new Response(this, id, histogram, channelHistogram);
+        inFlight.increment();
+        response.orTimeout(timeout, unit);
+        final int i = (int) id & mask;
+        while (true) {
+            final Response old = slots.get(i);
+            if (old == null || old.isDone()) {
+                if (slots.compareAndSet(i, old, response)) {
+                    return response;
+                }
+            } else {
+                overflow.put(id, response);
+                return response;
+            }
+        }
+    }
+
+    /**
+     * Извлечь будущий ответ по номеру запроса.
+     *
+     * @param id номер запроса
+     * @return будущий ответ или {@code null}, если запрос с таким номером не ожидает ответа
+     */
+    Response remove(final long id) {
+        final int i = (int) id & mask;
+        final Response response = slots.get(i);
+        if (response != null && response.id == id) {
+            return slots.compareAndSet(i, response, null) ? response : null;
+        }
+        return overflow.isEmpty() ? null : overflow.remove(id);
+    }
+
+    /**
+     * Удалить будущий ответ из таблицы.
+     *
+     * @param response будущий ответ
+     */
+    void remove(final Response response) {
+        if (!slots.compareAndSet((int) response.id & mask, response, null)) {
+            overflow.remove(response.id, response);
+        }
+    }
+
+    /**
+     * Освободить ячейки с завершёнными ответами.
+     *
+     * @param budget количество просматриваемых ячеек
+     */
+    void expire(final int budget) {
+        for (int k = 0; k < budget; k++) {
+            final int i = cursor++ & mask;
+            final Response response = slots.get(i);
+            if (response != null && response.isDone()) {
+                slots.compareAndSet(i, response, null);
+            }
+        }
+        if (!overflow.isEmpty()) {
+            overflow.values().removeIf(CompletableFuture::isDone);
+        }
+    }
+
+    /**
+     * @return количество зарегистрированных запросов, ответ на которые ещё не получен
+     */
+    long getInFlightCount() {
+        return inFlight.sum();
+    }
+
+    /**
+     * @return количество запросов, завершённых по таймауту
+     */
+    long getTimeoutCount() {
+        return timeouts.sum();
+    }
+}
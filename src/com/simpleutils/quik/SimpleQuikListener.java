@@ -7,11 +7,17 @@ import org.json.simple.JSONObject;
 import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 public class SimpleQuikListener extends AbstractQuikListener {
 
@@ -23,7 +29,28 @@ public class SimpleQuikListener extends AbstractQuikListener {
 
     protected AbstractLogger logger = null;
     protected String logPrefix = "";
-    protected final Map<String, String> callbackSubscriptionMap = new LinkedHashMap<>();
+    /**
+     * Подписки на коллбэки. Соответствие синхронизировано, так как читается потоком чтения
+     * при отклонении коллбэков без подписки.
+     */
+    protected final Map<String, String> callbackSubscriptionMap = Collections.synchronizedMap(new LinkedHashMap<>());
+    /**
+     * Типизированные обработчики коллбэков по названиям коллбэков; читаются потоком чтения.
+     */
+    private final Map<String, CallbackHandler<?>> callbackHandlers = new ConcurrentHashMap<>();
+    /**
+     * Отклонять ли в потоке чтения коллбэки без подписки и без типизированного обработчика,
+     * см. {@link #isAccepted(String)}. По умолчанию все коллбэки передаются в {@link #processCallback(String, JSONObject)}.
+     */
+    protected volatile boolean rejectUnsubscribedCallbacks = false;
+    /**
+     * Количество отклонённых коллбэков, на которые нет подписки; изменяется только потоком чтения.
+     */
+    private volatile long rejectedCount = 0;
+    /**
+     * Обработчик коллбэков, переданных через кольцевой буфер, см. {@link #callbackDispatcher()}.
+     */
+    private final BiConsumer<String, JSONObject> callbackDispatcher = this::dispatchCallback;
 
     protected boolean isOpen = false;
     protected ZonedDateTime connectedSince = null;
@@ -71,10 +98,40 @@ public class SimpleQuikListener extends AbstractQuikListener {
         this.logPrefix = logPrefix;
     }
 
+    public void setRejectUnsubscribedCallbacks(final boolean rejectUnsubscribedCallbacks) {
+        this.rejectUnsubscribedCallbacks = rejectUnsubscribedCallbacks;
+    }
+
     public void addCallbackSubscription(final String callback, final String filter) {
         callbackSubscriptionMap.put(callback, filter);
     }
 
+    /**
+     * Зарегистрировать типизированный обработчик коллбэка и подписаться на коллбэк без фильтра,
+     * если подписка на него ещё не задана. Метод следует вызывать до запуска подключения.
+     * <p>
+     * Коллбэк декодируется в потоке чтения CB-сокета, а обработчик вызывается в потоке исполнения.
+     * Метод {@link #processCallback(String, JSONObject)} для такого коллбэка не вызывается,
+     * и JSON-объект не строится. Коллбэк, который не удалось декодировать, отбрасывается
+     * и учитывается в показателе {@code parseErrors} подключения.
+     *
+     * @param callback название коллбэка
+     * @param decoder  декодер коллбэка, например {@code Trade.DECODER}
+     * @param handler  обработчик
+     * @param <T>      тип коллбэка
+     */
+    public <T> void on(final String callback, final CallbackDecoder<? extends T> decoder, final Consumer<? super T> handler) {
+        callbackHandlers.put(callback, new CallbackHandler<T>(decoder, handler));
+        callbackSubscriptionMap.putIfAbsent(callback, "*");
+    }
+
+    /**
+     * @return количество коллбэков, отклонённых при {@link #rejectUnsubscribedCallbacks}
+     */
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
     public boolean isOpen() {
         return isOpen;
     }
@@ -150,16 +207,93 @@ public class SimpleQuikListener extends AbstractQuikListener {
         });
     }
 
+    @Override
+    public void onCallback(final QuikMessage message) {
+        final String callback = message.callback();
+        final CallbackHandler<?> callbackHandler = callbackHandlers.get(callback);
+        if (callbackHandler != null) {
+            dispatch(callback, callbackHandler, message);
+        } else if (!rejectUnsubscribedCallbacks || isAccepted(callback)) {
+            onCallback(message.toJSONObject());
+        } else {
+            //noinspection NonAtomicOperationOnVolatileField
+            rejectedCount++;
+        }
+    }
+
     @Override
     public void onCallback(final JSONObject jsonObject) {
         final String callback = (String) jsonObject.get("callback");
-        submit(() -> {
+        final CallbackHandler<?> callbackHandler = callbackHandlers.get(callback);
+        if (callbackHandler != null) {
+            dispatch(callback, callbackHandler, new JSONSimpleDecoder.Message(jsonObject));
+            return;
+        }
+        if (rejectUnsubscribedCallbacks && !isAccepted(callback)) {
+            //noinspection NonAtomicOperationOnVolatileField
+            rejectedCount++;
+            return;
+        }
+        if (!offerCallback(callback, jsonObject)) {
+            submitCallback(callback, jsonObject, () -> dispatchCallback(callback, jsonObject));
+        }
+    }
+
+    @Override
+    protected BiConsumer<String, JSONObject> callbackDispatcher() {
+        return callbackDispatcher;
+    }
+
+    /**
+     * Обработать коллбэк в потоке исполнения: записать его в журнал и передать в
+     * {@link #processCallback(String, JSONObject)}.
+     *
+     * @param callback   название коллбэка
+     * @param jsonObject JSON-объект с информацией о коллбэке
+     */
+    protected void dispatchCallback(final String callback, final JSONObject jsonObject) {
+        if (logger != null && logger.isEnabled(AbstractLogger.TRACE)) {
+            logger.trace(logPrefix + "onCallback " + callback);
+            logger.trace(logPrefix + jsonObject);
+        }
+        processCallback(callback, jsonObject);
+    }
+
+    /**
+     * Декодировать коллбэк в потоке чтения и передать его обработчику. Ошибка декодирования одного
+     * коллбэка не считается ошибкой соединения: она учитывается в показателе {@code parseErrors}
+     * подключения, а коллбэк отбрасывается.
+     */
+    private <T> void dispatch(final String callback, final CallbackHandler<T> callbackHandler, final QuikMessage message) {
+        final T value;
+        try {
+            value = callbackHandler.decoder.decode(message);
+        } catch (final RuntimeException e) {
+            final QuikConnect connect = quikConnect;
+            if (connect != null) {
+                connect.getMetrics().counter("parseErrors").increment();
+            }
             if (logger != null) {
-                logger.trace(() -> logPrefix + "onCallback " + callback);
-                logger.trace(() -> logPrefix + jsonObject);
+                logger.log(AbstractLogger.WARN, logPrefix + "Cannot decode callback " + callback, e);
             }
-            processCallback(callback, jsonObject);
-        });
+            return;
+        }
+        if (!offerCallback(callback, callbackHandler.handler, value)) {
+            submitCallback(callback, message, () -> callbackHandler.handler.accept(value));
+        }
+    }
+
+    /**
+     * Проверить, следует ли обрабатывать коллбэк, не имеющий типизированного обработчика.
+     * Вызывается в потоке чтения, только если задан {@link #rejectUnsubscribedCallbacks}.
+     * По умолчанию принимаются коллбэки, на которые задана подписка, а также {@code OnConnected},
+     * используемый для отслеживания состояния соединения.
+     *
+     * @param callback название коллбэка
+     * @return {@code true}, если коллбэк следует обработать
+     */
+    protected boolean isAccepted(final String callback) {
+        return callbackSubscriptionMap.containsKey(callback) || "OnConnected".equals(callback);
     }
 
     /**
@@ -253,7 +387,11 @@ public class SimpleQuikListener extends AbstractQuikListener {
     }
 
     private void subscribeToCallbacks() throws ExecutionException, InterruptedException {
-        for (final Map.Entry<String, String> entry : callbackSubscriptionMap.entrySet()) {
+        final List<Map.Entry<String, String>> subscriptions;
+        synchronized (callbackSubscriptionMap) {
+            subscriptions = new ArrayList<>(callbackSubscriptionMap.entrySet());
+        }
+        for (final Map.Entry<String, String> entry : subscriptions) {
             subscribeToCallback(entry.getKey(), entry.getValue());
         }
     }
@@ -293,6 +431,7 @@ public class SimpleQuikListener extends AbstractQuikListener {
     protected void onDisconnected() {
         if (connectedSince != null) {
             connectedSince = null;
+            quikConnect.invalidateCache();
             if (logger != null) {
                 logger.debug(() -> logPrefix + "Quik is disconnected.");
             }
@@ -304,9 +443,23 @@ public class SimpleQuikListener extends AbstractQuikListener {
         logger.debug(() -> logPrefix + "Unknown callback: " + callback);
     }
 
+    private record CallbackHandler<T>(CallbackDecoder<? extends T> decoder, Consumer<? super T> handler) {
+    }
+
     protected Object executeMN(final QuikRequest quikRequest) throws ExecutionException, InterruptedException {
         return quikConnect.executeMN(
-                quikRequest.getRequest(),
+                quikRequest,
                 requestTimeout.toMillis(), TimeUnit.MILLISECONDS).get("result");
     }
+
+    /**
+     * Выполнить запрос в отдельном виртуальном потоке и передать результат обработчику
+     * в потоке исполнения бизнес-логики.
+     *
+     * @param quikRequest запрос
+     * @param handler     обработчик результата и исключения (одно из них равно {@code null})
+     */
+    protected void forkMN(final QuikRequest quikRequest, final BiConsumer<Object, Throwable> handler) {
+        fork(() -> executeMN(quikRequest), handler);
+    }
 }
@@ -0,0 +1,606 @@
+package com.simpleutils.quik;
+
+import com.simpleutils.socket.SingleByteCharset;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Потоковый декодер, разбирающий строку непосредственно в байтовом буфере сокета.
+ * <p>
+ * Разбор строит плоскую ленту узлов JSON-дерева (тип, границы значения, границы ключа,
+ * индекс следующего соседнего узла) в переиспользуемых массивах. Ключи и короткие ASCII-строки
+ * (названия коллбэков, коды классов и инструментов) интернируются во внутреннем кэше,
+ * поэтому повторное чтение известных значений не создаёт новых строк.
+ * <p>
+ * Возвращаемое сообщение является переиспользуемым представлением и действительно только
+ * до следующего вызова {@link #decode(ByteBuffer, int, int)}.
+ * Декодер не является потокобезопасным.
+ */
+public class StreamingDecoder implements QuikDecoder {
+
+    private static final byte OBJECT = 1;
+    private static final byte ARRAY = 2;
+    private static final byte STRING = 3;
+    private static final byte NUMBER = 4;
+    private static final byte TRUE = 5;
+    private static final byte FALSE = 6;
+    private static final byte NULL = 7;
+    /**
+     * Максимальная длина интернируемой строки.
+     */
+    private static final int MAX_INTERNED_LENGTH = 32;
+    /**
+     * Заранее интернируемые ключи и значения.
+     */
+    private static final String[] KNOWN_STRINGS = {
+            "id", "clientId", "callback", "result", "status", "error", "message",
+            "class_code", "sec_code", "trade_num", "order_num", "price", "qty", "value", "flags", "datetime",
+            "arg1", "arg2", "arg3",
+            "OnConnected", "OnDisconnected", "OnTrade", "OnOrder", "OnStopOrder", "OnAllTrade",
+            "OnQuote", "OnParam", "OnCandle", "OnTransReply", "OnFuturesClientHolding", "OnDepoLimit", "OnMoneyLimit",
+    };
+    /**
+     * Степени десяти, точно представимые в типе double.
+     */
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1.0;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10.0;
+        }
+    }
+
+    private final Charset charset;
+    /**
+     * Табличный декодер кодировки или {@code null}, если кодировка не однобайтовая.
+     */
+    private final SingleByteCharset singleByteCharset;
+    private final View root = new View();
+    private final String[] internTable = new String[1024];
+    private final byte[] scratch = new byte[MAX_INTERNED_LENGTH];
+    private final StringBuilder sb = new StringBuilder();
+    private JSONParser parser = null;
+
+    private ByteBuffer buffer = null;
+    private int origin = 0;
+    private int position = 0;
+    private int limit = 0;
+    /**
+     * Лента узлов.
+     */
+    private int size = 0;
+    private byte[] types = new byte[64];
+    private boolean[] escaped = new boolean[64];
+    private int[] starts = new int[64];
+    private int[] ends = new int[64];
+    private int[] nexts = new int[64];
+    private int[] keyStarts = new int[64];
+    private int[] keyEnds = new int[64];
+    private String[] keys = new String[64];
+    private JSONObject rootJSONObject = null;
+
+    public StreamingDecoder(final Charset charset) {
+        this.charset = charset;
+        singleByteCharset = SingleByteCharset.of(charset);
+        for (final String s : KNOWN_STRINGS) {
+            internTable[hash(s) & (internTable.length - 1)] = s;
+        }
+    }
+
+    @Override
+    public QuikMessage decode(final ByteBuffer buffer, final int start, final int end) throws ParseException {
+        this.buffer = buffer;
+        origin = start;
+        position = start;
+        limit = end;
+        size = 0;
+        rootJSONObject = null;
+        skipWhitespace();
+        if (position >= limit || buffer.get(position) != '{') {
+            throw new ClassCastException("JSON object expected");
+        }
+        parseValue(-1, -1, false);
+        skipWhitespace();
+        if (position < limit) {
+            throw unexpected();
+        }
+        root.node = 0;
+        return root;
+    }
+
+    private void parseValue(final int keyStart, final int keyEnd, final boolean keyEscaped) throws ParseException {
+        final int node = addNode();
+        keyStarts[node] = keyStart;
+        keyEnds[node] = keyEnd;
+        keys[node] = keyStart < 0 || keyEscaped ? null : intern(keyStart, keyEnd);
+        if (position >= limit) {
+            throw unexpected();
+        }
+        final byte b = buffer.get(position);
+        switch (b) {
+            case '{' -> {
+                types[node] = OBJECT;
+                starts[node] = position++;
+                skipWhitespace();
+                if (peek() == '}') {
+                    position++;
+                } else {
+                    while (true) {
+                        if (peek() != '"') {
+                            throw unexpected();
+                        }
+                        final int ks = ++position;
+                        final boolean ke = scanString();
+                        final int kEnd = position++;
+                        skipWhitespace();
+                        if (peek() != ':') {
+                            throw unexpected();
+                        }
+                        position++;
+                        skipWhitespace();
+                        parseValue(ks, kEnd, ke);
+                        skipWhitespace();
+                        final byte c = peek();
+                        position++;
+                        if (c == '}') {
+                            break;
+                        } else if (c != ',') {
+                            position--;
+                            throw unexpected();
+                        }
+                        skipWhitespace();
+                    }
+                }
+                ends[node] = position;
+            }
+            case '[' -> {
+                types[node] = ARRAY;
+                starts[node] = position++;
+                skipWhitespace();
+                if (peek() == ']') {
+                    position++;
+                } else {
+                    while (true) {
+                        parseValue(-1, -1, false);
+                        skipWhitespace();
+                        final byte c = peek();
+                        position++;
+                        if (c == ']') {
+                            break;
+                        } else if (c != ',') {
+                            position--;
+                            throw unexpected();
+                        }
+                        skipWhitespace();
+                    }
+                }
+                ends[node] = position;
+            }
+            case '"' -> {
+                types[node] = STRING;
+                starts[node] = ++position;
+                escaped[node] = scanString();
+                ends[node] = position++;
+            }
+            case 't' -> parseLiteral(node, TRUE, "true");
+            case 'f' -> parseLiteral(node, FALSE, "false");
+            case 'n' -> parseLiteral(node, NULL, "null");
+            default -> {
+                if (b != '-' && (b < '0' || b > '9')) {
+                    throw unexpected();
+                }
+                types[node] = NUMBER;
+                starts[node] = position++;
+                while (position < limit) {
+                    final byte c = buffer.get(position);
+                    if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                        position++;
+                    } else {
+                        break;
+                    }
+                }
+                ends[node] = position;
+            }
+        }
+        nexts[node] = size;
+    }
+
+    private void parseLiteral(final int node, final byte type, final String literal) throws ParseException {
+        if (position + literal.length() > limit) {
+            throw unexpected();
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (buffer.get(position + i) != literal.charAt(i)) {
+                throw unexpected();
+            }
+        }
+        types[node] = type;
+        starts[node] = position;
+        position += literal.length();
+        ends[node] = position;
+    }
+
+    /**
+     * Найти закрывающую кавычку строки, начинающейся с текущей позиции.
+     *
+     * @return {@code true}, если строка содержит escape-последовательности
+     */
+    private boolean scanString() throws ParseException {
+        boolean hasEscapes = false;
+        while (position < limit) {
+            final byte c = buffer.get(position);
+            if (c == '"') {
+                return hasEscapes;
+            } else if (c == '\\') {
+                hasEscapes = true;
+                position += 2;
+            } else {
+                position++;
+            }
+        }
+        throw unexpected();
+    }
+
+    private byte peek() throws ParseException {
+        if (position >= limit) {
+            throw unexpected();
+        }
+        return buffer.get(position);
+    }
+
+    private void skipWhitespace() {
+        while (position < limit) {
+            final byte c = buffer.get(position);
+            if (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+                position++;
+            } else {
+                break;
+            }
+        }
+    }
+
+    private ParseException unexpected() {
+        if (position < limit) {
+            return new ParseException(position - origin, ParseException.ERROR_UNEXPECTED_CHAR, (char) (buffer.get(position) & 0xFF));
+        } else {
+            return new ParseException(position - origin, ParseException.ERROR_UNEXPECTED_TOKEN, null);
+        }
+    }
+
+    private int addNode() {
+        if (size == types.length) {
+            final int capacity = size * 2;
+            types = Arrays.copyOf(types, capacity);
+            escaped = Arrays.copyOf(escaped, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            nexts = Arrays.copyOf(nexts, capacity);
+            keyStarts = Arrays.copyOf(keyStarts, capacity);
+            keyEnds = Arrays.copyOf(keyEnds, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+        }
+        escaped[size] = false;
+        return size++;
+    }
+
+    private static int hash(final String s) {
+        int h = 0;
+        for (int i = 0; i < s.length(); i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Получить интернированную строку для ASCII-байтов в указанных границах.
+     *
+     * @return строка или {@code null}, если строка длинная или содержит не ASCII-символы
+     */
+    private String intern(final int start, final int end) {
+        final int length = end - start;
+        if (length > MAX_INTERNED_LENGTH) {
+            return null;
+        }
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            final byte c = buffer.get(i);
+            if (c < 0) {
+                return null;
+            }
+            h = 31 * h + c;
+        }
+        final int slot = (h ^ (h >>> 16)) & (internTable.length - 1);
+        final String s = internTable[slot];
+        if (s != null && equalsAscii(start, end, s)) {
+            return s;
+        }
+        buffer.get(start, scratch, 0, length);
+        final String t = new String(scratch, 0, length, StandardCharsets.ISO_8859_1);
+        internTable[slot] = t;
+        return t;
+    }
+
+    private boolean equalsAscii(final int start, final int end, final String s) {
+        if (end - start != s.length()) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) != s.charAt(i - start)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean keyEquals(final int node, final String key) {
+        final String k = keys[node];
+        if (k != null) {
+            return k == key || k.equals(key);
+        }
+        return decodeString(keyStarts[node], keyEnds[node], true).equals(key);
+    }
+
+    private int find(final int object, final String key) {
+        if (types[object] != OBJECT) {
+            return -1;
+        }
+        for (int node = object + 1; node < nexts[object]; node = nexts[node]) {
+            if (keyEquals(node, key)) {
+                return node;
+            }
+        }
+        return -1;
+    }
+
+    private String string(final int node) {
+        if (types[node] != STRING) {
+            return null;
+        }
+        if (!escaped[node]) {
+            final String s = intern(starts[node], ends[node]);
+            if (s != null) {
+                return s;
+            }
+        }
+        return decodeString(starts[node], ends[node], escaped[node]);
+    }
+
+    private String decodeString(final int start, final int end, final boolean hasEscapes) {
+        if (!hasEscapes) {
+            return decode(start, end);
+        }
+        sb.setLength(0);
+        int runStart = start;
+        int i = start;
+        while (i < end) {
+            if (buffer.get(i) != '\\') {
+                i++;
+                continue;
+            }
+            if (i > runStart) {
+                append(runStart, i);
+            }
+            final char c = (char) buffer.get(i + 1);
+            i += 2;
+            switch (c) {
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'n' -> sb.append('\n');
+                case 'r' -> sb.append('\r');
+                case 't' -> sb.append('\t');
+                case 'u' -> {
+                    int code = 0;
+                    for (int j = 0; j < 4 && i < end; j++, i++) {
+                        code = (code << 4) | Character.digit((char) buffer.get(i), 16);
+                    }
+                    sb.append((char) code);
+                }
+                default -> sb.append(c);
+            }
+            runStart = i;
+        }
+        if (end > runStart) {
+            append(runStart, end);
+        }
+        return sb.toString();
+    }
+
+    private String decode(final int start, final int end) {
+        if (singleByteCharset != null) {
+            return singleByteCharset.decode(buffer, start, end);
+        }
+        final byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, charset);
+    }
+
+    private void append(final int start, final int end) {
+        if (singleByteCharset != null) {
+            singleByteCharset.appendTo(sb, buffer, start, end);
+        } else {
+            sb.append(decode(start, end));
+        }
+    }
+
+    private boolean isNumeric(final int node) {
+        return types[node] == NUMBER || (types[node] == STRING && !escaped[node] && ends[node] > starts[node]);
+    }
+
+    /**
+     * Разобрать число как {@code long}. Целое число, помещающееся в {@code long}, разбирается точно,
+     * как {@link Long#parseLong(String)}; прочие числа разбираются как {@code double} и отбрасывают
+     * дробную часть, если не задан признак {@code isIntegerOnly}.
+     *
+     * @param node          узел числа или строки с числом
+     * @param defaultValue  значение, если число разобрать не удалось
+     * @param isIntegerOnly признак того, что для нецелых и не помещающихся в {@code long} чисел
+     *                      следует вернуть {@code defaultValue}
+     * @return значение
+     */
+    private long parseLong(final int node, final long defaultValue, final boolean isIntegerOnly) {
+        final int end = ends[node];
+        int i = starts[node];
+        final boolean negative = buffer.get(i) == '-';
+        if (negative) {
+            i++;
+        }
+        if (i < end) {
+            // значение накапливается с обратным знаком, чтобы представить Long.MIN_VALUE
+            long value = 0;
+            try {
+                for (; i < end; i++) {
+                    final byte c = buffer.get(i);
+                    if (c < '0' || c > '9') {
+                        break;
+                    }
+                    value = Math.subtractExact(Math.multiplyExact(value, 10L), c - '0');
+                }
+                if (i == end) {
+                    return negative ? value : Math.negateExact(value);
+                }
+            } catch (final ArithmeticException ignored) {
+            }
+        }
+        return isIntegerOnly ? defaultValue : (long) parseDouble(node, defaultValue);
+    }
+
+    private double parseDouble(final int node, final double defaultValue) {
+        final int start = starts[node];
+        final int end = ends[node];
+        int i = start;
+        final boolean negative = buffer.get(i) == '-';
+        if (negative) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; i < end; i++) {
+            final byte c = buffer.get(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0 || scale >= 0) {
+                    digits++;
+                }
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                break;
+            }
+        }
+        if (i == end && digits <= 15 && scale < POWERS_OF_TEN.length && end > start + (negative ? 1 : 0)) {
+            final double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+            return negative ? -value : value;
+        }
+        try {
+            return Double.parseDouble(decode(start, end));
+        } catch (final NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private JSONObject toJSONObject(final int node) {
+        if (node == 0 && rootJSONObject != null) {
+            return rootJSONObject;
+        }
+        if (parser == null) {
+            parser = new JSONParser();
+        }
+        try {
+            final JSONObject jsonObject = (JSONObject) parser.parse(decode(starts[node], ends[node]));
+            if (node == 0) {
+                rootJSONObject = jsonObject;
+            }
+            return jsonObject;
+        } catch (final ParseException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Переиспользуемое представление узла-объекта ленты.
+     */
+    private class View implements QuikMessage {
+        private int node = 0;
+        private View child = null;
+
+        @Override
+        public long id() {
+            final int n = find(node, "id");
+            return n >= 0 && types[n] == NUMBER ? parseLong(n, 0L, true) : 0L;
+        }
+
+        @Override
+        public boolean has(final String key) {
+            return find(node, key) >= 0;
+        }
+
+        @Override
+        public String getString(final String key) {
+            final int n = find(node, key);
+            return n >= 0 ? string(n) : null;
+        }
+
+        @Override
+        public long getLong(final String key, final long defaultValue) {
+            final int n = find(node, key);
+            return n >= 0 && isNumeric(n) ? parseLong(n, defaultValue, false) : defaultValue;
+        }
+
+        @Override
+        public double getDouble(final String key, final double defaultValue) {
+            final int n = find(node, key);
+            return n >= 0 && isNumeric(n) ? parseDouble(n, defaultValue) : defaultValue;
+        }
+
+        @Override
+        public boolean getBoolean(final String key, final boolean defaultValue) {
+            final int n = find(node, key);
+            if (n >= 0) {
+                if (types[n] == TRUE) {
+                    return true;
+                } else if (types[n] == FALSE) {
+                    return false;
+                }
+            }
+            return defaultValue;
+        }
+
+        /**
+         * Вложенное представление переиспользуется: повторный вызов у того же объекта
+         * перенаправляет ранее возвращённое представление на другой узел.
+         */
+        @Override
+        public QuikMessage getObject(final String key) {
+            final int n = find(node, key);
+            if (n < 0 || types[n] != OBJECT) {
+                return null;
+            }
+            if (child == null) {
+                child = new View();
+            }
+            child.node = n;
+            return child;
+        }
+
+        @Override
+        public JSONObject toJSONObject() {
+            return StreamingDecoder.this.toJSONObject(node);
+        }
+
+        @Override
+        public String toString() {
+            return decode(starts[node], ends[node]);
+        }
+    }
+}
@@ -0,0 +1,465 @@
+package com.simpleutils.quik;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Журнал строк, полученных от терминала QUIK, для последующего воспроизведения
+ * (см. {@link WireJournalReplay}).
+ * <p>
+ * Журнал состоит из сегментов — файлов фиксированного размера, отображённых в память.
+ * Имя сегмента имеет вид {@code prefix.yyyymmdd.nnnn.journal}; новый сегмент начинается
+ * при переполнении текущего и в начале каждых суток. Сегмент начинается с заголовка
+ * (сигнатура и версия формата), за которым следуют записи:
+ * <pre>
+ * int   длина строки в байтах
+ * long  момент получения строки в наносекундах от начала эпохи
+ * byte  источник строки: {@link #SOURCE_MN} или {@link #SOURCE_CB}
+ * byte[] байты строки без символа конца строки
+ * </pre>
+ * Числа записываются в порядке байтов big-endian. Длина записи записывается последней,
+ * поэтому незавершённая запись не видна при чтении; нулевая длина означает конец данных сегмента.
+ * <p>
+ * Запись строки сводится к копированию байтов из буфера сокета в отображённую память без
+ * системных вызовов и создания объектов. Следующий сегмент создаётся и отображается в память
+ * заранее фоновым потоком журнала, он же сбрасывает заполненные сегменты на диск и закрывает
+ * их файлы, поэтому смена сегмента в потоке чтения сводится к переключению на готовый сегмент.
+ * Только если готового сегмента нет (например, фоновый поток не успел его создать), сегмент
+ * создаётся в потоке чтения.
+ * Если строку записать не удалось, то она пропускается и учитывается в {@link #getDroppedCount()},
+ * а поток чтения {@link QuikConnect} не прерывается.
+ */
+public class WireJournal implements AutoCloseable {
+    /**
+     * Источник строки: MN-сервер.
+     */
+    public static final byte SOURCE_MN = 'M';
+    /**
+     * Источник строки: CB-сервер.
+     */
+    public static final byte SOURCE_CB = 'C';
+    /**
+     * Размер сегмента по умолчанию.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+    static final int MAGIC = 0x514A524E;
+    static final int VERSION = 1;
+    static final int SEGMENT_HEADER_SIZE = 8;
+    static final int RECORD_HEADER_SIZE = 4 + 8 + 1;
+    static final String SUFFIX = ".journal";
+    private static final long RETRY_DELAY_NANOS = TimeUnit.SECONDS.toNanos(1L);
+    /**
+     * За сколько до начала суток фоновый поток создаёт сегмент следующих суток.
+     */
+    private static final long PREPARE_AHEAD_NANOS = TimeUnit.MINUTES.toNanos(1L);
+
+    private final Path directory;
+    private final String prefix;
+    private final int segmentSize;
+    private final ZoneId zoneId;
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * Условие для фонового потока: появился сегмент для освобождения, израсходован готовый сегмент
+     * или журнал закрыт.
+     */
+    private final Condition changed = lock.newCondition();
+    private final AtomicLong recordCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final Thread worker;
+
+    /**
+     * Текущий сегмент или {@code null}, если сегмент ещё не создан или закрыт.
+     */
+    private Segment segment = null;
+    /**
+     * Заранее созданный следующий сегмент или {@code null}.
+     */
+    private Segment next = null;
+    /**
+     * Заполненные сегменты, ожидающие сброса на диск и освобождения фоновым потоком.
+     */
+    private final ArrayDeque<Segment> retired = new ArrayDeque<>();
+    private int position = 0;
+    private long rotationEpochNanos = Long.MIN_VALUE;
+    private boolean isClosed = false;
+    /**
+     * Значение {@link System#nanoTime()}, до которого после ошибки создания сегмента
+     * строки пропускаются без новых попыток.
+     */
+    private long retryNanoTime;
+    /**
+     * Момент времени от начала эпохи и соответствующее значение {@link System#nanoTime()},
+     * по которым вычисляется момент получения строки. Обновляются при смене сегмента,
+     * но не назад, чтобы моменты получения строк, записанных одним потоком, не убывали.
+     */
+    private long baseEpochNanos;
+    private long baseNanoTime;
+
+    /**
+     * Сегмент журнала, отображённый в память.
+     */
+    private static final class Segment {
+        final Path path;
+        final int date;
+        final int number;
+        final FileChannel fileChannel;
+        final MappedByteBuffer buffer;
+
+        Segment(final Path path, final int date, final int number,
+                final FileChannel fileChannel, final MappedByteBuffer buffer) {
+            this.path = path;
+            this.date = date;
+            this.number = number;
+            this.fileChannel = fileChannel;
+            this.buffer = buffer;
+        }
+
+        /**
+         * @param other другой сегмент
+         * @return {@code true}, если этот сегмент следует за другим при воспроизведении
+         */
+        boolean isAfter(final Segment other) {
+            return date > other.date || date == other.date && number > other.number;
+        }
+    }
+
+    /**
+     * Конструктор.
+     *
+     * @param directory   каталог для сегментов журнала
+     * @param prefix      префикс имён сегментов
+     * @param segmentSize размер сегмента в байтах
+     * @param zoneId      часовой пояс, по которому определяется начало суток
+     * @throws IOException если каталог не удалось создать
+     */
+    public WireJournal(final Path directory, final String prefix,
+                       final int segmentSize, final ZoneId zoneId) throws IOException {
+        if (segmentSize <= SEGMENT_HEADER_SIZE + RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("segmentSize is too small: " + segmentSize);
+        }
+        this.directory = Files.createDirectories(directory);
+        this.prefix = prefix;
+        this.segmentSize = segmentSize;
+        this.zoneId = zoneId;
+        final Instant now = Instant.now();
+        baseNanoTime = System.nanoTime();
+        baseEpochNanos = TimeUnit.SECONDS.toNanos(now.getEpochSecond()) + now.getNano();
+        retryNanoTime = baseNanoTime;
+        worker = Thread.ofPlatform().name("WireJournal-" + prefix).daemon(true).start(this::work);
+    }
+
+    public WireJournal(final Path directory, final String prefix) throws IOException {
+        this(directory, prefix, DEFAULT_SEGMENT_SIZE, ZoneId.systemDefault());
+    }
+
+    /**
+     * Записать строку в журнал.
+     *
+     * @param source источник строки: {@link #SOURCE_MN} или {@link #SOURCE_CB}
+     * @param src    буфер с байтами строки
+     * @param start  индекс первого байта строки
+     * @param end    индекс, следующий за последним байтом строки
+     */
+    public void append(final byte source, final ByteBuffer src, final int start, final int end) {
+        final long nanoTime = System.nanoTime();
+        final int length = end - start;
+        final int recordSize = RECORD_HEADER_SIZE + length;
+        if (recordSize > segmentSize - SEGMENT_HEADER_SIZE) {
+            droppedCount.incrementAndGet();
+            return;
+        }
+        lock.lock();
+        try {
+            if (isClosed) {
+                droppedCount.incrementAndGet();
+                return;
+            }
+            long epochNanos = baseEpochNanos + (nanoTime - baseNanoTime);
+            if (segment == null || epochNanos >= rotationEpochNanos || position + recordSize > segmentSize) {
+                if (segment == null && nanoTime - retryNanoTime < 0L) {
+                    droppedCount.incrementAndGet();
+                    return;
+                }
+                try {
+                    rotate(epochNanos);
+                    epochNanos = baseEpochNanos + (nanoTime - baseNanoTime);
+                } catch (final IOException e) {
+                    retireSegment();
+                    retryNanoTime = nanoTime + RETRY_DELAY_NANOS;
+                    droppedCount.incrementAndGet();
+                    return;
+                }
+            }
+            final MappedByteBuffer buffer = segment.buffer;
+            final int position = this.position;
+            buffer.putLong(position + 4, epochNanos);
+            buffer.put(position + 12, source);
+            buffer.put(position + RECORD_HEADER_SIZE, src, start, length);
+            buffer.putInt(position, length);
+            this.position = position + recordSize;
+        } finally {
+            lock.unlock();
+        }
+        recordCount.incrementAndGet();
+    }
+
+    /**
+     * Сбросить записанные данные текущего сегмента на диск.
+     */
+    public void force() {
+        lock.lock();
+        try {
+            if (segment != null) {
+                segment.buffer.force();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Закрыть журнал. Метод ждёт, пока фоновый поток сбросит сегменты на диск и освободит их.
+     * Строки, записываемые после закрытия, пропускаются.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            isClosed = true;
+            retireSegment();
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+        boolean isInterrupted = false;
+        while (true) {
+            try {
+                worker.join();
+                break;
+            } catch (final InterruptedException e) {
+                isInterrupted = true;
+            }
+        }
+        if (isInterrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return количество записанных строк
+     */
+    public long getRecordCount() {
+        return recordCount.get();
+    }
+
+    /**
+     * @return количество строк, которые не удалось записать
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * @return путь к текущему сегменту или {@code null}, если сегмент ещё не создан
+     */
+    public Path getSegmentPath() {
+        lock.lock();
+        try {
+            return segment == null ? null : segment.path;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void synchronizeClock() {
+        final Instant now = Instant.now();
+        final long nanoTime = System.nanoTime();
+        final long epochNanos = TimeUnit.SECONDS.toNanos(now.getEpochSecond()) + now.getNano();
+        baseEpochNanos = Math.max(epochNanos, baseEpochNanos + (nanoTime - baseNanoTime));
+        baseNanoTime = nanoTime;
+    }
+
+    private void rotate(final long epochNanos) throws IOException {
+        final int lastDate = segment == null ? 0 : segment.date;
+        final int lastNumber = segment == null ? -1 : segment.number;
+        retireSegment();
+        synchronizeClock();
+        final LocalDate date = dateOf(epochNanos);
+        final int yyyymmdd = yyyymmdd(date);
+        rotationEpochNanos = TimeUnit.SECONDS.toNanos(date.plusDays(1).atStartOfDay(zoneId).toEpochSecond());
+        final Segment prepared = next;
+        if (prepared != null && prepared.date == yyyymmdd) {
+            next = null;
+            segment = prepared;
+        } else {
+            segment = openSegment(yyyymmdd, yyyymmdd == lastDate ? lastNumber + 1 : 0);
+        }
+        position = SEGMENT_HEADER_SIZE;
+        changed.signal();
+    }
+
+    /**
+     * Передать текущий сегмент фоновому потоку для сброса на диск и освобождения.
+     */
+    private void retireSegment() {
+        if (segment != null) {
+            retired.add(segment);
+            segment = null;
+            changed.signal();
+        }
+    }
+
+    /**
+     * Рабочий цикл фонового потока: освобождение заполненных сегментов и создание следующего сегмента.
+     */
+    private void work() {
+        long prepareRetryNanoTime = System.nanoTime();
+        while (true) {
+            final Segment toRelease;
+            final Segment stale;
+            final int date;
+            final int number;
+            lock.lock();
+            try {
+                if (!retired.isEmpty()) {
+                    toRelease = retired.poll();
+                    stale = null;
+                    date = 0;
+                    number = 0;
+                } else if (isClosed) {
+                    toRelease = null;
+                    stale = next;
+                    next = null;
+                    date = 0;
+                    number = 0;
+                } else {
+                    final long nowEpochNanos = baseEpochNanos + (System.nanoTime() - baseNanoTime);
+                    final LocalDate targetDate = dateOf(nowEpochNanos + PREPARE_AHEAD_NANOS);
+                    final int target = yyyymmdd(targetDate);
+                    final long waitNanos;
+                    if (next != null && next.date == target) {
+                        waitNanos = TimeUnit.SECONDS.toNanos(targetDate.plusDays(1).atStartOfDay(zoneId).toEpochSecond())
+                                    - PREPARE_AHEAD_NANOS - nowEpochNanos;
+                    } else {
+                        waitNanos = prepareRetryNanoTime - System.nanoTime();
+                    }
+                    if (waitNanos > 0L) {
+                        changed.awaitNanos(waitNanos);
+                        continue;
+                    }
+                    toRelease = null;
+                    stale = next;
+                    next = null;
+                    date = target;
+                    number = segment != null && segment.date == target ? segment.number + 1 : 0;
+                }
+            } catch (final InterruptedException e) {
+                continue;
+            } finally {
+                lock.unlock();
+            }
+            if (toRelease != null) {
+                release(toRelease, false);
+                continue;
+            }
+            if (stale != null) {
+                release(stale, true);
+            }
+            if (date == 0) {
+                return;
+            }
+            final Segment prepared;
+            try {
+                prepared = openSegment(date, number);
+            } catch (final IOException e) {
+                prepareRetryNanoTime = System.nanoTime() + RETRY_DELAY_NANOS;
+                continue;
+            }
+            lock.lock();
+            try {
+                if (!isClosed && next == null && (segment == null || prepared.isAfter(segment))) {
+                    next = prepared;
+                    continue;
+                }
+            } finally {
+                lock.unlock();
+            }
+            release(prepared, true);
+        }
+    }
+
+    private Segment openSegment(final int yyyymmdd, final int firstNumber) throws IOException {
+        int number = firstNumber;
+        while (true) {
+            final Path path = segmentPath(directory, prefix, yyyymmdd, number);
+            final FileChannel fileChannel;
+            try {
+                fileChannel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+            } catch (final FileAlreadyExistsException e) {
+                number++;
+                continue;
+            }
+            try {
+                final MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0L, segmentSize);
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                return new Segment(path, yyyymmdd, number, fileChannel, buffer);
+            } catch (final IOException | RuntimeException e) {
+                try {
+                    fileChannel.close();
+                    Files.deleteIfExists(path);
+                } catch (final IOException ignored) {
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Сбросить сегмент на диск (или удалить неиспользованный сегмент) и закрыть файл.
+     * Отображение освобождается сборщиком мусора, когда на буфер сегмента больше нет ссылок.
+     *
+     * @param segment  сегмент
+     * @param isUnused признак того, что в сегмент ничего не записано
+     */
+    private static void release(final Segment segment, final boolean isUnused) {
+        if (!isUnused) {
+            segment.buffer.force();
+        }
+        try {
+            segment.fileChannel.close();
+            if (isUnused) {
+                Files.deleteIfExists(segment.path);
+            }
+        } catch (final IOException ignored) {
+        }
+    }
+
+    private LocalDate dateOf(final long epochNanos) {
+        return LocalDate.ofInstant(Instant.ofEpochSecond(0L, epochNanos), zoneId);
+    }
+
+    private static int yyyymmdd(final LocalDate date) {
+        return date.getYear() * 10000 + date.getMonthValue() * 100 + date.getDayOfMonth();
+    }
+
+    static Path segmentPath(final Path directory, final String prefix, final int yyyymmdd, final int number) {
+        return directory.resolve("%s.%d.%04d%s".formatted(prefix, yyyymmdd, number, SUFFIX));
+    }
+}
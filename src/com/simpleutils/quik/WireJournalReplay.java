@@ -0,0 +1,232 @@
+package com.simpleutils.quik;
+
+import org.json.simple.parser.ParseException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Воспроизведение строк, записанных в журнал {@link WireJournal}.
+ * <p>
+ * Строки воспроизводятся в порядке записи с исходными интервалами между ними, делёнными
+ * на коэффициент скорости: 1 — исходная скорость, 10 — в десять раз быстрее,
+ * {@link #MAX_SPEED} — без пауз. Сегменты читаются через отображение в память,
+ * и строки передаются обработчику без копирования.
+ */
+public class WireJournalReplay {
+    /**
+     * Коэффициент скорости воспроизведения без пауз между строками.
+     */
+    public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+
+    /**
+     * Обработчик записей журнала.
+     */
+    @FunctionalInterface
+    public interface RecordHandler {
+        /**
+         * Обработать запись. Байты строки действительны только до возврата из метода.
+         *
+         * @param epochNanos момент получения строки в наносекундах от начала эпохи
+         * @param source     источник строки: {@link WireJournal#SOURCE_MN} или {@link WireJournal#SOURCE_CB}
+         * @param buffer     буфер с байтами строки
+         * @param start      индекс первого байта строки
+         * @param end        индекс, следующий за последним байтом строки
+         */
+        void onRecord(long epochNanos, byte source, ByteBuffer buffer, int start, int end);
+    }
+
+    /**
+     * Фабрика декодеров для воспроизведения коллбэков слушателю.
+     */
+    public volatile Function<Charset, QuikDecoder> decoderFactory = JSONSimpleDecoder::new;
+
+    private static final Pattern SEGMENT_NAME_PATTERN = Pattern.compile("\\.(\\d{8})\\.(\\d+)" + Pattern.quote(WireJournal.SUFFIX) + "$");
+    /**
+     * Паузы длиннее этого значения выполняются с запасом, оставшееся время выжидается точнее.
+     */
+    private static final long SPIN_THRESHOLD_NANOS = 100_000L;
+
+    private final List<Path> segments;
+    private final Charset charset = Charset.forName("CP1251");
+
+    /**
+     * Конструктор.
+     *
+     * @param segments сегменты журнала в порядке воспроизведения
+     */
+    public WireJournalReplay(final List<Path> segments) {
+        this.segments = List.copyOf(segments);
+    }
+
+    /**
+     * Конструктор для всех сегментов журнала с заданным префиксом.
+     *
+     * @param directory каталог сегментов журнала
+     * @param prefix    префикс имён сегментов
+     * @throws IOException если не удалось прочитать каталог
+     */
+    public WireJournalReplay(final Path directory, final String prefix) throws IOException {
+        this(segments(directory, prefix));
+    }
+
+    /**
+     * Найти сегменты журнала, упорядоченные по дате и номеру.
+     *
+     * @param directory каталог сегментов журнала
+     * @param prefix    префикс имён сегментов
+     * @return список сегментов
+     * @throws IOException если не удалось прочитать каталог
+     */
+    public static List<Path> segments(final Path directory, final String prefix) throws IOException {
+        try (final Stream<Path> stream = Files.list(directory)) {
+            return stream
+                    .filter(path -> {
+                        final String name = path.getFileName().toString();
+                        return name.startsWith(prefix)
+                               && SEGMENT_NAME_PATTERN.matcher(name.substring(prefix.length())).matches();
+                    })
+                    .sorted(Comparator.<Path>comparingLong(path -> segmentKey(path, prefix, 1))
+                            .thenComparingLong(path -> segmentKey(path, prefix, 2)))
+                    .toList();
+        }
+    }
+
+    private static long segmentKey(final Path path, final String prefix, final int group) {
+        final Matcher matcher = SEGMENT_NAME_PATTERN.matcher(path.getFileName().toString().substring(prefix.length()));
+        return matcher.matches() ? Long.parseLong(matcher.group(group)) : 0L;
+    }
+
+    /**
+     * @return сегменты журнала в порядке воспроизведения
+     */
+    public List<Path> getSegments() {
+        return segments;
+    }
+
+    /**
+     * Воспроизвести записи журнала.
+     *
+     * @param handler обработчик записей
+     * @param speed   коэффициент скорости воспроизведения
+     * @return количество воспроизведённых записей
+     * @throws IOException          если не удалось прочитать сегмент
+     * @throws InterruptedException если поток был прерван
+     */
+    public long replay(final RecordHandler handler, final double speed) throws IOException, InterruptedException {
+        if (!(speed > 0.0)) {
+            throw new IllegalArgumentException("speed must be positive: " + speed);
+        }
+        final boolean isPaced = speed != MAX_SPEED;
+        long firstEpochNanos = 0L;
+        long startNanoTime = 0L;
+        long count = 0L;
+        for (final Path segment : segments) {
+            try (final FileChannel fileChannel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                final long size = fileChannel.size();
+                if (size < WireJournal.SEGMENT_HEADER_SIZE) {
+                    continue;
+                }
+                final MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0L, Math.min(size, Integer.MAX_VALUE));
+                if (buffer.getInt(0) != WireJournal.MAGIC || buffer.getInt(4) != WireJournal.VERSION) {
+                    throw new IOException("Not a journal segment: " + segment);
+                }
+                final int limit = buffer.limit();
+                int position = WireJournal.SEGMENT_HEADER_SIZE;
+                while (position + WireJournal.RECORD_HEADER_SIZE <= limit) {
+                    final int length = buffer.getInt(position);
+                    if (length <= 0 || length > limit - position - WireJournal.RECORD_HEADER_SIZE) {
+                        break;
+                    }
+                    final long epochNanos = buffer.getLong(position + 4);
+                    final byte source = buffer.get(position + 12);
+                    final int start = position + WireJournal.RECORD_HEADER_SIZE;
+                    if (isPaced) {
+                        if (count == 0L) {
+                            firstEpochNanos = epochNanos;
+                            startNanoTime = System.nanoTime();
+                        } else {
+                            awaitNanoTime(startNanoTime + (long) ((epochNanos - firstEpochNanos) / speed));
+                        }
+                    }
+                    handler.onRecord(epochNanos, source, buffer, start, start + length);
+                    count++;
+                    position = start + length;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Воспроизвести коллбэки журнала слушателю. Ответы MN-сервера пропускаются,
+     * ошибки разбора строк передаются в {@link QuikListener#onExceptionCB(Exception)}.
+     *
+     * @param listener слушатель
+     * @param speed    коэффициент скорости воспроизведения
+     * @return количество воспроизведённых коллбэков
+     * @throws IOException          если не удалось прочитать сегмент
+     * @throws InterruptedException если поток был прерван
+     */
+    public long replay(final QuikListener listener, final double speed) throws IOException, InterruptedException {
+        final QuikDecoder decoder = decoderFactory.apply(charset);
+        final long[] count = {0L};
+        replay((epochNanos, source, buffer, start, end) -> {
+            if (source != WireJournal.SOURCE_CB) {
+                return;
+            }
+            final QuikMessage message;
+            try {
+                message = decoder.decode(buffer, start, end);
+            } catch (final ParseException | ClassCastException e) {
+                try {
+                    listener.onExceptionCB(e);
+                } catch (final Exception ignored) {
+                }
+                return;
+            }
+            if (message.callback() != null) {
+                try {
+                    listener.onCallback(message);
+                } catch (final RuntimeException e) {
+                    try {
+                        listener.onExceptionCB(e);
+                    } catch (final Exception ignored) {
+                    }
+                }
+                count[0]++;
+            }
+        }, speed);
+        return count[0];
+    }
+
+    private static void awaitNanoTime(final long deadline) throws InterruptedException {
+        while (true) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0L) {
+                return;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (remaining > SPIN_THRESHOLD_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NANOS);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
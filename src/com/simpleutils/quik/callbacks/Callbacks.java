@@ -0,0 +1,23 @@
+package com.simpleutils.quik.callbacks;
+
+import com.simpleutils.quik.QuikMessage;
+
+final class Callbacks {
+
+    private Callbacks() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @param message сообщение, описывающее коллбэк
+     * @return таблица, переданная коллбэку первым аргументом
+     * @throws IllegalArgumentException если первый аргумент коллбэка не является таблицей
+     */
+    static QuikMessage table(final QuikMessage message) {
+        final QuikMessage t = message.getObject("arg1");
+        if (t == null) {
+            throw new IllegalArgumentException("Callback " + message.callback() + " has no table argument");
+        }
+        return t;
+    }
+}
@@ -0,0 +1,58 @@
+package com.simpleutils.quik.callbacks;
+
+import com.simpleutils.quik.CallbackDecoder;
+import com.simpleutils.quik.ClassSecCode;
+import com.simpleutils.quik.QuikMessage;
+
+/**
+ * Заявка (коллбэк {@code OnOrder}).
+ *
+ * @param orderNum  номер заявки
+ * @param transId   идентификатор транзакции
+ * @param flags     набор битовых флагов
+ * @param price     цена
+ * @param qty       количество в лотах
+ * @param balance   неисполненный остаток
+ * @param value     объём в денежных средствах
+ * @param datetime  момент регистрации заявки в миллисекундах от начала эпохи
+ * @param classCode код класса
+ * @param secCode   код инструмента
+ */
+public record Order(long orderNum, long transId, long flags, double price, long qty, long balance, double value,
+                    long datetime, String classCode, String secCode) {
+
+    public static final CallbackDecoder<Order> DECODER = Order::decode;
+
+    public static Order decode(final QuikMessage message) {
+        final QuikMessage t = Callbacks.table(message);
+        return new Order(
+                t.getLong("order_num", 0L),
+                t.getLong("trans_id", 0L),
+                t.getLong("flags", 0L),
+                t.getDouble("price", Double.NaN),
+                t.getLong("qty", 0L),
+                t.getLong("balance", 0L),
+                t.getDouble("value", Double.NaN),
+                QuikDateTime.toEpochMillis(t.getObject("datetime")),
+                t.getString("class_code"),
+                t.getString("sec_code"));
+    }
+
+    /**
+     * @return признак активной заявки
+     */
+    public boolean isActive() {
+        return (flags & 1L) != 0L;
+    }
+
+    /**
+     * @return признак заявки на продажу
+     */
+    public boolean isSell() {
+        return (flags & 4L) != 0L;
+    }
+
+    public ClassSecCode classSecCode() {
+        return ClassSecCode.of(classCode, secCode);
+    }
+}
@@ -0,0 +1,19 @@
+package com.simpleutils.quik.callbacks;
+
+import com.simpleutils.quik.CallbackDecoder;
+import com.simpleutils.quik.QuikMessage;
+
+/**
+ * Изменение параметров текущих торгов (коллбэк {@code OnParam}).
+ *
+ * @param classCode код класса
+ * @param secCode   код инструмента
+ */
+public record ParamChange(String classCode, String secCode) {
+
+    public static final CallbackDecoder<ParamChange> DECODER = ParamChange::decode;
+
+    public static ParamChange decode(final QuikMessage message) {
+        return new ParamChange(message.getString("arg1"), message.getString("arg2"));
+    }
+}
@@ -0,0 +1,92 @@
+package com.simpleutils.quik.callbacks;
+
+import com.simpleutils.quik.QuikMessage;
+
+import java.util.Map;
+
+/**
+ * Преобразование таблиц даты и времени QLua ({@code year, month, day, hour, min, sec, ms})
+ * в миллисекунды от начала эпохи без создания промежуточных объектов.
+ * <p>
+ * Время терминала трактуется как московское (UTC+3, без перехода на летнее время).
+ */
+public final class QuikDateTime {
+    /**
+     * Смещение московского времени относительно UTC в миллисекундах.
+     */
+    public static final long MSK_OFFSET_MILLIS = 3 * 3600_000L;
+
+    private QuikDateTime() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @param datetime таблица даты и времени QLua или {@code null}
+     * @return момент времени в миллисекундах от начала эпохи или 0, если таблица отсутствует
+     */
+    public static long toEpochMillis(final QuikMessage datetime) {
+        if (datetime == null) {
+            return 0L;
+        }
+        final long days = epochDay(
+                datetime.getLong("year", 1970),
+                datetime.getLong("month", 1),
+                datetime.getLong("day", 1));
+        final long millisOfDay = datetime.getLong("hour", 0) * 3600_000L
+                                 + datetime.getLong("min", 0) * 60_000L
+                                 + datetime.getLong("sec", 0) * 1000L
+                                 + datetime.getLong("ms", 0);
+        return days * 86_400_000L + millisOfDay - MSK_OFFSET_MILLIS;
+    }
+
+    /**
+     * @param datetime таблица даты и времени QLua в составе JSON-объекта или {@code null}
+     * @return момент времени в миллисекундах от начала эпохи или 0, если таблица отсутствует
+     */
+    public static long toEpochMillis(final Map<?, ?> datetime) {
+        if (datetime == null) {
+            return 0L;
+        }
+        final long days = epochDay(
+                getLong(datetime, "year", 1970),
+                getLong(datetime, "month", 1),
+                getLong(datetime, "day", 1));
+        final long millisOfDay = getLong(datetime, "hour", 0) * 3600_000L
+                                 + getLong(datetime, "min", 0) * 60_000L
+                                 + getLong(datetime, "sec", 0) * 1000L
+                                 + getLong(datetime, "ms", 0);
+        return days * 86_400_000L + millisOfDay - MSK_OFFSET_MILLIS;
+    }
+
+    private static long getLong(final Map<?, ?> map, final String key, final long defaultValue) {
+        final Object value = map.get(key);
+        if (value instanceof Number number) {
+            return number.longValue();
+        }
+        if (value instanceof String s) {
+            try {
+                return Long.parseLong(s);
+            } catch (final NumberFormatException e) {
+                return defaultValue;
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Номер дня от начала эпохи для даты григорианского календаря.
+     *
+     * @param year  год
+     * @param month месяц (1..12)
+     * @param day   день месяца
+     * @return номер дня
+     */
+    static long epochDay(final long year, final long month, final long day) {
+        final long y = month <= 2 ? year - 1 : year;
+        final long era = Math.floorDiv(y, 400);
+        final long yearOfEra = y - era * 400;
+        final long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        final long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097 + dayOfEra - 719_468;
+    }
+}
@@ -0,0 +1,19 @@
+package com.simpleutils.quik.callbacks;
+
+import com.simpleutils.quik.CallbackDecoder;
+import com.simpleutils.quik.QuikMessage;
+
+/**
+ * Изменение стакана котировок (коллбэк {@code OnQuote}).
+ *
+ * @param classCode код класса
+ * @param secCode   код инструмента
+ */
+public record QuoteChange(String classCode, String secCode) {
+
+    public static final CallbackDecoder<QuoteChange> DECODER = QuoteChange::decode;
+
+    public static QuoteChange decode(final QuikMessage message) {
+        return new QuoteChange(message.getString("arg1"), message.getString("arg2"));
+    }
+}
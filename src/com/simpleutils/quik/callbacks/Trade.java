@@ -0,0 +1,51 @@
+package com.simpleutils.quik.callbacks;
+
+import com.simpleutils.quik.CallbackDecoder;
+import com.simpleutils.quik.ClassSecCode;
+import com.simpleutils.quik.QuikMessage;
+
+/**
+ * Собственная сделка (коллбэк {@code OnTrade}).
+ *
+ * @param tradeNum  номер сделки
+ * @param orderNum  номер заявки
+ * @param transId   идентификатор транзакции
+ * @param flags     набор битовых флагов
+ * @param price     цена
+ * @param qty       количество в лотах
+ * @param value     объём в денежных средствах
+ * @param datetime  момент сделки в миллисекундах от начала эпохи
+ * @param classCode код класса
+ * @param secCode   код инструмента
+ */
+public record Trade(long tradeNum, long orderNum, long transId, long flags, double price, long qty, double value,
+                    long datetime, String classCode, String secCode) {
+
+    public static final CallbackDecoder<Trade> DECODER = Trade::decode;
+
+    public static Trade decode(final QuikMessage message) {
+        final QuikMessage t = Callbacks.table(message);
+        return new Trade(
+                t.getLong("trade_num", 0L),
+                t.getLong("order_num", 0L),
+                t.getLong("trans_id", 0L),
+                t.getLong("flags", 0L),
+                t.getDouble("price", Double.NaN),
+                t.getLong("qty", 0L),
+                t.getDouble("value", Double.NaN),
+                QuikDateTime.toEpochMillis(t.getObject("datetime")),
+                t.getString("class_code"),
+                t.getString("sec_code"));
+    }
+
+    /**
+     * @return признак сделки на продажу
+     */
+    public boolean isSell() {
+        return (flags & 4L) != 0L;
+    }
+
+    public ClassSecCode classSecCode() {
+        return ClassSecCode.of(classCode, secCode);
+    }
+}
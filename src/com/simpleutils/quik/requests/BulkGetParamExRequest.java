@@ -0,0 +1,182 @@
+package com.simpleutils.quik.requests;
+
+import com.simpleutils.quik.ClassSecCode;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Получение параметров из таблицы текущих торгов для набора инструментов за один запрос.
+ * <p>
+ * Результат запроса — массив таблиц {@code { classCode = ..., secCode = ..., params = {...} }}
+ * в порядке следования инструментов, где {@code params} содержит значения найденных параметров.
+ * Для разбора результата предназначена {@link com.simpleutils.quik.ParamMatrix}.
+ */
+public class BulkGetParamExRequest implements PartitionableRequest {
+
+    /**
+     * Функция, возвращающая массив таблиц параметров. Элемент массива {@code requests} содержит
+     * код класса, код инструмента и, возможно, собственный список параметров; если список
+     * не указан, то используется общий список {@code parameters}.
+     */
+    public static final QuikFunction FUNCTION = new QuikFunction(
+            "simpleutils_getParamExBulk",
+            List.of("requests", "parameters"),
+            """
+                    local t = {}
+                    for i, r in ipairs(requests) do
+                      local params = {}
+                      for _, param in ipairs(r[3] or parameters) do
+                        local p = getParamEx(r[1], r[2], param)
+                        if type(p) == "table" and p.result == "1" then
+                          params[param] = p.param_value
+                        end
+                      end
+                      t[i] = { classCode = r[1], secCode = r[2], params = params, }
+                    end
+                    return t
+                    """);
+
+    private final Map<ClassSecCode, ? extends Collection<String>> parametersMap;
+    private final Collection<String> sharedParameters;
+    private List<ClassSecCode> classSecCodeList = null;
+
+    /**
+     * Конструктор для собственного списка параметров каждого инструмента.
+     *
+     * @param parametersMap соответствие между инструментами и списками параметров
+     */
+    public BulkGetParamExRequest(final Map<ClassSecCode, ? extends Collection<String>> parametersMap) {
+        this.parametersMap = parametersMap;
+        sharedParameters = null;
+    }
+
+    /**
+     * Конструктор для общего списка параметров.
+     *
+     * @param classSecCodes инструменты
+     * @param parameters    параметры
+     */
+    public BulkGetParamExRequest(final Set<ClassSecCode> classSecCodes, final Collection<String> parameters) {
+        final Map<ClassSecCode, Collection<String>> map = new LinkedHashMap<>();
+        for (final ClassSecCode classSecCode : classSecCodes) {
+            map.put(classSecCode, parameters);
+        }
+        parametersMap = map;
+        sharedParameters = parameters;
+    }
+
+    /**
+     * @return инструменты в порядке следования в результате запроса
+     */
+    public Set<ClassSecCode> getClassSecCodes() {
+        return parametersMap.keySet();
+    }
+
+    /**
+     * @return объединение списков параметров всех инструментов
+     */
+    public Set<String> getParameters() {
+        if (sharedParameters != null) {
+            return new LinkedHashSet<>(sharedParameters);
+        }
+        final Set<String> parameters = new LinkedHashSet<>();
+        for (final Collection<String> collection : parametersMap.values()) {
+            parameters.addAll(collection);
+        }
+        return parameters;
+    }
+
+    @Override
+    public int size() {
+        return parametersMap.size();
+    }
+
+    @Override
+    public BulkGetParamExRequest subRequest(final int from, final int to) {
+        if (classSecCodeList == null) {
+            classSecCodeList = List.copyOf(parametersMap.keySet());
+        }
+        final List<ClassSecCode> classSecCodes = classSecCodeList.subList(from, to);
+        if (sharedParameters != null) {
+            return new BulkGetParamExRequest(new LinkedHashSet<>(classSecCodes), sharedParameters);
+        }
+        final Map<ClassSecCode, Collection<String>> map = new LinkedHashMap<>();
+        for (final ClassSecCode classSecCode : classSecCodes) {
+            map.put(classSecCode, parametersMap.get(classSecCode));
+        }
+        return new BulkGetParamExRequest(map);
+    }
+
+    /**
+     * Оценка размера ответа: коды инструмента и по 32 байта на значение параметра.
+     */
+    @Override
+    public int estimatedElementSize() {
+        int parameterCount = 0;
+        if (sharedParameters != null) {
+            parameterCount = sharedParameters.size();
+        } else {
+            for (final Collection<String> parameters : parametersMap.values()) {
+                parameterCount = Math.max(parameterCount, parameters.size());
+            }
+        }
+        return 64 + 32 * parameterCount;
+    }
+
+    @Override
+    public String getRequest() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("local requests = {\n");
+        for (final Map.Entry<ClassSecCode, ? extends Collection<String>> entry : parametersMap.entrySet()) {
+            sb.append("  { \"").append(entry.getKey().classCode())
+                    .append("\", \"").append(entry.getKey().secCode()).append('"');
+            if (sharedParameters == null) {
+                sb.append(", ");
+                appendList(sb, entry.getValue());
+            }
+            sb.append(" },\n");
+        }
+        sb.append("}\n");
+        sb.append("local parameters = ");
+        appendList(sb, sharedParameters == null ? List.of() : sharedParameters);
+        sb.append('\n');
+        sb.append(FUNCTION.getBody());
+        return sb.toString();
+    }
+
+    private static void appendList(final StringBuilder sb, final Collection<String> strings) {
+        sb.append('{');
+        for (final String s : strings) {
+            sb.append(" \"").append(s).append("\",");
+        }
+        sb.append(" }");
+    }
+
+    @Override
+    public Object getCoalescingKey() {
+        return getArguments();
+    }
+
+    @Override
+    public QuikFunction getFunction() {
+        return FUNCTION;
+    }
+
+    @Override
+    public List<?> getArguments() {
+        final List<List<Object>> requests = new ArrayList<>(parametersMap.size());
+        for (final Map.Entry<ClassSecCode, ? extends Collection<String>> entry : parametersMap.entrySet()) {
+            final ClassSecCode classSecCode = entry.getKey();
+            requests.add(sharedParameters == null
+                    ? List.of(classSecCode.classCode(), classSecCode.secCode(), List.copyOf(entry.getValue()))
+                    : List.of(classSecCode.classCode(), classSecCode.secCode()));
+        }
+        return List.of(requests, sharedParameters == null ? List.of() : List.copyOf(sharedParameters));
+    }
+}
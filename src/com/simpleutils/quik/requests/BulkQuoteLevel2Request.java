@@ -2,14 +2,37 @@ package com.simpleutils.quik.requests;
 
 import com.simpleutils.quik.ClassSecCode;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
  * Получение данных стаканов для набора инструментов.
  */
-public class BulkQuoteLevel2Request implements QuikRequest {
+public class BulkQuoteLevel2Request implements PartitionableRequest {
+
+    /**
+     * Функция, возвращающая массив стаканов для массива пар из кода класса и кода инструмента.
+     */
+    public static final QuikFunction FUNCTION = new QuikFunction(
+            "simpleutils_getQuoteLevel2Bulk",
+            List.of("codes"),
+            """
+                    local t = {}
+                    for i, c in ipairs(codes) do
+                      t[i] = { classCode = c[1], secCode = c[2], quotes = getQuoteLevel2(c[1], c[2]), }
+                    end
+                    return t
+                    """);
+
+    /**
+     * Оценка размера стакана в ответе: 20 уровней с каждой стороны.
+     */
+    private static final int ESTIMATED_QUOTES_SIZE = 2 * 20 * 48 + 128;
 
     private final Set<ClassSecCode> classSecCodes;
+    private List<ClassSecCode> classSecCodeList = null;
 
     public BulkQuoteLevel2Request(final Set<ClassSecCode> classSecCodes) {
         this.classSecCodes = classSecCodes;
@@ -30,4 +53,41 @@ public class BulkQuoteLevel2Request implements QuikRequest {
         sb.append("}");
         return sb.toString();
     }
+
+    @Override
+    public int size() {
+        return classSecCodes.size();
+    }
+
+    @Override
+    public BulkQuoteLevel2Request subRequest(final int from, final int to) {
+        if (classSecCodeList == null) {
+            classSecCodeList = List.copyOf(classSecCodes);
+        }
+        return new BulkQuoteLevel2Request(new LinkedHashSet<>(classSecCodeList.subList(from, to)));
+    }
+
+    @Override
+    public int estimatedElementSize() {
+        return ESTIMATED_QUOTES_SIZE;
+    }
+
+    @Override
+    public Object getCoalescingKey() {
+        return getArguments();
+    }
+
+    @Override
+    public QuikFunction getFunction() {
+        return FUNCTION;
+    }
+
+    @Override
+    public List<?> getArguments() {
+        final List<List<String>> codes = new ArrayList<>(classSecCodes.size());
+        for (final ClassSecCode classSecCode : classSecCodes) {
+            codes.add(List.of(classSecCode.classCode(), classSecCode.secCode()));
+        }
+        return List.of(codes);
+    }
 }
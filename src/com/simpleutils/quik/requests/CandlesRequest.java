@@ -2,6 +2,8 @@ package com.simpleutils.quik.requests;
 
 import com.simpleutils.quik.ClassSecCode;
 
+import java.util.List;
+
 /**
  * Запрос на получение свечных данных.
  */
@@ -27,4 +29,9 @@ public class CandlesRequest implements QuikRequest {
     public String getRequest() {
         return "return getCandles(\"%s\", \"%s\", %d, %d)".formatted(classCode, secCode, interval, maxSize);
     }
+
+    @Override
+    public Object getCoalescingKey() {
+        return List.of(classCode, secCode, interval, maxSize);
+    }
 }
@@ -3,12 +3,27 @@ package com.simpleutils.quik.requests;
 import com.simpleutils.quik.ClassSecCode;
 
 import java.util.Collection;
+import java.util.List;
 
 /**
  * Подписка на получение свечных данных для указанных кода класса и кода инструмента.
  */
 public class CandlesSubscriptionRequest implements QuikRequest {
 
+    /**
+     * Функция, инициализирующая источники свечных данных для массива интервалов.
+     */
+    public static final QuikFunction FUNCTION = new QuikFunction(
+            "simpleutils_initDataSources",
+            List.of("classCode", "secCode", "intervals"),
+            """
+                    local t = { classCode = classCode, secCode = secCode, }
+                    for _, interval in ipairs(intervals) do
+                      t[interval] = initDataSource(classCode, secCode, interval)
+                    end
+                    return t
+                    """);
+
     private final String classCode;
     private final String secCode;
     private final Collection<Integer> intervals;
@@ -33,4 +48,14 @@ public class CandlesSubscriptionRequest implements QuikRequest {
         sb.append("return t\n");
         return sb.toString();
     }
+
+    @Override
+    public QuikFunction getFunction() {
+        return FUNCTION;
+    }
+
+    @Override
+    public List<?> getArguments() {
+        return List.of(classCode, secCode, List.copyOf(intervals));
+    }
 }
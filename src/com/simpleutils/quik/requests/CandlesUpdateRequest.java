@@ -0,0 +1,91 @@
+package com.simpleutils.quik.requests;
+
+import com.simpleutils.quik.ClassSecCode;
+
+import java.util.List;
+
+/**
+ * Запрос на получение свечей, начиная с последней известной свечи источника данных.
+ * <p>
+ * Результат запроса — таблица {@code { size = N, candles = {...} }}, где {@code size} — текущий
+ * размер источника данных, а {@code candles} — свечи с индексами от {@code lastIndex}
+ * до {@code size} включительно (последняя известная свеча запрашивается повторно, так как она
+ * могла измениться). Если последняя известная свеча не указана или источник данных сократился,
+ * то запрашиваются последние {@code maxSize} свечей. Источник данных должен быть предварительно
+ * создан запросом {@link CandlesSubscriptionRequest}.
+ */
+public class CandlesUpdateRequest implements QuikRequest {
+
+    /**
+     * Функция, возвращающая размер источника данных и новые свечи.
+     */
+    public static final QuikFunction FUNCTION = new QuikFunction(
+            "simpleutils_getCandlesSince",
+            List.of("classCode", "secCode", "interval", "lastIndex", "maxSize"),
+            """
+                    local size = getDataSourceSize(classCode, secCode, interval) or 0
+                    local n = maxSize
+                    if lastIndex > 0 and lastIndex <= size then
+                      n = math.min(size - lastIndex + 1, maxSize)
+                    end
+                    if n > size then
+                      n = size
+                    end
+                    local candles = {}
+                    if n > 0 then
+                      candles = getCandles(classCode, secCode, interval, n)
+                    end
+                    return { size = size, candles = candles, }
+                    """);
+
+    private final String classCode;
+    private final String secCode;
+    private final int interval;
+    private final long lastIndex;
+    private final int maxSize;
+
+    /**
+     * Конструктор.
+     *
+     * @param classCode код класса
+     * @param secCode   код инструмента
+     * @param interval  интервал свечей
+     * @param lastIndex индекс последней известной свечи (начиная с 1) или 0, если свечей нет
+     * @param maxSize   максимальное количество запрашиваемых свечей
+     */
+    public CandlesUpdateRequest(final String classCode, final String secCode, final int interval,
+                                final long lastIndex, final int maxSize) {
+        this.classCode = classCode;
+        this.secCode = secCode;
+        this.interval = interval;
+        this.lastIndex = lastIndex;
+        this.maxSize = maxSize;
+    }
+
+    public CandlesUpdateRequest(final ClassSecCode classSecCode, final int interval,
+                                final long lastIndex, final int maxSize) {
+        this(classSecCode.classCode(), classSecCode.secCode(), interval, lastIndex, maxSize);
+    }
+
+    @Override
+    public String getRequest() {
+        return "local classCode, secCode, interval, lastIndex, maxSize = \"%s\", \"%s\", %d, %d, %d\n"
+                       .formatted(classCode, secCode, interval, lastIndex, maxSize)
+               + FUNCTION.getBody();
+    }
+
+    @Override
+    public Object getCoalescingKey() {
+        return getArguments();
+    }
+
+    @Override
+    public QuikFunction getFunction() {
+        return FUNCTION;
+    }
+
+    @Override
+    public List<?> getArguments() {
+        return List.of(classCode, secCode, interval, lastIndex, maxSize);
+    }
+}
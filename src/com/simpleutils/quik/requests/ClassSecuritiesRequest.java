@@ -0,0 +1,39 @@
+package com.simpleutils.quik.requests;
+
+import java.time.Duration;
+
+/**
+ * Запрос на получение списка кодов инструментов класса (строка с кодами, разделёнными запятыми).
+ * Список меняется редко, поэтому по умолчанию ответ кэшируется на {@link #DEFAULT_CACHE_TTL}.
+ */
+public class ClassSecuritiesRequest implements QuikRequest {
+
+    public static final Duration DEFAULT_CACHE_TTL = Duration.ofHours(1);
+
+    private final String classCode;
+    private final Duration cacheTtl;
+
+    public ClassSecuritiesRequest(final String classCode, final Duration cacheTtl) {
+        this.classCode = classCode;
+        this.cacheTtl = cacheTtl;
+    }
+
+    public ClassSecuritiesRequest(final String classCode) {
+        this(classCode, DEFAULT_CACHE_TTL);
+    }
+
+    @Override
+    public String getRequest() {
+        return "return getClassSecurities(\"%s\")".formatted(classCode);
+    }
+
+    @Override
+    public Object getCoalescingKey() {
+        return classCode;
+    }
+
+    @Override
+    public Duration getCacheTtl() {
+        return cacheTtl;
+    }
+}
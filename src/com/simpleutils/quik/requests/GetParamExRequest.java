@@ -2,21 +2,55 @@ package com.simpleutils.quik.requests;
 
 import com.simpleutils.quik.ClassSecCode;
 
+import java.time.Duration;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * Получение параметров из таблицы текущих торгов для указанных кода класса и кода инструмента.
  */
 public class GetParamExRequest implements QuikRequest {
 
+    /**
+     * Функция, возвращающая таблицу значений параметров.
+     */
+    public static final QuikFunction FUNCTION = new QuikFunction(
+            "simpleutils_getParamEx",
+            List.of("classCode", "secCode", "parameters"),
+            """
+                    local t = {}
+                    for _, param in ipairs(parameters) do
+                      local p = getParamEx(classCode, secCode, param)
+                      if type(p) == "table" and p.result == "1" then
+                        t[param] = p.param_value
+                      end
+                    end
+                    return t
+                    """);
+
     private final String classCode;
     private final String secCode;
     private final Collection<String> parameters;
+    private final Duration cacheTtl;
 
     public GetParamExRequest(final String classCode, final String secCode, final Collection<String> parameters) {
+        this(classCode, secCode, parameters, Duration.ZERO);
+    }
+
+    /**
+     * Конструктор для медленно меняющихся параметров, ответ на запрос которых можно кэшировать.
+     *
+     * @param classCode  код класса
+     * @param secCode    код инструмента
+     * @param parameters параметры
+     * @param cacheTtl   время жизни ответа в кэше
+     */
+    public GetParamExRequest(final String classCode, final String secCode, final Collection<String> parameters,
+                             final Duration cacheTtl) {
         this.classCode = classCode;
         this.secCode = secCode;
         this.parameters = parameters;
+        this.cacheTtl = cacheTtl;
     }
 
     public GetParamExRequest(final ClassSecCode classSecCode, final Collection<String> parameters) {
@@ -38,4 +72,24 @@ public class GetParamExRequest implements QuikRequest {
         sb.append("return t");
         return sb.toString();
     }
+
+    @Override
+    public Object getCoalescingKey() {
+        return getArguments();
+    }
+
+    @Override
+    public Duration getCacheTtl() {
+        return cacheTtl;
+    }
+
+    @Override
+    public QuikFunction getFunction() {
+        return FUNCTION;
+    }
+
+    @Override
+    public List<?> getArguments() {
+        return List.of(classCode, secCode, List.copyOf(parameters));
+    }
 }
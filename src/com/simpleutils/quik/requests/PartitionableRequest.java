@@ -0,0 +1,26 @@
+package com.simpleutils.quik.requests;
+
+/**
+ * Запрос по набору элементов (например, инструментов), который можно разбить на части.
+ * Результат запроса — массив QLua, содержащий по одному элементу на каждый элемент запроса
+ * в порядке их следования, поэтому результаты частей объединяются последовательно.
+ */
+public interface PartitionableRequest extends QuikRequest {
+
+    /**
+     * @return количество элементов запроса
+     */
+    int size();
+
+    /**
+     * @param from индекс первого элемента части
+     * @param to   индекс, следующий за последним элементом части
+     * @return запрос по элементам с индексами из диапазона {@code [from, to)}
+     */
+    PartitionableRequest subRequest(int from, int to);
+
+    /**
+     * @return оценка размера ответа в байтах, приходящегося на один элемент запроса
+     */
+    int estimatedElementSize();
+}
@@ -0,0 +1,89 @@
+package com.simpleutils.quik.requests;
+
+import java.util.List;
+
+/**
+ * Параметризованная функция на языке QLua, которая один раз за соединение регистрируется
+ * в терминале QUIK как глобальная функция, а затем вызывается function-запросами по имени.
+ * <p>
+ * В отличие от chunk-запроса, код которого передаётся и компилируется терминалом при каждом вызове,
+ * вызов зарегистрированной функции передаёт только имя и аргументы.
+ */
+public final class QuikFunction {
+
+    private final String name;
+    private final List<String> parameters;
+    private final String body;
+    private final String registration;
+
+    /**
+     * Конструктор.
+     *
+     * @param name       имя глобальной функции
+     * @param parameters имена параметров функции
+     * @param body       тело функции на языке QLua
+     */
+    public QuikFunction(final String name, final List<String> parameters, final String body) {
+        if (!isIdentifier(name)) {
+            throw new IllegalArgumentException("Illegal function name: " + name);
+        }
+        for (final String parameter : parameters) {
+            if (!isIdentifier(parameter)) {
+                throw new IllegalArgumentException("Illegal parameter name: " + parameter);
+            }
+        }
+        this.name = name;
+        this.parameters = List.copyOf(parameters);
+        this.body = body;
+        registration = name + " = function(" + String.join(", ", parameters) + ")\n"
+                       + body + (body.endsWith("\n") ? "" : "\n")
+                       + "end\n"
+                       + "return true";
+    }
+
+    private static boolean isIdentifier(final String s) {
+        if (s == null || s.isEmpty() || Character.isDigit(s.charAt(0))) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return имя глобальной функции
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return имена параметров функции
+     */
+    public List<String> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * @return тело функции на языке QLua
+     */
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * @return код chunk-запроса, регистрирующего функцию в терминале и возвращающего {@code true}
+     */
+    public String getRegistration() {
+        return registration;
+    }
+
+    @Override
+    public String toString() {
+        return name + "(" + String.join(", ", parameters) + ")";
+    }
+}
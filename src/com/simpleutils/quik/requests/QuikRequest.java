@@ -1,6 +1,55 @@
 package com.simpleutils.quik.requests;
 
+import java.time.Duration;
+import java.util.List;
+
 public interface QuikRequest {
 
     String getRequest();
+
+    /**
+     * Получить функцию, вызовом которой может быть выполнен запрос вместо отправки
+     * chunk-запроса {@link #getRequest()}.
+     *
+     * @return функция или {@code null}, если запрос выполняется только как chunk-запрос
+     */
+    default QuikFunction getFunction() {
+        return null;
+    }
+
+    /**
+     * @return аргументы вызова функции {@link #getFunction()}
+     */
+    default List<?> getArguments() {
+        return List.of();
+    }
+
+    /**
+     * Получить ключ для объединения одинаковых одновременно выполняемых запросов.
+     * Запросы одного класса с равными ключами, отправленные до получения ответа на первый из них,
+     * получают этот же ответ вместо повторной отправки. Ключ следует задавать только для запросов,
+     * не изменяющих состояние терминала.
+     * <p>
+     * Все объединённые запросы получают один и тот же экземпляр {@link org.json.simple.JSONObject},
+     * поэтому ответ нельзя изменять: изменение увидят остальные получатели ответа.
+     *
+     * @return ключ или {@code null}, если запрос всегда отправляется отдельно
+     */
+    default Object getCoalescingKey() {
+        return null;
+    }
+
+    /**
+     * Получить время жизни ответа в кэше ответов {@link com.simpleutils.quik.QuikConnect#responseCache}.
+     * Кэшируются только запросы, для которых задан ключ {@link #getCoalescingKey()}.
+     * <p>
+     * Ответ из кэша не копируется: все получатели получают хранимый в кэше экземпляр
+     * {@link org.json.simple.JSONObject}, поэтому ответ нельзя изменять: до истечения времени жизни
+     * изменённый ответ получат все последующие запросы.
+     *
+     * @return время жизни ответа; нулевое значение означает, что ответ не кэшируется
+     */
+    default Duration getCacheTtl() {
+        return Duration.ZERO;
+    }
 }
@@ -23,4 +23,9 @@ public class QuoteLevel2Request implements QuikRequest {
     public String getRequest() {
         return "return getQuoteLevel2(\"%s\", \"%s\")".formatted(classCode, secCode);
     }
+
+    @Override
+    public Object getCoalescingKey() {
+        return new ClassSecCode(classCode, secCode);
+    }
 }
@@ -0,0 +1,43 @@
+package com.simpleutils.quik.requests;
+
+import com.simpleutils.quik.ClassSecCode;
+
+import java.time.Duration;
+
+/**
+ * Запрос на получение информации об инструменте (шаг цены, лотность, точность и т.п.).
+ * Эти данные меняются редко, поэтому по умолчанию ответ кэшируется на {@link #DEFAULT_CACHE_TTL}.
+ */
+public class SecurityInfoRequest implements QuikRequest {
+
+    public static final Duration DEFAULT_CACHE_TTL = Duration.ofHours(1);
+
+    private final String classCode;
+    private final String secCode;
+    private final Duration cacheTtl;
+
+    public SecurityInfoRequest(final String classCode, final String secCode, final Duration cacheTtl) {
+        this.classCode = classCode;
+        this.secCode = secCode;
+        this.cacheTtl = cacheTtl;
+    }
+
+    public SecurityInfoRequest(final ClassSecCode classSecCode) {
+        this(classSecCode.classCode(), classSecCode.secCode(), DEFAULT_CACHE_TTL);
+    }
+
+    @Override
+    public String getRequest() {
+        return "return getSecurityInfo(\"%s\", \"%s\")".formatted(classCode, secCode);
+    }
+
+    @Override
+    public Object getCoalescingKey() {
+        return new ClassSecCode(classCode, secCode);
+    }
+
+    @Override
+    public Duration getCacheTtl() {
+        return cacheTtl;
+    }
+}
@@ -0,0 +1,184 @@
+package com.simpleutils.quik.test;
+
+import com.simpleutils.logs.AbstractLogger;
+import com.simpleutils.logs.SimpleLogger;
+import com.simpleutils.quik.AbstractQuikListener;
+import com.simpleutils.quik.OverflowPolicy;
+import org.json.simple.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.simpleutils.quik.test.Checks.awaitTermination;
+import static com.simpleutils.quik.test.Checks.awaitWaiting;
+import static com.simpleutils.quik.test.Checks.check;
+import static com.simpleutils.quik.test.Checks.checkEquals;
+
+/**
+ * Самопроверяющийся тест очереди коллбэков {@link AbstractQuikListener} и политик переполнения
+ * {@link OverflowPolicy} без подключения к терминалу.
+ * <p>
+ * Проверяется, что при заполненной очереди поток чтения ждёт места по политике {@link OverflowPolicy#BLOCK}
+ * и освобождается с отбрасыванием коллбэка, если поток исполнения остановлен, завершился
+ * или поток чтения прерван, а также порядок исполнения коллбэков с политиками
+ * {@link OverflowPolicy#DROP_OLDEST} и {@link OverflowPolicy#CONFLATE}.
+ * При ошибке выбрасывается {@link AssertionError}.
+ */
+class CallbackQueueTest {
+
+    private static final AbstractLogger LOGGER = new SimpleLogger();
+
+    public static void main(final String[] args) throws Exception {
+        checkBlockAndStop();
+        checkTerminatedExecutionThread();
+        checkInterruptedProducer();
+        checkDropOldest();
+        checkConflate();
+        LOGGER.info("OK");
+    }
+
+    private static void checkBlockAndStop() throws InterruptedException {
+        final TestListener listener = new TestListener(2);
+        listener.submit("OnTrade", 0);
+        listener.submit("OnTrade", 1);
+        final Thread producer = Thread.ofPlatform().start(() -> listener.submit("OnTrade", 2));
+        awaitWaiting(producer);
+        checkEquals(1L, listener.drain(1), "drained callbacks");
+        awaitTermination(producer, "producer after drain");
+        checkEquals(2L, listener.getQueueDepth(), "queue depth after drain");
+        checkEquals(0L, listener.getDroppedCount(), "dropped callbacks after drain");
+
+        final Thread blocked = Thread.ofPlatform().start(() -> listener.submit("OnTrade", 3));
+        awaitWaiting(blocked);
+        listener.stopExecution();
+        awaitTermination(blocked, "producer after stopExecution");
+        checkEquals(1L, listener.getDroppedCount(), "dropped callbacks after stopExecution");
+        final long start = System.nanoTime();
+        listener.submit("OnTrade", 4);
+        check(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(Checks.WAIT_TIMEOUT_MILLIS),
+                "submit to a full queue waits after stopExecution");
+        checkEquals(2L, listener.getDroppedCount(), "dropped callbacks after stopped submit");
+        listener.drain(Integer.MAX_VALUE);
+        checkEquals(List.of(0, 1, 2), listener.executed, "executed callbacks");
+
+        listener.submit(() -> listener.executed.add(-1));
+        listener.submit(() -> listener.executed.add(-2));
+        listener.submit(() -> listener.executed.add(-3));
+        checkEquals(3L, listener.drain(Integer.MAX_VALUE), "tasks beyond capacity");
+    }
+
+    private static void checkTerminatedExecutionThread() throws InterruptedException {
+        final TestListener listener = new TestListener(1);
+        final Thread executionThread = Thread.ofPlatform().start(() -> {
+        });
+        executionThread.join();
+        listener.executionThread = executionThread;
+        listener.submit("OnTrade", 0);
+        final Thread producer = Thread.ofPlatform().start(() -> listener.submit("OnTrade", 1));
+        awaitTermination(producer, "producer with a terminated execution thread");
+        checkEquals(1L, listener.getDroppedCount(), "dropped callbacks with a terminated execution thread");
+    }
+
+    private static void checkInterruptedProducer() throws InterruptedException {
+        final TestListener listener = new TestListener(1);
+        listener.submit("OnTrade", 0);
+        final AtomicBoolean isInterrupted = new AtomicBoolean();
+        final Thread producer = Thread.ofPlatform().start(() -> {
+            listener.submit("OnTrade", 1);
+            isInterrupted.set(Thread.currentThread().isInterrupted());
+        });
+        awaitWaiting(producer);
+        producer.interrupt();
+        awaitTermination(producer, "interrupted producer");
+        check(isInterrupted.get(), "interrupt flag of the producer is lost");
+        checkEquals(1L, listener.getDroppedCount(), "dropped callbacks after interrupt");
+    }
+
+    private static void checkDropOldest() {
+        final TestListener listener = new TestListener(3);
+        listener.setOverflowPolicy("OnAllTrade", OverflowPolicy.DROP_OLDEST);
+        for (int i = 0; i < 5; i++) {
+            listener.submit("OnAllTrade", i);
+        }
+        checkEquals(3L, listener.getQueueDepth(), "queue depth with DROP_OLDEST");
+        checkEquals(2L, listener.getDroppedCount(), "dropped callbacks with DROP_OLDEST");
+        listener.drain(Integer.MAX_VALUE);
+        checkEquals(List.of(2, 3, 4), listener.executed, "executed callbacks with DROP_OLDEST");
+
+        final TestListener mixed = new TestListener(4);
+        mixed.setOverflowPolicy("OnAllTrade", OverflowPolicy.DROP_OLDEST);
+        mixed.submit("OnTrade", 10);
+        mixed.submit("OnAllTrade", 11);
+        mixed.submit("OnTrade", 12);
+        mixed.submit("OnAllTrade", 13);
+        mixed.submit(() -> mixed.executed.add(-1));
+        mixed.submit("OnAllTrade", 14);
+        checkEquals(1L, mixed.getDroppedCount(), "dropped callbacks among BLOCK callbacks");
+        checkEquals(1L, mixed.drain(1), "drained callbacks among BLOCK callbacks");
+        mixed.submit("OnAllTrade", 15);
+        mixed.drain(Integer.MAX_VALUE);
+        checkEquals(List.of(10, 12, 13, -1, 14, 15), mixed.executed, "order of DROP_OLDEST and BLOCK callbacks");
+    }
+
+    private static void checkConflate() {
+        final TestListener listener = new TestListener(10);
+        listener.setOverflowPolicy("OnQuote", OverflowPolicy.CONFLATE);
+        listener.submit("OnQuote", 0, "SBER");
+        listener.submit("OnQuote", 1, "GAZP");
+        listener.submit("OnQuote", 2, "SBER");
+        listener.submit("OnQuote", 3, "SBER");
+        checkEquals(2L, listener.getQueueDepth(), "queue depth with CONFLATE");
+        checkEquals(2L, listener.getConflatedCount(), "conflated callbacks");
+        listener.drain(Integer.MAX_VALUE);
+        checkEquals(List.of(3, 1), listener.executed, "executed callbacks with CONFLATE");
+        listener.submit("OnQuote", 4, "SBER");
+        listener.drain(Integer.MAX_VALUE);
+        checkEquals(List.of(3, 1, 4), listener.executed, "callback after the conflated one is executed");
+    }
+
+    /**
+     * Слушатель, исполняемый потоком теста и записывающий номера исполненных коллбэков.
+     */
+    private static class TestListener extends AbstractQuikListener {
+        private final List<Integer> executed = new ArrayList<>();
+
+        TestListener(final int capacity) {
+            callbackQueueCapacity = capacity;
+            executionThread = Thread.currentThread();
+        }
+
+        void submit(final String callback, final int n) {
+            submitCallback(callback, new JSONObject(), () -> executed.add(n));
+        }
+
+        @SuppressWarnings("unchecked")
+        void submit(final String callback, final int n, final String secCode) {
+            final JSONObject jsonObject = new JSONObject();
+            jsonObject.put("arg1", "TQBR");
+            jsonObject.put("arg2", secCode);
+            submitCallback(callback, jsonObject, () -> executed.add(n));
+        }
+
+        @Override
+        public void onOpen() {
+        }
+
+        @Override
+        public void onClose() {
+        }
+
+        @Override
+        public void onCallback(final JSONObject jsonObject) {
+        }
+
+        @Override
+        public void onExceptionMN(final Exception exception) {
+        }
+
+        @Override
+        public void onExceptionCB(final Exception exception) {
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.simpleutils.quik.test;
+
+import com.simpleutils.logs.AbstractLogger;
+import com.simpleutils.logs.SimpleLogger;
+import com.simpleutils.quik.CandleSeries;
+import com.simpleutils.quik.ClassSecCode;
+import com.simpleutils.quik.callbacks.QuikDateTime;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.Map;
+
+import static com.simpleutils.quik.test.Checks.check;
+import static com.simpleutils.quik.test.Checks.checkEquals;
+import static com.simpleutils.quik.test.Checks.checkThrows;
+
+/**
+ * Самопроверяющийся тест {@link CandleSeries}.
+ * <p>
+ * Проверяются полная загрузка, совмещение обновлений с хранимыми свечами по времени открытия
+ * (перезапись последней свечи, добавление следующих, обновление без новых свечей), отказ
+ * от обновления при пропуске и при пересоздании источника данных, рост столбцов с сохранением
+ * данных, массивы QLua в виде объекта с числами-строками и представления диапазонов.
+ * Все проверки выполняются для столбцов в куче и вне кучи. При ошибке выбрасывается {@link AssertionError}.
+ */
+class CandleSeriesTest {
+
+    private static final AbstractLogger LOGGER = new SimpleLogger();
+    private static final ClassSecCode SBER = ClassSecCode.of("TQBR", "SBER");
+
+    public static void main(final String[] args) {
+        for (final boolean isDirect : new boolean[]{false, true}) {
+            checkMerge(isDirect);
+            checkRejectedUpdates(isDirect);
+            checkGrowth(isDirect);
+            checkViews(isDirect);
+        }
+        LOGGER.info("OK");
+    }
+
+    private static void checkMerge(final boolean isDirect) {
+        final CandleSeries series = new CandleSeries(SBER, 1, 16, isDirect);
+        check(series.apply(5L, candles(0, 5, 100.0)), "full load");
+        checkEquals(5L, series.size(), "size after full load");
+        checkEquals(5L, series.lastIndex(), "last index after full load");
+        checkCandles(series, 0, 5, 100.0);
+
+        check(series.apply(6L, candles(4, 2, 200.0)), "update overlapping the last candle");
+        checkEquals(6L, series.size(), "size after update");
+        checkEquals(6L, series.lastIndex(), "last index after update");
+        checkCandles(series, 0, 4, 100.0);
+        checkCandles(series, 4, 2, 200.0);
+
+        check(series.apply(6L, new JSONArray()), "update without candles");
+        checkEquals(6L, series.size(), "size after empty update");
+
+        check(series.apply(7L, candles(6, 1, 300.0)), "update starting with the next candle");
+        checkEquals(7L, series.size(), "size after adjacent update");
+        checkCandles(series, 6, 1, 300.0);
+
+        check(series.apply(7L, candles(6, 1, 400.0)), "update of the last candle only");
+        checkEquals(7L, series.size(), "size after last candle update");
+        checkCandles(series, 6, 1, 400.0);
+        checkCandles(series, 0, 4, 100.0);
+        checkEquals(-1L, series.indexOf(time(0) - 60_000L), "index of a time before the first candle");
+        checkEquals(-8L, series.indexOf(time(7)), "index of a time after the last candle");
+        checkEquals(3L, series.indexOf(time(3)), "index of a stored time");
+
+        series.clear();
+        checkEquals(0L, series.size(), "size after clear");
+        check(series.apply(3L, candles(10, 3, 500.0)), "full load after clear");
+        checkCandles(series, 10, 3, 500.0);
+    }
+
+    private static void checkRejectedUpdates(final boolean isDirect) {
+        final CandleSeries series = new CandleSeries(SBER, 1, 16, isDirect);
+        check(series.apply(5L, candles(0, 5, 100.0)), "full load");
+        check(!series.apply(10L, candles(9, 1, 200.0)), "update after a gap is applied");
+        check(!series.apply(4L, candles(3, 1, 200.0)), "update from a recreated source is applied");
+        checkEquals(5L, series.size(), "size after rejected updates");
+        checkEquals(5L, series.lastIndex(), "last index after rejected updates");
+        checkCandles(series, 0, 5, 100.0);
+    }
+
+    private static void checkGrowth(final boolean isDirect) {
+        final CandleSeries series = new CandleSeries(SBER, 1, 1, isDirect);
+        check(series.apply(10L, candles(0, 10, 100.0)), "first load");
+        for (int i = 10; i < 1000; i += 10) {
+            check(series.apply(i + 10L, candles(i, 10, 100.0)), "load of candles from " + i);
+        }
+        checkEquals(1000L, series.size(), "size after growth");
+        checkCandles(series, 0, 1000, 100.0);
+    }
+
+    private static void checkViews(final boolean isDirect) {
+        final CandleSeries series = new CandleSeries(SBER, 1, 16, isDirect);
+        check(series.apply(3L, luaObjectArray(candles(0, 3, 100.0))), "load of a QLua object array");
+        checkCandles(series, 0, 3, 100.0);
+        final DoubleBuffer closes = series.closes(1, 3);
+        checkEquals(2L, closes.remaining(), "view size");
+        checkEquals(series.close(1), closes.get(0), "first value of the view");
+        checkEquals(series.close(2), closes.get(1), "second value of the view");
+        check(closes.isReadOnly(), "view is writable");
+        final LongBuffer times = series.times(0, 3);
+        checkEquals(time(2), times.get(2), "time view");
+        checkEquals(0L, series.volumes(3, 3).remaining(), "empty view");
+        checkThrows(IndexOutOfBoundsException.class, () -> series.closes(0, 4), "view beyond size");
+        checkThrows(IndexOutOfBoundsException.class, () -> series.close(3), "candle beyond size");
+    }
+
+    private static void checkCandles(final CandleSeries series, final int first, final int count, final double base) {
+        for (int k = 0; k < count; k++) {
+            final int minute = first + k;
+            final int i = series.indexOf(time(minute));
+            check(i >= 0, "candle " + minute + " not found");
+            final double close = base + minute;
+            checkEquals(time(minute), series.time(i), "time of candle " + minute);
+            checkEquals(close - 1.0, series.open(i), "open of candle " + minute);
+            checkEquals(close + 1.0, series.high(i), "high of candle " + minute);
+            checkEquals(close - 2.0, series.low(i), "low of candle " + minute);
+            checkEquals(close, series.close(i), "close of candle " + minute);
+            checkEquals(minute * 10.0, series.volume(i), "volume of candle " + minute);
+        }
+    }
+
+    /**
+     * Минутные свечи, начиная с указанной минуты торгового дня; цена закрытия равна {@code base + минута}.
+     */
+    @SuppressWarnings("unchecked")
+    private static JSONArray candles(final int first, final int count, final double base) {
+        final JSONArray candles = new JSONArray();
+        for (int minute = first; minute < first + count; minute++) {
+            final double close = base + minute;
+            final JSONObject candle = new JSONObject();
+            candle.put("open", close - 1.0);
+            candle.put("high", close + 1.0);
+            candle.put("low", close - 2.0);
+            candle.put("close", close);
+            candle.put("volume", minute * 10.0);
+            candle.put("datetime", datetime(minute));
+            candles.add(candle);
+        }
+        return candles;
+    }
+
+    /**
+     * Массив QLua в виде объекта с ключами "1", "2", ... и числами-строками.
+     */
+    @SuppressWarnings("unchecked")
+    private static JSONObject luaObjectArray(final JSONArray candles) {
+        final JSONObject array = new JSONObject();
+        for (int i = 0; i < candles.size(); i++) {
+            final JSONObject candle = new JSONObject();
+            for (final Object entry : ((JSONObject) candles.get(i)).entrySet()) {
+                final Map.Entry<Object, Object> e = (Map.Entry<Object, Object>) entry;
+                candle.put(e.getKey(), e.getValue() instanceof Double d ? String.valueOf(d) : e.getValue());
+            }
+            array.put(String.valueOf(i + 1), candle);
+        }
+        return array;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONObject datetime(final int minute) {
+        final JSONObject datetime = new JSONObject();
+        datetime.put("year", 2024L);
+        datetime.put("month", 3L);
+        datetime.put("day", 1L);
+        datetime.put("hour", 10L + minute / 60);
+        datetime.put("min", (long) (minute % 60));
+        datetime.put("sec", 0L);
+        datetime.put("ms", 0L);
+        return datetime;
+    }
+
+    private static long time(final int minute) {
+        return QuikDateTime.toEpochMillis(datetime(minute));
+    }
+}
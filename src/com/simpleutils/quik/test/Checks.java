@@ -0,0 +1,94 @@
+package com.simpleutils.quik.test;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверки для самопроверяющихся тестов: при нарушении условия выбрасывается {@link AssertionError},
+ * поэтому тест завершается с ненулевым кодом независимо от ключа {@code -ea}.
+ */
+final class Checks {
+    /**
+     * Наибольшее время ожидания изменения состояния другого потока.
+     */
+    static final long WAIT_TIMEOUT_MILLIS = 2000L;
+
+    private Checks() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Действие, которое может выбросить исключение.
+     */
+    @FunctionalInterface
+    interface Action {
+        void run() throws Exception;
+    }
+
+    static void check(final boolean condition, final String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    static void checkEquals(final long expected, final long actual, final String message) {
+        if (expected != actual) {
+            throw new AssertionError(message + ": expected " + expected + ", actual " + actual);
+        }
+    }
+
+    static void checkEquals(final Object expected, final Object actual, final String message) {
+        if (!Objects.equals(expected, actual)) {
+            throw new AssertionError(message + ": expected " + expected + ", actual " + actual);
+        }
+    }
+
+    /**
+     * Проверить, что действие выбрасывает исключение указанного типа.
+     *
+     * @param type    тип исключения
+     * @param action  действие
+     * @param message описание проверки
+     */
+    static void checkThrows(final Class<? extends Throwable> type, final Action action, final String message) {
+        try {
+            action.run();
+        } catch (final Throwable e) {
+            if (type.isInstance(e)) {
+                return;
+            }
+            throw new AssertionError(message + ": expected " + type.getSimpleName() + ", actual " + e, e);
+        }
+        throw new AssertionError(message + ": expected " + type.getSimpleName() + ", nothing thrown");
+    }
+
+    /**
+     * Дождаться, пока поток не начнёт ждать, например, места в очереди.
+     *
+     * @param thread поток
+     */
+    static void awaitWaiting(final Thread thread) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WAIT_TIMEOUT_MILLIS);
+        while (true) {
+            final Thread.State state = thread.getState();
+            if (state == Thread.State.WAITING || state == Thread.State.TIMED_WAITING) {
+                return;
+            }
+            check(state != Thread.State.TERMINATED, thread.getName() + " terminated without waiting");
+            check(System.nanoTime() - deadline < 0L, thread.getName() + " did not start waiting");
+            //noinspection BusyWait
+            Thread.sleep(1L);
+        }
+    }
+
+    /**
+     * Дождаться завершения потока.
+     *
+     * @param thread  поток
+     * @param message описание проверки
+     */
+    static void awaitTermination(final Thread thread, final String message) throws InterruptedException {
+        thread.join(WAIT_TIMEOUT_MILLIS);
+        check(!thread.isAlive(), message + " is still running");
+    }
+}
@@ -0,0 +1,132 @@
+package com.simpleutils.quik.test;
+
+import com.simpleutils.LatencyHistogram;
+import com.simpleutils.logs.AbstractLogger;
+import com.simpleutils.logs.SimpleLogger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static com.simpleutils.quik.test.Checks.check;
+import static com.simpleutils.quik.test.Checks.checkEquals;
+
+/**
+ * Самопроверяющийся тест {@link LatencyHistogram}.
+ * <p>
+ * Границы интервалов проверяются через квантили: для значения {@code v} и значения {@link Long#MAX_VALUE}
+ * медиана равна верхней границе интервала, содержащего {@code v}. Она не должна быть меньше {@code v},
+ * отличаться от него больше чем на 1/16, а следующее за ней значение должно попадать в следующий интервал.
+ * Кроме того, проверяются квантили равномерного распределения, снимок с обнулением и запись
+ * из нескольких потоков. При ошибке выбрасывается {@link AssertionError}.
+ */
+class LatencyHistogramTest {
+
+    private static final AbstractLogger LOGGER = new SimpleLogger();
+
+    public static void main(final String[] args) throws InterruptedException {
+        checkBuckets();
+        checkQuantiles();
+        checkReset();
+        checkConcurrentRecording();
+        LOGGER.info("OK");
+    }
+
+    private static void checkBuckets() {
+        final List<Long> values = new ArrayList<>();
+        for (long v = 0L; v <= 64L; v++) {
+            values.add(v);
+        }
+        for (int k = 6; k < 63; k++) {
+            values.add((1L << k) - 1L);
+            values.add(1L << k);
+            values.add((1L << k) + 1L);
+        }
+        final SplittableRandom random = new SplittableRandom(1L);
+        for (int i = 0; i < 10_000; i++) {
+            values.add(random.nextLong(Long.MAX_VALUE) >>> random.nextInt(63));
+        }
+        values.add(Long.MAX_VALUE - 1L);
+        for (final long v : values) {
+            final long upperBound = upperBound(v);
+            check(upperBound >= v, "upper bound " + upperBound + " is below " + v);
+            check(upperBound - v <= v >>> 4, "upper bound " + upperBound + " is too far from " + v);
+            checkEquals(upperBound, upperBound(upperBound), "upper bound of the upper bound of " + v);
+            if (upperBound < Long.MAX_VALUE - 1L) {
+                check(upperBound(upperBound + 1L) > upperBound, "bucket after " + upperBound + " for " + v);
+            }
+        }
+        checkEquals(Long.MAX_VALUE, upperBound(Long.MAX_VALUE), "upper bound of Long.MAX_VALUE");
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5L);
+        checkEquals(0L, histogram.snapshot(false).getMax(), "negative value is recorded as zero");
+    }
+
+    /**
+     * @return верхняя граница интервала, содержащего значение
+     */
+    private static long upperBound(final long value) {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(value);
+        histogram.record(Long.MAX_VALUE);
+        return histogram.snapshot(false).getValueAtQuantile(0.5);
+    }
+
+    private static void checkQuantiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        checkEquals(0L, histogram.snapshot(false).getP99(), "quantile of an empty histogram");
+        check(Double.isNaN(histogram.snapshot(false).getMean()), "mean of an empty histogram");
+        for (long v = 1L; v <= 100_000L; v++) {
+            histogram.record(v);
+        }
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot(false);
+        checkEquals(100_000L, snapshot.getCount(), "count");
+        checkEquals(100_000L, snapshot.getMax(), "max");
+        checkEquals(50_000.5, snapshot.getMean(), "mean");
+        checkQuantile(snapshot, 0.5, 50_000L);
+        checkQuantile(snapshot, 0.99, 99_000L);
+        checkQuantile(snapshot, 0.999, 99_900L);
+        checkEquals(1L, snapshot.getValueAtQuantile(0.0), "quantile 0");
+        checkEquals(100_000L, snapshot.getValueAtQuantile(1.0), "quantile 1");
+    }
+
+    private static void checkQuantile(final LatencyHistogram.Snapshot snapshot, final double quantile, final long exact) {
+        final long value = snapshot.getValueAtQuantile(quantile);
+        check(value >= exact && value - exact <= exact >>> 4,
+                "quantile " + quantile + ": expected about " + exact + ", actual " + value);
+    }
+
+    private static void checkReset() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(10L);
+        histogram.record(20L);
+        final LatencyHistogram.Snapshot first = histogram.snapshot(true);
+        checkEquals(2L, first.getCount(), "count before reset");
+        checkEquals(20L, first.getMax(), "max before reset");
+        final LatencyHistogram.Snapshot second = histogram.snapshot(false);
+        checkEquals(0L, second.getCount(), "count after reset");
+        checkEquals(0L, second.getMax(), "max after reset");
+        histogram.record(7L);
+        checkEquals(7L, histogram.snapshot(false).getP50(), "value after reset");
+    }
+
+    private static void checkConcurrentRecording() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final long offset = i;
+            threads[i] = Thread.ofPlatform().start(() -> {
+                for (long v = 0L; v < 100_000L; v++) {
+                    histogram.record(v * threads.length + offset);
+                }
+            });
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot(false);
+        checkEquals(400_000L, snapshot.getCount(), "count of concurrent recording");
+        checkEquals(399_999L, snapshot.getMax(), "max of concurrent recording");
+        checkEquals(199_999.5, snapshot.getMean(), "mean of concurrent recording");
+    }
+}
@@ -0,0 +1,193 @@
+package com.simpleutils.quik.test;
+
+import com.simpleutils.logs.AbstractLogger;
+import com.simpleutils.logs.SimpleLogger;
+import com.simpleutils.quik.ClassSecCode;
+import com.simpleutils.quik.OrderBook;
+import com.simpleutils.quik.OrderBookStore;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.simpleutils.quik.test.Checks.check;
+import static com.simpleutils.quik.test.Checks.checkEquals;
+import static com.simpleutils.quik.test.Checks.checkThrows;
+
+/**
+ * Самопроверяющийся тест {@link OrderBook} и {@link OrderBookStore}.
+ * <p>
+ * Проверяются порядок уровней после применения снимка {@code getQuoteLevel2}, ограничение глубины,
+ * пустые стороны, очистка стакана при некорректном снимке, пакетное обновление хранилища,
+ * а также согласованность чтения: читатель, копирующий уровни во время записи, всегда видит
+ * уровни одного снимка. При ошибке выбрасывается {@link AssertionError}.
+ */
+class OrderBookTest {
+
+    private static final AbstractLogger LOGGER = new SimpleLogger();
+    private static final ClassSecCode SBER = ClassSecCode.of("TQBR", "SBER");
+    private static final ClassSecCode GAZP = ClassSecCode.of("TQBR", "GAZP");
+
+    public static void main(final String[] args) throws InterruptedException {
+        checkLevels();
+        checkEmptyAndInvalid();
+        checkStore();
+        checkConsistentReads();
+        LOGGER.info("OK");
+    }
+
+    private static void checkLevels() {
+        final OrderBook orderBook = new OrderBook(SBER, 3);
+        orderBook.update(quotes(100.0, 4, 5));
+        checkEquals(3L, orderBook.bidDepth(), "bid depth limited by max depth");
+        checkEquals(3L, orderBook.askDepth(), "ask depth limited by max depth");
+        checkEquals(99.0, orderBook.bestBid(), "best bid");
+        checkEquals(101.0, orderBook.bestAsk(), "best ask");
+        checkEquals(97.0, orderBook.bidPrice(2), "worst stored bid");
+        checkEquals(103.0, orderBook.askPrice(2), "worst stored ask");
+        checkEquals(1L, orderBook.bidQuantity(0), "best bid quantity");
+        checkEquals(3L, orderBook.askQuantity(2), "worst stored ask quantity");
+        checkEquals(100.0, orderBook.midPrice(), "mid price");
+        checkEquals(2.0, orderBook.spread(), "spread");
+        check(Double.isNaN(orderBook.bidPrice(3)), "bid beyond depth");
+        checkEquals(0L, orderBook.askQuantity(-1), "ask quantity at a negative level");
+
+        final double[] prices = new double[2];
+        final long[] quantities = new long[5];
+        checkEquals(2L, orderBook.copyBids(prices, quantities), "bids copied into short arrays");
+        checkEquals(98.0, prices[1], "second copied bid");
+        checkEquals(2L, quantities[1], "second copied bid quantity");
+        final long version = orderBook.version();
+        orderBook.update(quotes(200.0, 1, 2));
+        checkEquals(version + 1L, orderBook.version(), "version after update");
+        checkEquals(1L, orderBook.bidDepth(), "bid depth of a shallow snapshot");
+        checkEquals(2L, orderBook.askDepth(), "ask depth of a shallow snapshot");
+        checkEquals(199.0, orderBook.bestBid(), "best bid of a shallow snapshot");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void checkEmptyAndInvalid() {
+        final OrderBook orderBook = new OrderBook(SBER, 5);
+        final JSONObject oneSided = quotes(100.0, 2, 0);
+        oneSided.put("offer", "");
+        orderBook.update(oneSided);
+        checkEquals(2L, orderBook.bidDepth(), "bid depth of a one-sided book");
+        checkEquals(0L, orderBook.askDepth(), "ask depth of a one-sided book");
+        check(Double.isNaN(orderBook.bestAsk()), "best ask of a one-sided book");
+        check(Double.isNaN(orderBook.midPrice()), "mid price of a one-sided book");
+        check(Double.isNaN(orderBook.spread()), "spread of a one-sided book");
+
+        final JSONObject invalid = quotes(100.0, 2, 2);
+        ((JSONObject) ((JSONArray) invalid.get("offer")).get(1)).put("price", "not a number");
+        final long version = orderBook.version();
+        checkThrows(NumberFormatException.class, () -> orderBook.update(invalid), "invalid snapshot");
+        checkEquals(0L, orderBook.bidDepth(), "bid depth after an invalid snapshot");
+        checkEquals(0L, orderBook.askDepth(), "ask depth after an invalid snapshot");
+        checkEquals(version + 1L, orderBook.version(), "version after an invalid snapshot");
+
+        orderBook.update(quotes(100.0, 1, 1));
+        orderBook.clear();
+        checkEquals(0L, orderBook.bidDepth(), "bid depth after clear");
+        checkThrows(IllegalArgumentException.class, () -> new OrderBook(SBER, 0), "zero depth");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void checkStore() {
+        final OrderBookStore store = new OrderBookStore(10);
+        final JSONArray bulk = new JSONArray();
+        bulk.add(bulkEntry(SBER, quotes(100.0, 3, 3)));
+        bulk.add(bulkEntry(GAZP, quotes(200.0, 2, 2)));
+        final JSONObject withoutQuotes = new JSONObject();
+        withoutQuotes.put("classCode", "TQBR");
+        withoutQuotes.put("secCode", "LKOH");
+        withoutQuotes.put("quotes", "");
+        bulk.add(withoutQuotes);
+        checkEquals(2L, store.updateBulk(bulk), "updated order books");
+        checkEquals(99.0, store.get(SBER).bestBid(), "SBER best bid");
+        checkEquals(201.0, store.get(GAZP).bestAsk(), "GAZP best ask");
+        check(store.get(ClassSecCode.of("TQBR", "LKOH")) == null, "order book without quotes is created");
+        checkEquals(10L, store.get(SBER).maxDepth(), "max depth of the store");
+        store.clear();
+        checkEquals(0L, store.get(SBER).bidDepth(), "bid depth after store clear");
+    }
+
+    /**
+     * Писатель чередует снимки с разными ценами, а читатель копирует уровни и проверяет,
+     * что все они относятся к одному снимку: цены уровней отличаются ровно на шаг от лучшей цены,
+     * а количество уровня совпадает с его номером.
+     */
+    private static void checkConsistentReads() throws InterruptedException {
+        final OrderBook orderBook = new OrderBook(SBER, 20);
+        final JSONObject[] snapshots = {quotes(100.0, 20, 20), quotes(500.0, 10, 10), quotes(900.0, 20, 5)};
+        orderBook.update(snapshots[0]);
+        final AtomicBoolean isStopped = new AtomicBoolean();
+        final AtomicReference<String> failure = new AtomicReference<>();
+        final Thread reader = Thread.ofPlatform().start(() -> {
+            final double[] prices = new double[20];
+            final long[] quantities = new long[20];
+            while (!isStopped.get() && failure.get() == null) {
+                final int n = orderBook.copyBids(prices, quantities);
+                for (int level = 0; level < n; level++) {
+                    if (prices[level] != prices[0] - level || quantities[level] != level + 1) {
+                        failure.set("level " + level + " of " + n + ": " + prices[level] + " x " + quantities[level]
+                                    + ", best " + prices[0]);
+                        break;
+                    }
+                }
+                final double spread = orderBook.spread();
+                if (spread != 2.0) {
+                    failure.set("spread " + spread);
+                }
+            }
+        });
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1L);
+        for (int i = 0; System.nanoTime() - deadline < 0L && failure.get() == null; i++) {
+            orderBook.update(snapshots[i % snapshots.length]);
+        }
+        isStopped.set(true);
+        reader.join();
+        check(failure.get() == null, "inconsistent read: " + failure.get());
+    }
+
+    /**
+     * Снимок стакана в формате {@code getQuoteLevel2}: уровни покупки по возрастанию цены
+     * {@code mid - bids, ..., mid - 1}, уровни продажи {@code mid + 1, ..., mid + asks};
+     * количество уровня равно его номеру от лучшего, начиная с 1. Цены передаются строками, как в QLua.
+     */
+    @SuppressWarnings("unchecked")
+    private static JSONObject quotes(final double mid, final int bids, final int asks) {
+        final JSONArray bid = new JSONArray();
+        for (int level = bids; level >= 1; level--) {
+            bid.add(quote(mid - level, level));
+        }
+        final JSONArray offer = new JSONArray();
+        for (int level = 1; level <= asks; level++) {
+            offer.add(quote(mid + level, level));
+        }
+        final JSONObject quotes = new JSONObject();
+        quotes.put("bid_count", String.valueOf(bids));
+        quotes.put("offer_count", String.valueOf(asks));
+        quotes.put("bid", bid);
+        quotes.put("offer", offer);
+        return quotes;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONObject quote(final double price, final long quantity) {
+        final JSONObject quote = new JSONObject();
+        quote.put("price", String.valueOf(price));
+        quote.put("quantity", String.valueOf(quantity));
+        return quote;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONObject bulkEntry(final ClassSecCode classSecCode, final JSONObject quotes) {
+        final JSONObject entry = new JSONObject();
+        entry.put("classCode", classSecCode.classCode());
+        entry.put("secCode", classSecCode.secCode());
+        entry.put("quotes", quotes);
+        return entry;
+    }
+}
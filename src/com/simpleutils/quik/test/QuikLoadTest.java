@@ -0,0 +1,215 @@
+package com.simpleutils.quik.test;
+
+import com.simpleutils.IdleStrategy;
+import com.simpleutils.logs.AbstractLogger;
+import com.simpleutils.logs.SimpleLogger;
+import com.simpleutils.quik.AbstractQuikListener;
+import com.simpleutils.quik.QuikConnect;
+import org.json.simple.JSONObject;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Нагрузочное тестирование {@link QuikConnect} с сервером {@link QuikStandInServer} вместо терминала.
+ * <p>
+ * Несколько потоков в течение заданного времени выполняют function-запросы к MN-серверу,
+ * а сервер одновременно отправляет коллбэки с заданной частотой. В конце выводятся пропускная
+ * способность и распределение задержек запросов и коллбэков. Задержка коллбэка измеряется от
+ * его формирования сервером до вызова слушателя, поэтому сервер запускается в том же процессе.
+ * <p>
+ * Аргументы: длительность теста в секундах, количество потоков запросов, частота коллбэков
+ * в секунду, задержка ответа сервера в микросекундах, режим чтения ({@code blocking},
+ * {@code selector} или {@code dedicated}), стратегия ожидания потоков чтения при опросе сокетов
+ * ({@code sleep}, {@code spin}, {@code yield} или {@code backoff}).
+ */
+class QuikLoadTest {
+
+    private static final AbstractLogger LOGGER = new SimpleLogger();
+
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        final int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        final int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        final double callbackRate = args.length > 2 ? Double.parseDouble(args[2]) : 1000.0;
+        final long latencyMicros = args.length > 3 ? Long.parseLong(args[3]) : 0L;
+        final String mode = args.length > 4 ? args[4] : "blocking";
+        final String idle = args.length > 5 ? args[5] : "sleep";
+
+        try (final QuikStandInServer server = new QuikStandInServer(0, 0)) {
+            server.responseLatency = Duration.of(latencyMicros, ChronoUnit.MICROS);
+            final LoadListener listener = new LoadListener();
+            final QuikConnect quikConnect = new QuikConnect("127.0.0.1", server.getPortMN(), server.getPortCB(),
+                    QuikLoadTest.class.getSimpleName(), listener);
+            quikConnect.useSelector = mode.equals("selector");
+            quikConnect.useDedicatedReaders = mode.equals("dedicated");
+            quikConnect.readerIdleStrategy = switch (idle) {
+                case "spin" -> IdleStrategy::busySpin;
+                case "yield" -> () -> IdleStrategy.spinThenYield(1000);
+                case "backoff" -> () -> IdleStrategy.backoff(1000, 100, 10_000L, 1_000_000L);
+                default -> null;
+            };
+            listener.setQuikConnect(quikConnect);
+            quikConnect.start();
+            while (!listener.isOpen) {
+                //noinspection BusyWait
+                Thread.sleep(10L);
+            }
+            try {
+                run(server, quikConnect, listener, seconds, concurrency, callbackRate);
+            } finally {
+                quikConnect.shutdown();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void run(final QuikStandInServer server, final QuikConnect quikConnect,
+                            final LoadListener listener, final int seconds, final int concurrency,
+                            final double callbackRate) throws InterruptedException {
+        LOGGER.info("Load test: " + seconds + " s, " + concurrency + " request threads, "
+                    + callbackRate + " callbacks/s, response latency " + server.responseLatency.toNanos() / 1000L + " us");
+        try {
+            quikConnect.executeCB("OnAllTrade", "*", 5, TimeUnit.SECONDS);
+        } catch (final Exception e) {
+            LOGGER.log(AbstractLogger.ERROR, "Cannot subscribe to callbacks", e);
+            return;
+        }
+        server.startCallbackFlood("OnAllTrade", callbackRate, () -> {
+            final JSONObject arg = new JSONObject();
+            arg.put("nanoTime", System.nanoTime());
+            return arg;
+        });
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        final LatencyRecorder[] recorders = new LatencyRecorder[concurrency];
+        final Thread[] threads = new Thread[concurrency];
+        final AtomicLong errorCount = new AtomicLong();
+        for (int i = 0; i < concurrency; i++) {
+            final LatencyRecorder recorder = recorders[i] = new LatencyRecorder();
+            final int threadIndex = i;
+            threads[i] = new Thread(() -> {
+                long n = 0L;
+                while (System.nanoTime() - deadline < 0L) {
+                    final long start = System.nanoTime();
+                    try {
+                        quikConnect.executeMN("math.max", List.of(threadIndex, n++), 5, TimeUnit.SECONDS);
+                        recorder.record(System.nanoTime() - start);
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    } catch (final Exception e) {
+                        errorCount.incrementAndGet();
+                    }
+                }
+            }, "LoadTest-" + i);
+            threads[i].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        server.stopCallbackFloods();
+
+        final LatencyRecorder requests = new LatencyRecorder();
+        for (final LatencyRecorder recorder : recorders) {
+            requests.addAll(recorder);
+        }
+        LOGGER.info("Requests: " + requests.size() + " (" + requests.size() / seconds + "/s), errors: " + errorCount.get());
+        LOGGER.info("Request latency, us: " + requests.summary());
+        final LatencyRecorder callbacks = listener.callbackLatencies;
+        LOGGER.info("Callbacks: sent " + server.getCallbackCount() + ", received " + callbacks.size()
+                    + " (" + callbacks.size() / seconds + "/s)");
+        LOGGER.info("Callback latency, us: " + callbacks.summary());
+        quikConnect.getLatencySnapshots(false).forEach((key, snapshot) -> {
+            if (snapshot.getCount() > 0L) {
+                LOGGER.info("Round trip " + key + ", ns: " + snapshot);
+            }
+        });
+        LOGGER.info("Metrics: " + quikConnect.getMetrics());
+    }
+
+    /**
+     * Накопитель измеренных задержек в наносекундах.
+     */
+    private static class LatencyRecorder {
+        private long[] values = new long[1024];
+        private int size = 0;
+
+        void record(final long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+
+        void addAll(final LatencyRecorder recorder) {
+            for (int i = 0; i < recorder.size; i++) {
+                record(recorder.values[i]);
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        String summary() {
+            if (size == 0) {
+                return "no data";
+            }
+            final long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return "p50=" + percentile(sorted, 0.5)
+                   + " p90=" + percentile(sorted, 0.9)
+                   + " p99=" + percentile(sorted, 0.99)
+                   + " p99.9=" + percentile(sorted, 0.999)
+                   + " max=" + sorted[sorted.length - 1] / 1000L;
+        }
+
+        private static long percentile(final long[] sorted, final double p) {
+            return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))] / 1000L;
+        }
+    }
+
+    private static class LoadListener extends AbstractQuikListener {
+        private volatile boolean isOpen = false;
+        private final LatencyRecorder callbackLatencies = new LatencyRecorder();
+
+        LoadListener() {
+            executionThread = Thread.currentThread();
+        }
+
+        @Override
+        public void onOpen() {
+            isOpen = true;
+        }
+
+        @Override
+        public void onClose() {
+            isOpen = false;
+        }
+
+        /**
+         * Вызывается только потоком чтения CB-соединения, поэтому накопитель не синхронизируется.
+         */
+        @Override
+        public void onCallback(final JSONObject jsonObject) {
+            if (jsonObject.get("arg1") instanceof JSONObject arg && arg.get("nanoTime") instanceof Long nanoTime) {
+                callbackLatencies.record(System.nanoTime() - nanoTime);
+            }
+        }
+
+        @Override
+        public void onExceptionMN(final Exception exception) {
+            LOGGER.log(AbstractLogger.ERROR, "onExceptionMN", exception);
+        }
+
+        @Override
+        public void onExceptionCB(final Exception exception) {
+            LOGGER.log(AbstractLogger.ERROR, "onExceptionCB", exception);
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package com.simpleutils.quik.test;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Сервер, заменяющий терминал QUIK при нагрузочном тестировании {@link com.simpleutils.quik.QuikConnect}.
+ * <p>
+ * Сервер принимает подключения к MN- и CB-порту и поддерживает тот же строковый протокол, что и
+ * серверная часть в терминале: {@code ping}/{@code pong}, конверты {@code id}/{@code clientId}
+ * с ключами {@code chunk}, {@code fname}/{@code args} или {@code callback}/{@code filter},
+ * а также {@code quit}. Запросы одного подключения обрабатываются последовательно, как в терминале,
+ * с задержкой {@link #responseLatency} плюс случайная добавка до {@link #responseJitter}.
+ * <p>
+ * Ответ на запрос определяется так:<br>
+ * 1) заготовленный ответ для текста chunk-запроса или имени функции (см. {@link #setResult(String, Object)});<br>
+ * 2) ответ генератора {@link #responder}, если он задан и вернул не {@code null};<br>
+ * 3) {@code true} для chunk-запросов, заканчивающихся на {@code return true} (регистрация функций);<br>
+ * 4) {@code null} в остальных случаях.
+ * <p>
+ * Подписка на коллбэк всегда успешна. Методом {@link #startCallbackFlood(String, double, Supplier)}
+ * запускается поток коллбэков с заданной частотой во все CB-подключения, подписанные на коллбэк.
+ */
+public class QuikStandInServer implements AutoCloseable {
+
+    /**
+     * Генератор ответов.
+     */
+    @FunctionalInterface
+    public interface Responder {
+        /**
+         * @param request разобранный запрос
+         * @return объект ответа без ключей {@code id} и {@code clientId} или {@code null},
+         * если ответ по умолчанию
+         */
+        JSONObject respond(JSONObject request);
+    }
+
+    /**
+     * Задержка ответа на каждый запрос.
+     */
+    public volatile Duration responseLatency = Duration.ZERO;
+    /**
+     * Максимальная случайная добавка к задержке ответа.
+     */
+    public volatile Duration responseJitter = Duration.ZERO;
+    /**
+     * Генератор ответов или {@code null}.
+     */
+    public volatile Responder responder = null;
+
+    /**
+     * Заменитель {@code null} в таблице заготовленных ответов.
+     */
+    private static final Object NULL = new Object();
+
+    private final Charset charset = Charset.forName("CP1251");
+    private final ServerSocket serverSocketMN;
+    private final ServerSocket serverSocketCB;
+    private final Map<String, Object> results = new ConcurrentHashMap<>();
+    private final List<Connection> connections = new CopyOnWriteArrayList<>();
+    private final List<Thread> floodThreads = new CopyOnWriteArrayList<>();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong callbackCount = new AtomicLong();
+    private volatile boolean isClosed = false;
+
+    /**
+     * Конструктор. Сервер начинает принимать подключения сразу.
+     *
+     * @param portMN порт MN-сервера или 0 для выбора свободного порта
+     * @param portCB порт CB-сервера или 0 для выбора свободного порта
+     * @throws IOException если не удалось открыть порт
+     */
+    public QuikStandInServer(final int portMN, final int portCB) throws IOException {
+        final InetAddress address = InetAddress.getLoopbackAddress();
+        serverSocketMN = new ServerSocket(portMN, 50, address);
+        try {
+            serverSocketCB = new ServerSocket(portCB, 50, address);
+        } catch (final IOException e) {
+            serverSocketMN.close();
+            throw e;
+        }
+        setResult("isConnected", 1L);
+        setResult("ServerInfo.isSynchronized", true);
+        startThread("StandIn-AcceptMN", () -> accept(serverSocketMN, false));
+        startThread("StandIn-AcceptCB", () -> accept(serverSocketCB, true));
+    }
+
+    public int getPortMN() {
+        return serverSocketMN.getLocalPort();
+    }
+
+    public int getPortCB() {
+        return serverSocketCB.getLocalPort();
+    }
+
+    /**
+     * @return количество полученных запросов
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return количество отправленных коллбэков
+     */
+    public long getCallbackCount() {
+        return callbackCount.get();
+    }
+
+    /**
+     * Задать заготовленный результат для chunk-запроса или function-запроса.
+     *
+     * @param chunkOrFname текст chunk-запроса или имя функции
+     * @param result       значение ключа {@code result} ответа
+     */
+    public void setResult(final String chunkOrFname, final Object result) {
+        results.put(chunkOrFname, result == null ? NULL : result);
+    }
+
+    /**
+     * Запустить поток коллбэков.
+     *
+     * @param callback      имя коллбэка
+     * @param ratePerSecond количество коллбэков в секунду
+     * @param argSupplier   генератор значения ключа {@code arg1} коллбэка
+     */
+    @SuppressWarnings("unchecked")
+    public void startCallbackFlood(final String callback, final double ratePerSecond,
+                                   final Supplier<Object> argSupplier) {
+        if (!(ratePerSecond > 0.0)) {
+            throw new IllegalArgumentException("ratePerSecond must be positive: " + ratePerSecond);
+        }
+        final long periodNanos = Math.max(1L, (long) (1e9 / ratePerSecond));
+        floodThreads.add(startThread("StandIn-Flood-" + callback, () -> {
+            long deadline = System.nanoTime();
+            while (!isClosed && !Thread.currentThread().isInterrupted()) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining > 0L) {
+                    LockSupport.parkNanos(remaining);
+                    continue;
+                }
+                final JSONObject jsonObject = new JSONObject();
+                jsonObject.put("callback", callback);
+                jsonObject.put("arg1", argSupplier.get());
+                final byte[] bytes = encode(jsonObject);
+                for (final Connection connection : connections) {
+                    if (connection.isCB && connection.callbacks.contains(callback) && connection.write(bytes)) {
+                        callbackCount.incrementAndGet();
+                    }
+                }
+                deadline += periodNanos;
+            }
+        }));
+    }
+
+    /**
+     * Остановить потоки коллбэков.
+     */
+    public void stopCallbackFloods() {
+        for (final Thread thread : floodThreads) {
+            thread.interrupt();
+        }
+        floodThreads.clear();
+    }
+
+    @Override
+    public void close() {
+        isClosed = true;
+        stopCallbackFloods();
+        try {
+            serverSocketMN.close();
+        } catch (final IOException ignored) {
+        }
+        try {
+            serverSocketCB.close();
+        } catch (final IOException ignored) {
+        }
+        for (final Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    private static Thread startThread(final String name, final Runnable runnable) {
+        final Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private void accept(final ServerSocket serverSocket, final boolean isCB) {
+        while (!isClosed) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+            } catch (final IOException e) {
+                continue;
+            }
+            final Connection connection;
+            try {
+                connection = new Connection(socket, isCB);
+            } catch (final IOException e) {
+                try {
+                    socket.close();
+                } catch (final IOException ignored) {
+                }
+                continue;
+            }
+            connections.add(connection);
+            startThread("StandIn-" + (isCB ? "CB" : "MN") + "-" + socket.getPort(), connection::serve);
+        }
+    }
+
+    private byte[] encode(final JSONObject jsonObject) {
+        return (jsonObject.toJSONString() + "\n").getBytes(charset);
+    }
+
+    @SuppressWarnings("unchecked")
+    private JSONObject respond(final JSONObject request) {
+        final Object callback = request.get("callback");
+        if (callback != null) {
+            final JSONObject response = new JSONObject();
+            response.put("status", true);
+            return response;
+        }
+        final Object key = request.containsKey("chunk") ? request.get("chunk") : request.get("fname");
+        final Object result = key == null ? null : results.get(key.toString());
+        if (result != null) {
+            return resultResponse(result == NULL ? null : result);
+        }
+        final Responder responder = this.responder;
+        if (responder != null) {
+            final JSONObject response = responder.respond(request);
+            if (response != null) {
+                return response;
+            }
+        }
+        if (request.get("chunk") instanceof String chunk && chunk.endsWith("return true")) {
+            return resultResponse(true);
+        }
+        return resultResponse(null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONObject resultResponse(final Object result) {
+        final JSONObject response = new JSONObject();
+        response.put("result", result);
+        return response;
+    }
+
+    private void delay() {
+        long nanos = responseLatency.toNanos();
+        final long jitterNanos = responseJitter.toNanos();
+        if (jitterNanos > 0L) {
+            nanos += ThreadLocalRandom.current().nextLong(jitterNanos + 1L);
+        }
+        if (nanos > 0L) {
+            final long deadline = System.nanoTime() + nanos;
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0L) {
+                LockSupport.parkNanos(remaining);
+            }
+        }
+    }
+
+    /**
+     * Подключение клиента.
+     */
+    private final class Connection {
+        final Socket socket;
+        final boolean isCB;
+        final BufferedReader reader;
+        final OutputStream outputStream;
+        final ReentrantLock writeLock = new ReentrantLock();
+        final Set<String> callbacks = ConcurrentHashMap.newKeySet();
+        final JSONParser parser = new JSONParser();
+
+        Connection(final Socket socket, final boolean isCB) throws IOException {
+            this.socket = socket;
+            this.isCB = isCB;
+            reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), charset));
+            outputStream = socket.getOutputStream();
+        }
+
+        @SuppressWarnings("unchecked")
+        void serve() {
+            try {
+                String line;
+                while (!isClosed && (line = reader.readLine()) != null) {
+                    if (line.equals("ping")) {
+                        write(encodeLine("pong"));
+                        continue;
+                    }
+                    if (line.equals("quit")) {
+                        break;
+                    }
+                    final JSONObject request;
+                    try {
+                        request = (JSONObject) parser.parse(line);
+                    } catch (final ParseException | ClassCastException e) {
+                        continue;
+                    }
+                    requestCount.incrementAndGet();
+                    if (request.get("callback") instanceof String callback) {
+                        callbacks.add(callback);
+                    }
+                    delay();
+                    final JSONObject response = respond(request);
+                    response.put("id", request.get("id"));
+                    if (request.containsKey("clientId")) {
+                        response.put("clientId", request.get("clientId"));
+                    }
+                    if (!write(encode(response))) {
+                        break;
+                    }
+                }
+            } catch (final IOException ignored) {
+            } finally {
+                close();
+            }
+        }
+
+        private byte[] encodeLine(final String s) {
+            return (s + "\n").getBytes(charset);
+        }
+
+        boolean write(final byte[] bytes) {
+            writeLock.lock();
+            try {
+                outputStream.write(bytes);
+                outputStream.flush();
+                return true;
+            } catch (final IOException e) {
+                return false;
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        void close() {
+            connections.remove(this);
+            try {
+                socket.close();
+            } catch (final IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Запустить сервер отдельно, например, для тестирования приложения на машине без терминала.
+     * Аргументы: порт MN-сервера, порт CB-сервера, задержка ответа в микросекундах,
+     * частота коллбэков OnAllTrade в секунду.
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        final int portMN = args.length > 0 ? Integer.parseInt(args[0]) : 10001;
+        final int portCB = args.length > 1 ? Integer.parseInt(args[1]) : 10002;
+        try (final QuikStandInServer server = new QuikStandInServer(portMN, portCB)) {
+            if (args.length > 2) {
+                server.responseLatency = Duration.of(Long.parseLong(args[2]), ChronoUnit.MICROS);
+            }
+            if (args.length > 3) {
+                server.startCallbackFlood("OnAllTrade", Double.parseDouble(args[3]), new TradeSupplier());
+            }
+            //noinspection InfiniteLoopStatement
+            while (true) {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(10L));
+                System.out.println("requests: " + server.getRequestCount() + ", callbacks: " + server.getCallbackCount());
+            }
+        }
+    }
+
+    /**
+     * Генератор обезличенных сделок для коллбэка OnAllTrade.
+     */
+    public static class TradeSupplier implements Supplier<Object> {
+        private long tradeNum = 0L;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object get() {
+            final JSONObject trade = new JSONObject();
+            tradeNum++;
+            trade.put("class_code", "TQBR");
+            trade.put("sec_code", "SBER");
+            trade.put("trade_num", tradeNum);
+            trade.put("price", 300.0 + ThreadLocalRandom.current().nextInt(100) / 100.0);
+            trade.put("qty", 1L + ThreadLocalRandom.current().nextInt(10));
+            trade.put("flags", 1L);
+            return trade;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.simpleutils.quik.test;
+
+import com.simpleutils.LatencyHistogram;
+import com.simpleutils.logs.AbstractLogger;
+import com.simpleutils.logs.SimpleLogger;
+import com.simpleutils.quik.AbstractQuikListener;
+import com.simpleutils.quik.QuikConnect;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.simpleutils.quik.test.Checks.check;
+import static com.simpleutils.quik.test.Checks.checkEquals;
+
+/**
+ * Самопроверяющийся тест таблицы ожидающих ответа запросов {@link QuikConnect}
+ * с сервером {@link QuikStandInServer} вместо терминала.
+ * <p>
+ * Проверяется, что каждый из множества одновременно отправленных запросов получает свой ответ,
+ * в том числе когда ожидающих запросов больше ёмкости таблицы, а также случай таймаута с последующим
+ * поздним ответом: поздний ответ не должен завершить другой запрос, а счётчик ожидающих ответа
+ * запросов должен вернуться к нулю. Время получения позднего ответа не должно попасть в гистограммы
+ * {@link QuikConnect#getLatencySnapshots(boolean)}. Проверки выполняются во всех режимах чтения,
+ * в том числе с виртуальными потоками. При ошибке выбрасывается {@link AssertionError}.
+ */
+class ResponseTableTest {
+
+    private static final AbstractLogger LOGGER = new SimpleLogger();
+    /**
+     * Количество одновременно отправляемых запросов; больше ёмкости таблицы.
+     */
+    private static final int REQUEST_COUNT = 10_000;
+
+    /**
+     * Режимы чтения: потоки чтения в виде платформенных или виртуальных потоков, селектор
+     * и выделенные потоки чтения MN- и CB-соединений.
+     */
+    private static final String[] MODES = {"blocking", "selector", "dedicated", "virtual", "virtual-dedicated"};
+
+    public static void main(final String[] args) throws Exception {
+        for (final String mode : MODES) {
+            run(mode);
+            LOGGER.info(mode + ": OK");
+        }
+        LOGGER.info("OK");
+    }
+
+    private static void run(final String mode) throws Exception {
+        try (final QuikStandInServer server = new QuikStandInServer(0, 0)) {
+            server.responder = ResponseTableTest::respond;
+            final OpenListener listener = new OpenListener();
+            final QuikConnect quikConnect = new QuikConnect("127.0.0.1", server.getPortMN(), server.getPortCB(),
+                    ResponseTableTest.class.getSimpleName(), listener);
+            quikConnect.useSelector = mode.equals("selector");
+            quikConnect.useDedicatedReaders = mode.endsWith("dedicated");
+            quikConnect.useVirtualThreads = mode.startsWith("virtual");
+            listener.setQuikConnect(quikConnect);
+            quikConnect.start();
+            try {
+                listener.awaitOpen();
+                checkCorrelation(quikConnect);
+                checkLateAnswer(quikConnect);
+            } finally {
+                quikConnect.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Функция {@code echo} возвращает свой аргумент, функция {@code slow} отвечает через
+     * указанное количество миллисекунд, задерживая и следующие ответы соединения.
+     */
+    @SuppressWarnings("unchecked")
+    private static JSONObject respond(final JSONObject request) {
+        final Object fname = request.get("fname");
+        if (!"echo".equals(fname) && !"slow".equals(fname)) {
+            return null;
+        }
+        final Object arg = ((JSONArray) request.get("args")).get(0);
+        if ("slow".equals(fname)) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(((Number) arg).longValue()));
+        }
+        final JSONObject response = new JSONObject();
+        response.put("result", arg);
+        return response;
+    }
+
+    private static void checkCorrelation(final QuikConnect quikConnect) throws Exception {
+        final List<CompletableFuture<JSONObject>> futures = new ArrayList<>(REQUEST_COUNT);
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            futures.add(quikConnect.submitMN("echo", List.of(i), 30, TimeUnit.SECONDS));
+        }
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            checkEquals((long) i, futures.get(i).get().get("result"), "response to request " + i);
+        }
+        checkEquals(0L, quikConnect.getMetrics().get("inFlightRequests"), "in-flight requests after correlation");
+        checkEquals(0L, quikConnect.getMetrics().get("timeouts"), "timeouts after correlation");
+    }
+
+    /**
+     * Запрос завершается по таймауту, а ответ на него приходит раньше ответа на следующий запрос.
+     */
+    private static void checkLateAnswer(final QuikConnect quikConnect) throws Exception {
+        final CompletableFuture<JSONObject> slow = quikConnect.submitMN("slow", List.of(300), 50, TimeUnit.MILLISECONDS);
+        try {
+            slow.get();
+            throw new AssertionError("slow request completed before timeout");
+        } catch (final ExecutionException e) {
+            check(e.getCause() instanceof TimeoutException, "slow request failed with " + e.getCause());
+        }
+        checkEquals(1L, quikConnect.getMetrics().get("timeouts"), "timeouts after slow request");
+        checkEquals(0L, quikConnect.getMetrics().get("inFlightRequests"), "in-flight requests after timeout");
+
+        final CompletableFuture<JSONObject> next = quikConnect.submitMN("echo", List.of(-1), 5, TimeUnit.SECONDS);
+        checkEquals(-1L, next.get().get("result"), "response to the request after the late answer");
+        check(slow.isCompletedExceptionally(), "late answer completed the timed out request");
+        checkEquals(1L, quikConnect.getMetrics().get("timeouts"), "timeouts after late answer");
+        checkEquals(0L, quikConnect.getMetrics().get("inFlightRequests"), "in-flight requests after late answer");
+
+        // Поток чтения обработал поздний ответ раньше ответа на следующий запрос, поэтому его запись
+        // в гистограмму была бы уже видна. Время ответа на следующий запрос может быть ещё не записано.
+        final Map<String, LatencyHistogram.Snapshot> snapshots = quikConnect.getLatencySnapshots(false);
+        final LatencyHistogram.Snapshot slowSnapshot = snapshots.get("MN/slow");
+        check(slowSnapshot == null || slowSnapshot.getCount() == 0L, "late answer is recorded: " + slowSnapshot);
+        final LatencyHistogram.Snapshot echoSnapshot = snapshots.get("MN/echo");
+        check(echoSnapshot != null && echoSnapshot.getCount() >= REQUEST_COUNT, "echo responses are not recorded: " + echoSnapshot);
+    }
+
+    /**
+     * Слушатель, ожидающий открытия подключения.
+     */
+    private static class OpenListener extends AbstractQuikListener {
+        private volatile boolean isOpen = false;
+
+        OpenListener() {
+            executionThread = Thread.currentThread();
+        }
+
+        void awaitOpen() throws InterruptedException {
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+            while (!isOpen) {
+                check(System.nanoTime() - deadline < 0L, "connection is not open");
+                //noinspection BusyWait
+                Thread.sleep(10L);
+            }
+        }
+
+        @Override
+        public void onOpen() {
+            isOpen = true;
+        }
+
+        @Override
+        public void onClose() {
+            isOpen = false;
+        }
+
+        @Override
+        public void onCallback(final JSONObject jsonObject) {
+        }
+
+        @Override
+        public void onExceptionMN(final Exception exception) {
+            LOGGER.log(AbstractLogger.ERROR, "onExceptionMN", exception);
+        }
+
+        @Override
+        public void onExceptionCB(final Exception exception) {
+            LOGGER.log(AbstractLogger.ERROR, "onExceptionCB", exception);
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.simpleutils.quik.test;
+
+import com.simpleutils.IdleStrategy;
+import com.simpleutils.SpscRing;
+import com.simpleutils.logs.AbstractLogger;
+import com.simpleutils.logs.SimpleLogger;
+import com.simpleutils.quik.AbstractQuikListener;
+import com.simpleutils.quik.OverflowPolicy;
+import org.json.simple.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+import static com.simpleutils.quik.test.Checks.awaitTermination;
+import static com.simpleutils.quik.test.Checks.awaitWaiting;
+import static com.simpleutils.quik.test.Checks.check;
+import static com.simpleutils.quik.test.Checks.checkEquals;
+import static com.simpleutils.quik.test.Checks.checkThrows;
+
+/**
+ * Самопроверяющийся тест кольцевого буфера {@link SpscRing} и передачи коллбэков через него
+ * в {@link AbstractQuikListener}.
+ * <p>
+ * Проверяются заполнение и освобождение ячеек, порядок передачи между двумя потоками, отмена
+ * ожидания места по прерыванию и по условию, а также то, что поток чтения не ждёт места
+ * в заполненном буфере слушателя после остановки потока исполнения, и то, что коллбэки
+ * в виде JSON-объектов без обработчика {@code callbackDispatcher()} проходят через очередь.
+ * При ошибке выбрасывается {@link AssertionError}.
+ */
+class SpscRingTest {
+
+    private static final AbstractLogger LOGGER = new SimpleLogger();
+    private static final int TRANSFER_COUNT = 1_000_000;
+
+    public static void main(final String[] args) throws Exception {
+        checkSingleThread();
+        checkDrain();
+        checkAbortedClaim();
+        checkTransfer();
+        checkListenerRing();
+        checkListenerWithoutDispatcher();
+        LOGGER.info("OK");
+    }
+
+    /**
+     * Изменяемая ячейка буфера.
+     */
+    private static class Slot {
+        long value;
+    }
+
+    private static void checkSingleThread() {
+        final SpscRing<Slot> ring = new SpscRing<>(5, Slot::new);
+        checkEquals(8L, ring.capacity(), "capacity rounded up to a power of two");
+        check(ring.peek() == null, "peek of an empty ring");
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < ring.capacity(); i++) {
+                final Slot slot = ring.tryClaim();
+                check(slot != null, "slot " + i + " of round " + round + " is not claimed");
+                slot.value = round * 100L + i;
+                ring.publish();
+            }
+            check(ring.tryClaim() == null, "claim from a full ring");
+            checkEquals(8L, ring.size(), "size of a full ring");
+            for (int i = 0; i < ring.capacity(); i++) {
+                checkEquals(round * 100L + i, ring.peek().value, "value " + i + " of round " + round);
+                ring.release();
+            }
+            check(ring.peek() == null, "peek of a released ring");
+            checkEquals(0L, ring.size(), "size of a released ring");
+        }
+    }
+
+    private static void checkDrain() {
+        final SpscRing<Slot> ring = new SpscRing<>(4, Slot::new);
+        for (int i = 0; i < 4; i++) {
+            ring.tryClaim().value = i;
+            ring.publish();
+        }
+        final List<Long> values = new ArrayList<>();
+        checkEquals(3L, ring.drain(slot -> values.add(slot.value), 3), "drain with a limit");
+        checkEquals(List.of(0L, 1L, 2L), values, "drained values");
+        checkThrows(IllegalStateException.class, () -> ring.drain(slot -> {
+            throw new IllegalStateException();
+        }, 10), "exception from the handler");
+        checkEquals(0L, ring.size(), "slot is released when the handler throws");
+        checkEquals(0L, ring.drain(slot -> values.add(slot.value), 10), "drain of an empty ring");
+    }
+
+    private static void checkAbortedClaim() throws InterruptedException {
+        final SpscRing<Slot> ring = new SpscRing<>(2, Slot::new);
+        ring.tryClaim();
+        ring.publish();
+        ring.tryClaim();
+        ring.publish();
+        final AtomicBoolean isAborted = new AtomicBoolean();
+        final AtomicBoolean isNull = new AtomicBoolean();
+        final Thread aborted = Thread.ofPlatform().start(() ->
+                isNull.set(ring.claim(IdleStrategy.parking(1_000_000L), isAborted::get) == null));
+        awaitWaiting(aborted);
+        isAborted.set(true);
+        awaitTermination(aborted, "claim after the abort condition");
+        check(isNull.get(), "aborted claim returned a slot");
+
+        final AtomicBoolean isInterrupted = new AtomicBoolean();
+        isNull.set(false);
+        final Thread interrupted = Thread.ofPlatform().start(() -> {
+            isNull.set(ring.claim(IdleStrategy.parking(1_000_000L)) == null);
+            isInterrupted.set(Thread.currentThread().isInterrupted());
+        });
+        awaitWaiting(interrupted);
+        interrupted.interrupt();
+        awaitTermination(interrupted, "claim after interrupt");
+        check(isNull.get(), "interrupted claim returned a slot");
+        check(isInterrupted.get(), "interrupt flag of the producer is lost");
+
+        final Thread waiting = Thread.ofPlatform().start(() -> {
+            ring.claim(IdleStrategy.parking(1_000_000L)).value = 42L;
+            ring.publish();
+        });
+        awaitWaiting(waiting);
+        ring.release();
+        awaitTermination(waiting, "claim after release");
+        ring.release();
+        checkEquals(42L, ring.peek().value, "value published after waiting");
+    }
+
+    private static void checkTransfer() throws InterruptedException {
+        final SpscRing<Slot> ring = new SpscRing<>(1024, Slot::new);
+        final Thread producer = Thread.ofPlatform().start(() -> {
+            final IdleStrategy idleStrategy = IdleStrategy.spinThenYield(100);
+            for (long i = 0; i < TRANSFER_COUNT; i++) {
+                ring.claim(idleStrategy).value = i;
+                ring.publish();
+            }
+        });
+        final long[] expected = {0L};
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30L);
+        while (expected[0] < TRANSFER_COUNT) {
+            final int n = ring.drain(slot -> {
+                if (slot.value != expected[0]) {
+                    throw new AssertionError("transfer: expected " + expected[0] + ", actual " + slot.value);
+                }
+                expected[0]++;
+            }, 256);
+            if (n == 0) {
+                check(System.nanoTime() - deadline < 0L, "transfer stalled at " + expected[0]);
+                Thread.onSpinWait();
+            }
+        }
+        producer.join();
+        check(ring.peek() == null, "ring is empty after transfer");
+    }
+
+    private static void checkListenerRing() throws InterruptedException {
+        final RingListener listener = new RingListener(4);
+        listener.setOverflowPolicy("OnAllTrade", OverflowPolicy.DROP_OLDEST);
+        for (int i = 0; i < 4; i++) {
+            check(listener.offer("OnTrade", i), "callback " + i + " did not pass through the ring");
+        }
+        check(listener.offer("OnAllTrade", 4), "DROP_OLDEST callback is not handled by the ring");
+        checkEquals(1L, listener.getDroppedCount(), "dropped DROP_OLDEST callbacks");
+        checkEquals(4L, listener.getQueueDepth(), "depth of a full ring");
+
+        final Thread producer = Thread.ofPlatform().start(() -> listener.offer("OnTrade", 5));
+        awaitWaiting(producer);
+        checkEquals(1L, listener.drain(1), "drained callbacks");
+        awaitTermination(producer, "producer after drain");
+
+        final Thread blocked = Thread.ofPlatform().start(() -> listener.offer("OnTrade", 6));
+        awaitWaiting(blocked);
+        listener.stopExecution();
+        awaitTermination(blocked, "producer after stopExecution");
+        checkEquals(2L, listener.getDroppedCount(), "dropped callbacks after stopExecution");
+        listener.offer("OnTrade", 7);
+        checkEquals(3L, listener.getDroppedCount(), "dropped callbacks after stopped offer");
+
+        listener.submit(() -> listener.executed.add(-1));
+        listener.drain(Integer.MAX_VALUE);
+        checkEquals(List.of(0, -1, 1, 2, 3, 5), listener.executed, "executed callbacks");
+    }
+
+    private static void checkListenerWithoutDispatcher() {
+        final PlainListener listener = new PlainListener();
+        listener.useCallbackRing = true;
+        check(!listener.offer("OnTrade"), "JSON callback passed through the ring without a dispatcher");
+        checkEquals(0L, listener.getQueueDepth(), "depth after a rejected offer");
+    }
+
+    /**
+     * Слушатель с кольцевым буфером, исполняемый потоком теста.
+     */
+    private static class RingListener extends PlainListener {
+        private final List<Integer> executed = new ArrayList<>();
+        private final BiConsumer<String, JSONObject> dispatcher =
+                (callback, jsonObject) -> executed.add(((Number) jsonObject.get("n")).intValue());
+
+        RingListener(final int capacity) {
+            callbackQueueCapacity = capacity;
+            useCallbackRing = true;
+        }
+
+        @SuppressWarnings("unchecked")
+        boolean offer(final String callback, final int n) {
+            final JSONObject jsonObject = new JSONObject();
+            jsonObject.put("n", n);
+            return offerCallback(callback, jsonObject);
+        }
+
+        @Override
+        protected BiConsumer<String, JSONObject> callbackDispatcher() {
+            return dispatcher;
+        }
+    }
+
+    /**
+     * Слушатель без обработчика коллбэков из кольцевого буфера.
+     */
+    private static class PlainListener extends AbstractQuikListener {
+
+        PlainListener() {
+            executionThread = Thread.currentThread();
+        }
+
+        boolean offer(final String callback) {
+            return offerCallback(callback, new JSONObject());
+        }
+
+        @Override
+        public void onOpen() {
+        }
+
+        @Override
+        public void onClose() {
+        }
+
+        @Override
+        public void onCallback(final JSONObject jsonObject) {
+        }
+
+        @Override
+        public void onExceptionMN(final Exception exception) {
+        }
+
+        @Override
+        public void onExceptionCB(final Exception exception) {
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.simpleutils.quik.test;
+
+import com.simpleutils.logs.AbstractLogger;
+import com.simpleutils.logs.SimpleLogger;
+import com.simpleutils.quik.JSONSimpleDecoder;
+import com.simpleutils.quik.QuikMessage;
+import com.simpleutils.quik.StreamingDecoder;
+import com.simpleutils.socket.SocketConnector;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Selector;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.simpleutils.quik.test.Checks.check;
+import static com.simpleutils.quik.test.Checks.checkEquals;
+import static com.simpleutils.quik.test.Checks.checkThrows;
+
+/**
+ * Самопроверяющийся тест {@link StreamingDecoder}.
+ * <p>
+ * Значения, прочитанные потоковым декодером, сравниваются со значениями {@link JSONSimpleDecoder}
+ * для строк с escape-последовательностями, текстом в CP1251, числами разных форматов и вложенными
+ * объектами. Кроме того, строки передаются через сокет частями, разрезанными внутри
+ * escape-последовательностей, символов и перевода строки, и разбираются прямо в буфере
+ * {@link SocketConnector} в режимах потока и канала. При ошибке выбрасывается {@link AssertionError}.
+ */
+class StreamingDecoderTest {
+
+    private static final AbstractLogger LOGGER = new SimpleLogger();
+    private static final Charset CP1251 = Charset.forName("CP1251");
+    private static final String[] KEYS = {
+            "id", "clientId", "callback", "s", "key", "name", "ключ", "esc", "empty", "n", "t", "f",
+            "int", "neg", "dec", "exp", "big", "zero", "str", "strDec", "arr", "arg1", "missing",
+            "trade_num", "order_num", "max", "min", "over", "str19",
+    };
+    private static final String[] SAMPLES = {
+            "{\"id\":7,\"s\":\"a\\\"b\\\\c\\/d\\n\\t\\u0041\\u0416\",\"k\\u0065y\":\"v\"}",
+            "{\"callback\":\"OnTrade\",\"name\":\"Сбербанк ао\",\"ключ\":\"значение\",\"esc\":\"Мос\\\"биржа\\u0020ё\"}",
+            "{\"int\":123,\"neg\":-45,\"dec\":3.25,\"exp\":1.5e3,\"big\":1234567890123.4567891,\"zero\":-0.5,"
+            + "\"str\":\"42\",\"strDec\":\"101.5\",\"empty\":\"\"}",
+            "{\"t\":true,\"f\":false,\"n\":null,\"arr\":[1,\"x\",{\"a\":[]},[]],"
+            + "\"arg1\":{\"sec_code\":\"SBER\",\"price\":\"250.1\",\"qty\":10,\"datetime\":{\"year\":2024}}}",
+"{\"id\":2.5,\"trade_num\":1234567890123456789,\"order_num\":-1234567890123456789,"
+            + "\"max\":9223372036854775807,\"min\":-9223372036854775808,\"over\":\"9223372036854775808\","
+            + "\"str19\":\"9007199254740993123\"}",
+            "{\"id\":1e2}",
+            " \t{ \"id\" : 1 , \"clientId\" : \"test\" , \"s\" : \"\" }\r",
+            "{}",
+    };
+    private static final String[] MALFORMED = {
+            "{\"a\":}", "{\"a\":\"x", "{\"a\":1,}", "{\"a\":tru}", "{\"a\" 1}", "{\"a\":1} x", "{\"a\":[1,}", "{",
+    };
+
+    public static void main(final String[] args) throws Exception {
+        checkSamples(false);
+        checkSamples(true);
+        checkReuse();
+        checkMalformed();
+        checkSplitLines(false);
+        checkSplitLines(true);
+        LOGGER.info("OK");
+    }
+
+    /**
+     * Сравнить значения потокового декодера со значениями {@link JSONSimpleDecoder}.
+     * Строка размещается в середине буфера, чтобы проверить учёт начального смещения.
+     */
+    private static void checkSamples(final boolean isDirect) throws ParseException {
+        final StreamingDecoder decoder = new StreamingDecoder(CP1251);
+        final JSONSimpleDecoder oracle = new JSONSimpleDecoder(CP1251);
+        for (final String sample : SAMPLES) {
+            final byte[] bytes = sample.getBytes(CP1251);
+            final ByteBuffer buffer = isDirect ? ByteBuffer.allocateDirect(bytes.length + 20) : ByteBuffer.allocate(bytes.length + 20);
+            buffer.put(10, bytes);
+            final QuikMessage expected = oracle.decode(buffer, 10, 10 + bytes.length);
+            final QuikMessage actual = decoder.decode(buffer, 10, 10 + bytes.length);
+            checkMessage(expected, actual, sample);
+            checkEquals(new JSONParser().parse(sample), actual.toJSONObject(), "toJSONObject of " + sample);
+        }
+        final QuikMessage message = decode(decoder, SAMPLES[0]);
+        checkEquals("a\"b\\c/d\n\tAЖ", message.getString("s"), "escapes");
+        checkEquals("v", message.getString("key"), "escaped key");
+        checkEquals("Сбербанк ао", decode(decoder, SAMPLES[1]).getString("name"), "CP1251 string");
+        checkEquals("значение", decode(decoder, SAMPLES[1]).getString("ключ"), "CP1251 key");
+        checkEquals("Мос\"биржа ё", decode(decoder, SAMPLES[1]).getString("esc"), "CP1251 with escapes");
+        checkEquals(101L, decode(decoder, SAMPLES[2]).getLong("strDec", 0L), "numeric string to long");
+        checkEquals("SBER", decode(decoder, SAMPLES[3]).getObject("arg1").getString("sec_code"), "nested object");
+        checkEquals(2024L, decode(decoder, SAMPLES[3]).getObject("arg1").getObject("datetime").getLong("year", 0L),
+                "second level object");
+        final QuikMessage large = decode(decoder, SAMPLES[4]);
+        checkEquals(1234567890123456789L, large.getLong("trade_num", 0L), "19-digit integer");
+        checkEquals(-1234567890123456789L, large.getLong("order_num", 0L), "negative 19-digit integer");
+        checkEquals(Long.MIN_VALUE, large.getLong("min", 0L), "Long.MIN_VALUE");
+        checkEquals(9007199254740993123L, large.getLong("str19", 0L), "19-digit numeric string");
+        checkEquals(0L, large.id(), "non-integer id");
+    }
+
+    private static void checkMessage(final QuikMessage expected, final QuikMessage actual, final String sample) {
+        for (final String key : KEYS) {
+            final String where = key + " of " + sample;
+            checkEquals(expected.has(key), actual.has(key), "has " + where);
+            checkEquals(expected.getString(key), actual.getString(key), "getString " + where);
+            checkEquals(expected.getLong(key, -1L), actual.getLong(key, -1L), "getLong " + where);
+            checkEquals(expected.getDouble(key, -1.0), actual.getDouble(key, -1.0), "getDouble " + where);
+            checkEquals(expected.getBoolean(key, false), actual.getBoolean(key, false), "getBoolean " + where);
+            checkEquals(expected.getObject(key) == null, actual.getObject(key) == null, "getObject " + where);
+        }
+        checkEquals(expected.id(), actual.id(), "id of " + sample);
+        checkEquals(expected.callback(), actual.callback(), "callback of " + sample);
+    }
+
+    /**
+     * Представление переиспользуется, поэтому после разбора длинного сообщения короткое
+     * не должно видеть его узлов.
+     */
+    private static void checkReuse() throws ParseException {
+        final StreamingDecoder decoder = new StreamingDecoder(CP1251);
+        final StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < 1000; i++) {
+            sb.append("\"k").append(i).append("\":{\"v\":").append(i).append("},");
+        }
+        sb.append("\"last\":\"end\"}");
+        final QuikMessage large = decode(decoder, sb.toString());
+        checkEquals(999L, large.getObject("k999").getLong("v", -1L), "large message");
+        checkEquals("end", large.getString("last"), "large message tail");
+        final QuikMessage small = decode(decoder, "{\"v\":1}");
+        check(!small.has("k0") && !small.has("last"), "nodes of the previous message are visible");
+        checkEquals(1L, small.getLong("v", -1L), "small message after large");
+    }
+
+    private static void checkMalformed() throws ParseException {
+        final StreamingDecoder decoder = new StreamingDecoder(CP1251);
+        for (final String sample : MALFORMED) {
+            checkThrows(ParseException.class, () -> decode(decoder, sample), "malformed " + sample);
+        }
+        checkThrows(ClassCastException.class, () -> decode(decoder, "[1]"), "array at top level");
+        checkThrows(ClassCastException.class, () -> decode(decoder, "  "), "empty line");
+        checkEquals(1L, decode(decoder, "{\"a\":1}").getLong("a", 0L), "decoding after errors");
+    }
+
+    /**
+     * Передать строки через сокет частями и разобрать их в буфере {@link SocketConnector}.
+     *
+     * @param useChannel использовать ли неблокирующий канал с прямым буфером вместо потока
+     */
+    private static void checkSplitLines(final boolean useChannel) throws Exception {
+        final String escaped = "{\"id\":1,\"s\":\"a\\\"b\\u0416\",\"name\":\"Сбербанк\"}";
+        final String crlf = "{\"id\":2,\"name\":\"Газпром\"}";
+        final String third = "{\"id\":3}";
+        final String fourth = "{\"id\":4,\"name\":\"Лукойл\"}";
+        final StringBuilder sb = new StringBuilder("{\"id\":5,\"s\":\"");
+        while (sb.length() < 200_000) {
+            sb.append("Длинная строка \\\"с кавычками\\\" ");
+        }
+        final String large = sb.append("\"}").toString();
+
+        final List<byte[]> chunks = new ArrayList<>();
+        final byte[] first = (escaped + "\n").getBytes(CP1251);
+        final int escapeIndex = escaped.indexOf("\\u0416") + 3;
+        final int letterIndex = escaped.indexOf("Сбер") + 2;
+        chunks.add(slice(first, 0, 5));
+        chunks.add(slice(first, 5, escapeIndex));
+        chunks.add(slice(first, escapeIndex, letterIndex));
+        chunks.add(slice(first, letterIndex, first.length - 1));
+        chunks.add(slice(first, first.length - 1, first.length));
+        final byte[] second = (crlf + "\r\n").getBytes(CP1251);
+        chunks.add(slice(second, 0, second.length - 1));
+        chunks.add(slice(second, second.length - 1, second.length));
+        chunks.add((third + "\n" + fourth + "\r\n" + large + "\n").getBytes(CP1251));
+
+        try (final ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            final Thread writer = Thread.ofPlatform().daemon(true).start(() -> {
+                try (final Socket socket = serverSocket.accept()) {
+                    socket.setTcpNoDelay(true);
+                    final OutputStream outputStream = socket.getOutputStream();
+                    for (final byte[] chunk : chunks) {
+                        outputStream.write(chunk);
+                        outputStream.flush();
+                        Thread.sleep(20L);
+                    }
+                    Thread.sleep(1000L);
+                } catch (final IOException | InterruptedException ignored) {
+                }
+            });
+            final SocketConnector connector = new SocketConnector("127.0.0.1", serverSocket.getLocalPort());
+            try (final Selector selector = Selector.open()) {
+                if (useChannel) {
+                    connector.open(CP1251, selector);
+                } else {
+                    connector.open(CP1251);
+                }
+                final StreamingDecoder decoder = new StreamingDecoder(CP1251);
+                final JSONSimpleDecoder oracle = new JSONSimpleDecoder(CP1251);
+                final String[] expected = {escaped, crlf, third, fourth, large};
+                for (int i = 0; i < expected.length; i++) {
+                    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+                    while (!connector.receiveLine()) {
+                        check(System.nanoTime() - deadline < 0L, "line " + (i + 1) + " not received");
+                    }
+                    final ByteBuffer buffer = connector.lineBuffer();
+                    checkEquals(expected[i], connector.lineView().toString(), "line " + (i + 1));
+                    final QuikMessage expectedMessage = oracle.decode(buffer, connector.lineStart(), connector.lineEnd());
+                    final QuikMessage message = decoder.decode(buffer, connector.lineStart(), connector.lineEnd());
+                    checkMessage(expectedMessage, message, "line " + (i + 1));
+                    checkEquals(i + 1L, message.id(), "id of line " + (i + 1));
+                }
+            } finally {
+                connector.close();
+            }
+            writer.interrupt();
+        }
+    }
+
+    private static QuikMessage decode(final StreamingDecoder decoder, final String s) throws ParseException {
+        final byte[] bytes = s.getBytes(CP1251);
+        return decoder.decode(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    private static byte[] slice(final byte[] bytes, final int from, final int to) {
+        final byte[] slice = new byte[to - from];
+        System.arraycopy(bytes, from, slice, 0, slice.length);
+        return slice;
+    }
+}
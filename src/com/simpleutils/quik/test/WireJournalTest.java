@@ -0,0 +1,84 @@
+package com.simpleutils.quik.test;
+
+import com.simpleutils.logs.AbstractLogger;
+import com.simpleutils.logs.SimpleLogger;
+import com.simpleutils.quik.WireJournal;
+import com.simpleutils.quik.WireJournalReplay;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.simpleutils.quik.test.Checks.check;
+import static com.simpleutils.quik.test.Checks.checkEquals;
+
+/**
+ * Самопроверяющийся тест {@link WireJournal} и {@link WireJournalReplay}.
+ * <p>
+ * В журнал с маленькими сегментами записывается много строк, поэтому сегменты часто сменяются.
+ * Проверяется, что все строки воспроизводятся в исходном порядке и с неубывающими моментами получения,
+ * что после закрытия журнала не остаётся пустого заранее созданного сегмента, а файлы сегментов
+ * освобождены и могут быть удалены. При ошибке выбрасывается {@link AssertionError}.
+ */
+class WireJournalTest {
+
+    private static final AbstractLogger LOGGER = new SimpleLogger();
+    private static final int SEGMENT_SIZE = 4096;
+    private static final int RECORD_COUNT = 20_000;
+
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        final Path directory = Files.createTempDirectory("wire-journal-test");
+        final WireJournal journal = new WireJournal(directory, "test", SEGMENT_SIZE, ZoneId.systemDefault());
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(256);
+        for (int i = 0; i < RECORD_COUNT; i++) {
+            final byte[] line = line(i).getBytes(StandardCharsets.US_ASCII);
+            buffer.clear();
+            buffer.put(10, line);
+            journal.append(i % 2 == 0 ? WireJournal.SOURCE_MN : WireJournal.SOURCE_CB, buffer, 10, 10 + line.length);
+            if (i % 1000 == 0) {
+                // даёт фоновому потоку журнала время подготовить следующий сегмент
+                Thread.sleep(5L);
+            }
+        }
+        final byte[] tooLong = new byte[SEGMENT_SIZE];
+        journal.append(WireJournal.SOURCE_MN, ByteBuffer.wrap(tooLong), 0, tooLong.length);
+        journal.close();
+        final ByteBuffer afterClose = ByteBuffer.wrap(new byte[]{'x'});
+        journal.append(WireJournal.SOURCE_MN, afterClose, 0, 1);
+        checkEquals(RECORD_COUNT, journal.getRecordCount(), "recorded lines");
+        checkEquals(2L, journal.getDroppedCount(), "dropped lines");
+
+        final List<Path> segments = WireJournalReplay.segments(directory, "test");
+        check(segments.size() > 10, "segments did not rotate: " + segments.size());
+        try (final Stream<Path> files = Files.list(directory)) {
+            checkEquals((long) segments.size(), files.count(), "files besides replayable segments");
+        }
+        final long[] expected = {0L, Long.MIN_VALUE};
+        final long count = new WireJournalReplay(directory, "test").replay((epochNanos, source, replayBuffer, start, end) -> {
+            final int i = (int) expected[0];
+            final byte[] bytes = new byte[end - start];
+            replayBuffer.get(start, bytes);
+            checkEquals(line(i), new String(bytes, StandardCharsets.US_ASCII), "line " + i);
+            checkEquals(i % 2 == 0 ? WireJournal.SOURCE_MN : WireJournal.SOURCE_CB, source, "source of line " + i);
+            check(epochNanos >= expected[1], "time of line " + i + " went back");
+            expected[0]++;
+            expected[1] = epochNanos;
+        }, WireJournalReplay.MAX_SPEED);
+        checkEquals(RECORD_COUNT, count, "replayed lines");
+
+        for (final Path segment : segments) {
+            Files.delete(segment);
+        }
+        Files.delete(directory);
+        LOGGER.info("OK");
+    }
+
+    private static String line(final int i) {
+        return "{\"id\":" + i + ",\"result\":\"" + "x".repeat(i % 50) + "\"}";
+    }
+}
@@ -0,0 +1,239 @@
+package com.simpleutils.socket;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Быстрое декодирование однобайтовых кодировок (прежде всего CP1251) с помощью таблицы из 256 символов
+ * и кодирование символов с помощью обратной таблицы.
+ * <p>
+ * Строки, состоящие только из ASCII-символов, определяются проверкой по восемь байтов за раз
+ * и создаются без таблицы. Для чтения без копирования предусмотрено переиспользуемое
+ * представление байтов буфера в виде {@link CharSequence}, см. {@link View}.
+ */
+public final class SingleByteCharset {
+    /**
+     * Кодовая страница Windows-1251, используемая терминалом QUIK.
+     */
+    public static final SingleByteCharset CP1251 = new SingleByteCharset(Charset.forName("CP1251"));
+
+    private static final long NON_ASCII_MASK = 0x8080808080808080L;
+
+    private final Charset charset;
+    private final char[] chars = new char[256];
+    /**
+     * Обратная таблица: байт для каждого символа; непредставимые символы кодируются как {@code '?'}.
+     */
+    private final byte[] bytes = new byte[Character.MAX_VALUE + 1];
+
+    private SingleByteCharset(final Charset charset) {
+        this.charset = charset;
+        final byte[] bytes = new byte[256];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        new String(bytes, charset).getChars(0, chars.length, chars, 0);
+        Arrays.fill(this.bytes, (byte) '?');
+        for (int i = chars.length - 1; i >= 0; i--) {
+            if (chars[i] != '\uFFFD') {
+                this.bytes[chars[i]] = (byte) i;
+            }
+        }
+    }
+
+    /**
+     * @param charset кодировка
+     * @return табличный декодер кодировки или {@code null}, если кодировка не является
+     * однобайтовой и совместимой с ASCII
+     */
+    public static SingleByteCharset of(final Charset charset) {
+        if (charset.equals(CP1251.charset)) {
+            return CP1251;
+        }
+        if (!charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1.0f) {
+            return null;
+        }
+        final SingleByteCharset singleByteCharset = new SingleByteCharset(charset);
+        for (int i = 0; i < 128; i++) {
+            if (singleByteCharset.chars[i] != i) {
+                return null;
+            }
+        }
+        return singleByteCharset;
+    }
+
+    public Charset charset() {
+        return charset;
+    }
+
+    /**
+     * @param b байт
+     * @return символ, соответствующий байту
+     */
+    public char decode(final byte b) {
+        return chars[b & 0xFF];
+    }
+
+    /**
+     * @param c символ
+     * @return байт, соответствующий символу, или {@code '?'}, если символ непредставим в кодировке
+     */
+    public byte encode(final char c) {
+        return bytes[c];
+    }
+
+    /**
+     * Декодировать байты буфера в указанных границах. Позиция буфера не изменяется.
+     *
+     * @param buffer буфер (в том числе прямой)
+     * @param start  индекс первого байта
+     * @param end    индекс, следующий за последним байтом
+     * @return строка
+     */
+    public String decode(final ByteBuffer buffer, final int start, final int end) {
+        final int length = end - start;
+        if (buffer.hasArray()) {
+            final byte[] array = buffer.array();
+            final int offset = buffer.arrayOffset() + start;
+            if (isAscii(buffer, start, end)) {
+                return new String(array, offset, length, StandardCharsets.ISO_8859_1);
+            }
+            final char[] cs = new char[length];
+            for (int i = 0; i < length; i++) {
+                cs[i] = chars[array[offset + i] & 0xFF];
+            }
+            return new String(cs);
+        }
+        if (isAscii(buffer, start, end)) {
+            final byte[] bytes = new byte[length];
+            buffer.get(start, bytes);
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+        final char[] cs = new char[length];
+        for (int i = 0; i < length; i++) {
+            cs[i] = chars[buffer.get(start + i) & 0xFF];
+        }
+        return new String(cs);
+    }
+
+    /**
+     * Декодировать байты буфера в указанных границах и добавить символы к построителю строк.
+     *
+     * @param sb     построитель строк
+     * @param buffer буфер
+     * @param start  индекс первого байта
+     * @param end    индекс, следующий за последним байтом
+     */
+    public void appendTo(final StringBuilder sb, final ByteBuffer buffer, final int start, final int end) {
+        sb.ensureCapacity(sb.length() + end - start);
+        for (int i = start; i < end; i++) {
+            sb.append(chars[buffer.get(i) & 0xFF]);
+        }
+    }
+
+    /**
+     * Проверить, что байты буфера в указанных границах являются ASCII-символами.
+     *
+     * @param buffer буфер
+     * @param start  индекс первого байта
+     * @param end    индекс, следующий за последним байтом
+     * @return {@code true}, если все байты меньше 128
+     */
+    public static boolean isAscii(final ByteBuffer buffer, final int start, final int end) {
+        int i = start;
+        for (; i + Long.BYTES <= end; i += Long.BYTES) {
+            if ((buffer.getLong(i) & NON_ASCII_MASK) != 0L) {
+                return false;
+            }
+        }
+        for (; i < end; i++) {
+            if (buffer.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return новое переиспользуемое представление байтов в виде последовательности символов
+     */
+    public View newView() {
+        return new View();
+    }
+
+    /**
+     * Представление байтов буфера в виде последовательности символов без копирования.
+     * Символы декодируются при обращении; представление действительно, пока байты буфера
+     * в указанных границах не изменены.
+     */
+    public final class View implements CharSequence {
+        private ByteBuffer buffer = null;
+        private int start = 0;
+        private int end = 0;
+
+        private View() {
+        }
+
+        /**
+         * Направить представление на байты буфера в указанных границах.
+         *
+         * @param buffer буфер
+         * @param start  индекс первого байта
+         * @param end    индекс, следующий за последним байтом
+         * @return это представление
+         */
+        public View wrap(final ByteBuffer buffer, final int start, final int end) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            if (index < 0 || index >= end - start) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return chars[buffer.get(start + index) & 0xFF];
+        }
+
+        @Override
+        public CharSequence subSequence(final int from, final int to) {
+            if (from < 0 || to > end - start || from > to) {
+                throw new IndexOutOfBoundsException("[" + from + ", " + to + ")");
+            }
+            return new View().wrap(buffer, start + from, start + to);
+        }
+
+        /**
+         * Сравнить представление со строкой без декодирования в новую строку.
+         *
+         * @param s строка
+         * @return {@code true}, если символы совпадают
+         */
+        public boolean contentEquals(final CharSequence s) {
+            final int length = end - start;
+            if (s.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (chars[buffer.get(start + i) & 0xFF] != s.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return buffer == null ? "" : decode(buffer, start, end);
+        }
+    }
+}
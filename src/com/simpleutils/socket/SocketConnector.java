@@ -1,22 +1,68 @@
 package com.simpleutils.socket;
 
 import java.io.*;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.Charset;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Подключение к серверу через сокет.
  * Предполагается, что обмен информацией осуществляется с помощью строковых сообщений.
+ * <p>
+ * Поддерживаются два режима работы:<br>
+ * 1) блокирующий сокет с таймаутом чтения 1 мс, см. {@link #open(Charset)};<br>
+ * 2) неблокирующий канал, зарегистрированный в селекторе, см. {@link #open(Charset, Selector)}.
+ * <p>
+ * В обоих режимах входящие строки выделяются непосредственно в байтовом буфере чтения
+ * (в режиме канала буфер прямой, что избавляет от копирования при чтении).
+ * Байты очередной строки доступны после {@link #receiveLine()} через {@link #lineBuffer()},
+ * {@link #lineStart()} и {@link #lineEnd()} до следующего вызова методов получения,
+ * а для однобайтовых кодировок также в виде последовательности символов {@link #lineView()}.
  */
 public class SocketConnector implements AutoCloseable {
+    /**
+     * Начальный размер буфера чтения.
+     */
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
 
     private final String host;
     private final int port;
     private Socket socket = null;
-    private BufferedReader reader = null;
+    private InputStream inputStream = null;
+    private OutputStream outputStream = null;
     private BufferedWriter writer = null;
 
+    private Charset charset = null;
+    /**
+     * Табличный декодер кодировки или {@code null}, если кодировка не однобайтовая.
+     */
+    private SingleByteCharset singleByteCharset = null;
+    /**
+     * Представление последней полученной строки.
+     */
+    private SingleByteCharset.View lineView = null;
+    private SocketChannel channel = null;
+    /**
+     * Буфер чтения в режиме чтения: непрочитанные данные находятся между position и limit.
+     */
+    private ByteBuffer readBuffer = null;
+    /**
+     * Позиция в буфере чтения, с которой продолжается поиск символа перевода строки.
+     */
+    private int scanPosition = 0;
+    /**
+     * Границы последней полученной строки в буфере чтения.
+     */
+    private int lineStart = 0;
+    private int lineEnd = 0;
+
     /**
      * Конструктор.
      *
@@ -29,21 +75,61 @@ public class SocketConnector implements AutoCloseable {
     }
 
     public void open(final Charset charset) throws IOException {
+        setCharset(charset);
         socket = new Socket(host, port);
         socket.setTcpNoDelay(true);
         socket.setSoTimeout(1);
-        reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), charset));
-        writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), charset));
+        inputStream = socket.getInputStream();
+        outputStream = socket.getOutputStream();
+        writer = new BufferedWriter(new OutputStreamWriter(outputStream, charset));
+        initReadBuffer(false);
+    }
+
+    /**
+     * Открыть неблокирующий канал и зарегистрировать его в селекторе на чтение.
+     * Вложением ключа регистрации является этот объект.
+     *
+     * @param charset  кодовая страница
+     * @param selector селектор
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    public void open(final Charset charset, final Selector selector) throws IOException {
+        setCharset(charset);
+        channel = SocketChannel.open();
+        try {
+            channel.connect(new InetSocketAddress(host, port));
+            channel.socket().setTcpNoDelay(true);
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ, this);
+        } catch (final IOException e) {
+            close();
+            throw e;
+        }
+        initReadBuffer(true);
+    }
+
+    private void setCharset(final Charset charset) {
+        this.charset = charset;
+        singleByteCharset = SingleByteCharset.of(charset);
+        lineView = singleByteCharset == null ? null : singleByteCharset.newView();
+    }
+
+    private void initReadBuffer(final boolean isDirect) {
+        readBuffer = isDirect ? ByteBuffer.allocateDirect(READ_BUFFER_SIZE) : ByteBuffer.allocate(READ_BUFFER_SIZE);
+        readBuffer.flip();
+        scanPosition = 0;
+        lineStart = 0;
+        lineEnd = 0;
     }
 
     @Override
     public void close() {
-        if (reader != null) {
+        if (inputStream != null) {
             try {
-                reader.close();
+                inputStream.close();
             } catch (final IOException ignored) {
             }
-            reader = null;
+            inputStream = null;
         }
         if (writer != null) {
             try {
@@ -51,6 +137,7 @@ public class SocketConnector implements AutoCloseable {
             } catch (final IOException ignored) {
             }
             writer = null;
+            outputStream = null;
         }
         if (socket != null) {
             try {
@@ -59,11 +146,22 @@ public class SocketConnector implements AutoCloseable {
             }
             socket = null;
         }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (final IOException ignored) {
+            }
+            channel = null;
+        }
+        readBuffer = null;
     }
 
     public boolean isConnected() {
+        if (channel != null) {
+            return channel.isConnected();
+        }
         return socket != null && socket.isConnected() && !socket.isClosed()
-               && reader != null && writer != null;
+               && inputStream != null && writer != null;
     }
 
     /**
@@ -73,6 +171,10 @@ public class SocketConnector implements AutoCloseable {
      * @throws IOException если произошла ошибка ввода-вывода
      */
     public void send(final String message) throws IOException {
+        if (channel != null) {
+            write(charset.encode(CharBuffer.wrap(message + System.lineSeparator())));
+            return;
+        }
         if (writer == null) {
             throw new IOException("Socket closed");
         }
@@ -81,6 +183,32 @@ public class SocketConnector implements AutoCloseable {
         writer.flush();
     }
 
+    /**
+     * Отправить на сервер уже закодированные сообщения, каждое из которых завершено переводом строки.
+     * Байты между позицией и границей буфера отправляются одной записью в сокет.
+     *
+     * @param buffer буфер
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    public void send(final ByteBuffer buffer) throws IOException {
+        if (channel != null) {
+            write(buffer);
+            return;
+        }
+        if (outputStream == null) {
+            throw new IOException("Socket closed");
+        }
+        if (buffer.hasArray()) {
+            outputStream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+        } else {
+            final byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            outputStream.write(bytes);
+        }
+        outputStream.flush();
+    }
+
     /**
      * Получить ответ от сервера.
      *
@@ -88,17 +216,165 @@ public class SocketConnector implements AutoCloseable {
      * @throws IOException если произошла ошибка ввода-вывода
      */
     public String receive() throws IOException {
-        if (reader == null) {
+        if (!receiveLine()) {
+            return null;
+        }
+        if (singleByteCharset != null) {
+            return singleByteCharset.decode(readBuffer, lineStart, lineEnd);
+        }
+        final byte[] bytes = new byte[lineEnd - lineStart];
+        readBuffer.get(lineStart, bytes);
+        return new String(bytes, charset);
+    }
+
+    /**
+     * Получить очередную строку от сервера без её декодирования.
+     *
+     * @return {@code true}, если строка получена, и {@code false}, если полной строки пока нет
+     * @throws IOException если произошла ошибка ввода-вывода или сервер закрыл соединение
+     */
+    public boolean receiveLine() throws IOException {
+        if (readBuffer == null) {
             throw new IOException("Socket closed");
         }
+        if (nextLine()) {
+            return true;
+        }
+        scanPosition -= readBuffer.position();
+        readBuffer.compact();
+        if (!readBuffer.hasRemaining()) {
+            final int capacity = readBuffer.capacity() * 2;
+            final ByteBuffer buffer = readBuffer.isDirect() ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+            readBuffer.flip();
+            buffer.put(readBuffer);
+            readBuffer = buffer;
+        }
+        final int n;
         try {
-            return reader.readLine();
-        } catch (final IOException e) {
-            if (e instanceof SocketTimeoutException) {
-                return null;
-            } else {
-                throw e;
+            n = read();
+        } finally {
+            readBuffer.flip();
+        }
+        if (n < 0) {
+            throw new EOFException("Connection closed by server");
+        }
+        return n > 0 && nextLine();
+    }
+
+    /**
+     * @return буфер, содержащий байты последней полученной строки
+     */
+    public ByteBuffer lineBuffer() {
+        return readBuffer;
+    }
+
+    /**
+     * @return индекс первого байта последней полученной строки в {@link #lineBuffer()}
+     */
+    public int lineStart() {
+        return lineStart;
+    }
+
+    /**
+     * @return индекс, следующий за последним байтом последней полученной строки в {@link #lineBuffer()}
+     */
+    public int lineEnd() {
+        return lineEnd;
+    }
+
+    /**
+     * Получить последнюю полученную строку в виде последовательности символов без копирования.
+     * Возвращаемое представление переиспользуется и действительно до следующего вызова методов получения.
+     * Для многобайтовых кодировок строка декодируется.
+     *
+     * @return последняя полученная строка
+     */
+    public CharSequence lineView() {
+        if (lineView == null) {
+            final byte[] bytes = new byte[lineEnd - lineStart];
+            readBuffer.get(lineStart, bytes);
+            return new String(bytes, charset);
+        }
+        return lineView.wrap(readBuffer, lineStart, lineEnd);
+    }
+
+    /**
+     * Сравнить последнюю полученную строку с ASCII-строкой без декодирования.
+     *
+     * @param s ASCII-строка
+     * @return {@code true}, если строки совпадают
+     */
+    public boolean lineEquals(final String s) {
+        final int length = s.length();
+        if (lineEnd - lineStart != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (readBuffer.get(lineStart + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Дочитать данные в буфер чтения, находящийся в режиме записи.
+     *
+     * @return количество прочитанных байтов или -1 в случае закрытия соединения
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    private int read() throws IOException {
+        if (channel != null) {
+            return channel.read(readBuffer);
+        }
+        try {
+            final int n = inputStream.read(readBuffer.array(), readBuffer.position(), readBuffer.remaining());
+            if (n > 0) {
+                readBuffer.position(readBuffer.position() + n);
+            }
+            return n;
+        } catch (final SocketTimeoutException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Записать буфер в неблокирующий канал целиком.
+     * Если буфер отправки сокета заполнен, то поток ненадолго паркуется.
+     *
+     * @param buffer буфер
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    private void write(final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.write(buffer) == 0) {
+                LockSupport.parkNanos(50_000L);
+            }
+        }
+    }
+
+    /**
+     * Выделить в буфере чтения очередную строку, завершающуюся символом перевода строки.
+     *
+     * @return {@code true}, если строка выделена
+     */
+    private boolean nextLine() {
+        final int start = readBuffer.position();
+        final int limit = readBuffer.limit();
+        for (int i = Math.max(start, scanPosition); i < limit; i++) {
+            if (readBuffer.get(i) == '\n') {
+                int end = i;
+                if (end > start && readBuffer.get(end - 1) == '\r') {
+                    end--;
+                }
+                lineStart = start;
+                lineEnd = end;
+                readBuffer.position(i + 1);
+                scanPosition = i + 1;
+                return true;
             }
         }
+        scanPosition = limit;
+        return false;
     }
 }
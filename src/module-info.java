@@ -1,13 +1,16 @@
 module com.simpleutils {
     requires json.simple;
     requires java.desktop;
+    requires java.management;
     requires java.mail;
     requires activation;
     exports com.simpleutils;
     exports com.simpleutils.json;
     exports com.simpleutils.logs;
     exports com.simpleutils.quik;
+    exports com.simpleutils.quik.callbacks;
     exports com.simpleutils.socket;
     exports com.simpleutils.quik.requests;
     exports com.simpleutils.email;
+    exports com.simpleutils.metrics;
 }
\ No newline at end of file